@@ -0,0 +1,87 @@
+package com.tictactoe.protocol;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text vs binary codec for the hottest messages (GAME_MOVE, BOARD_UPDATE,
+ * CHAT_GLOBAL_FROM): bytes on the wire, encode+decode time and heap
+ * allocation per message.
+ *
+ * Run: make bench BENCH=protocol.CodecBenchmark [ARGS="iterations"]
+ */
+public class CodecBenchmark {
+
+    private static final String[] MESSAGES = {
+            "GAME_MOVE|3k20n6pmhd|4",
+            "BOARD_UPDATE|3k20n6pmhd|X-O-X-O--",
+            "CHAT_GLOBAL_FROM|razan|Halo semua, ada yang mau main satu ronde?",
+    };
+
+    // satu decoder per koneksi, sama seperti di server
+    private static final FrameDecoder DECODER = new FrameDecoder();
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        for (String msg : MESSAGES) {
+            byte[] text = (msg + "\n").getBytes(StandardCharsets.UTF_8);
+            byte[] binary = BinaryCodec.encode(TextCodec.split(msg));
+
+            // warmup
+            for (int i = 0; i < 200_000; i++) {
+                textRoundTrip(msg);
+                binaryRoundTrip(msg);
+            }
+
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                textRoundTrip(msg);
+            }
+            long textNs = System.nanoTime() - start;
+            long textAlloc = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                binaryRoundTrip(msg);
+            }
+            long binaryNs = System.nanoTime() - start;
+            long binaryAlloc = allocatedBytes() - before;
+
+            System.out.println(msg.substring(0, msg.indexOf('|')));
+            System.out.printf("  text   : %3d bytes, %6.1f ns, %4d bytes alloc%n",
+                    text.length, (double) textNs / iterations, textAlloc / iterations);
+            System.out.printf("  binary : %3d bytes, %6.1f ns, %4d bytes alloc%n",
+                    binary.length, (double) binaryNs / iterations, binaryAlloc / iterations);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // sama dengan jalur lama: getBytes saat kirim, decode line + split saat terima
+    private static void textRoundTrip(String msg) throws Exception {
+        byte[] wire = (msg + "\n").getBytes(StandardCharsets.UTF_8);
+        decode(wire);
+    }
+
+    private static void binaryRoundTrip(String msg) throws Exception {
+        byte[] wire = BinaryCodec.encode(TextCodec.split(msg));
+        decode(wire);
+    }
+
+    private static void decode(byte[] wire) throws Exception {
+        DECODER.feed(ByteBuffer.wrap(wire), parts -> {
+            sink += parts.length + parts[parts.length - 1].length();
+            return true;
+        });
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
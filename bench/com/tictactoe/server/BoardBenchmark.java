@@ -0,0 +1,268 @@
+package com.tictactoe.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * Bitboard {@link Board} with incremental win detection versus a plain
+ * engine (char[] + LinkedList, win check scans every line of the board).
+ *
+ * First plays random games of several variants on both and checks after
+ * every move that they agree (board string, winner, piece limit, no shared
+ * cell), then measures time and heap allocation per move.
+ *
+ * Run: make bench BENCH=server.BoardBenchmark [ARGS="games seed"]
+ */
+public class BoardBenchmark {
+
+    // size, winLength, pieceLimit
+    private static final int[][] VARIANTS = {
+            { 3, 3, 3 }, // infinity (default)
+            { 3, 3, 0 },
+            { 4, 3, 4 },
+            { 7, 4, 0 },
+            { 15, 5, 0 },
+            { 15, 5, 8 },
+    };
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        checkColumns();
+        for (int[] v : VARIANTS) {
+            int moves = checkRandomGames(v, games, seed);
+            System.out.println(describe(v) + ": " + games + " random games, " + moves + " moves OK");
+        }
+        System.out.println("(seed " + seed + ")");
+
+        for (int[] v : new int[][] { VARIANTS[0], VARIANTS[4] }) {
+            int[] script = randomScript(new Random(seed), v[0] * v[0], 1 << 16);
+            // game paling pendek 2K-1 langkah; +1 untuk board sesudah game terakhir
+            int played = playBoard(newBoards(v, script.length / (2 * v[1] - 1) + 2), script);
+            for (int i = 0; i < 20; i++) { // warmup
+                playBoard(newBoards(v, played + 1), script);
+                playReference(newReferences(v, played + 1), script);
+            }
+
+            // board untuk setiap game dibuat di luar pengukuran
+            Board[] boards = newBoards(v, played + 1);
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            played = playBoard(boards, script);
+            long boardNs = System.nanoTime() - start;
+            long boardAlloc = allocatedBytes() - before;
+
+            Reference[] refs = newReferences(v, played + 1);
+            before = allocatedBytes();
+            start = System.nanoTime();
+            played -= playReference(refs, script);
+            long refNs = System.nanoTime() - start;
+            long refAlloc = allocatedBytes() - before;
+
+            if (played != 0)
+                fail("game count differs on benchmark script");
+
+            System.out.println(describe(v));
+            System.out.printf("  full scan, char[]   : %7.1f ns/move, %7.2f bytes/move%n",
+                    (double) refNs / script.length, (double) refAlloc / script.length);
+            System.out.printf("  incremental, bitset : %7.1f ns/move, %7.2f bytes/move%n",
+                    (double) boardNs / script.length, (double) boardAlloc / script.length);
+        }
+    }
+
+    // bug lama: kolom kiri tercatat {0,3,4}
+    private static void checkColumns() {
+        Board b = new Board(3, 3, 3);
+        b.place(Board.X, 0);
+        b.place(Board.X, 3);
+        b.place(Board.X, 6);
+        if (!b.wins(Board.X, 6))
+            fail("column 0,3,6 is not a win");
+
+        b = new Board(3, 3, 3);
+        b.place(Board.X, 0);
+        b.place(Board.X, 3);
+        b.place(Board.X, 4);
+        if (b.wins(Board.X, 4))
+            fail("0,3,4 counted as a win");
+    }
+
+    private static int checkRandomGames(int[] v, int games, long seed) {
+        Random rnd = new Random(seed);
+        int cells = v[0] * v[0];
+        int moves = 0;
+        for (int g = 0; g < games; g++) {
+            Board board = new Board(v[0], v[1], v[2]);
+            Reference ref = new Reference(v[0], v[1], v[2]);
+            int player = Board.X;
+
+            for (int turn = 0; turn < 4 * cells; turn++) {
+                int cell = rnd.nextInt(cells);
+                boolean free = board.isFree(cell);
+                if (free != (ref.board[cell] == Board.EMPTY_CELL))
+                    fail("isFree(" + cell + ") differs, game " + g);
+                if (!free)
+                    continue; // ditolak, giliran tidak pindah
+
+                board.place(player, cell);
+                boolean won = ref.place(player, cell);
+                moves++;
+
+                String expected = new String(ref.board);
+                String actual = board.appendTo(new StringBuilder()).toString();
+                if (!expected.equals(actual))
+                    fail(describe(v) + ": board " + actual + " != " + expected + ", game " + g);
+                if (board.wins(player, cell) != won)
+                    fail(describe(v) + ": winner differs on " + expected + ", game " + g);
+                for (int c = 0; c < cells; c++) {
+                    if (board.has(Board.X, c) && board.has(Board.O, c))
+                        fail("shared cell on " + expected);
+                }
+                if (v[2] > 0 && board.getPieceCount(player) > v[2])
+                    fail("more than " + v[2] + " pieces on " + expected);
+
+                if (won || board.isFull())
+                    break;
+                player = 1 - player;
+            }
+        }
+        return moves;
+    }
+
+    private static int[] randomScript(Random rnd, int cells, int length) {
+        int[] script = new int[length];
+        for (int i = 0; i < length; i++) {
+            script[i] = rnd.nextInt(cells);
+        }
+        return script;
+    }
+
+    private static Board[] newBoards(int[] v, int n) {
+        Board[] boards = new Board[n];
+        for (int i = 0; i < n; i++) {
+            boards[i] = new Board(v[0], v[1], v[2]);
+        }
+        return boards;
+    }
+
+    private static Reference[] newReferences(int[] v, int n) {
+        Reference[] refs = new Reference[n];
+        for (int i = 0; i < n; i++) {
+            refs[i] = new Reference(v[0], v[1], v[2]);
+        }
+        return refs;
+    }
+
+    // mainkan script, game berikutnya dimulai setelah menang/penuh; return jumlah game selesai
+    private static int playBoard(Board[] boards, int[] script) {
+        int game = 0;
+        Board board = boards[0];
+        int player = Board.X;
+        for (int cell : script) {
+            if (!board.isFree(cell))
+                continue;
+            board.place(player, cell);
+            player = 1 - player;
+            if (board.wins(1 - player, cell) || board.isFull()) {
+                board = boards[++game];
+                player = Board.X;
+            }
+        }
+        return game;
+    }
+
+    private static int playReference(Reference[] refs, int[] script) {
+        int game = 0;
+        Reference ref = refs[0];
+        int player = Board.X;
+        for (int cell : script) {
+            if (ref.board[cell] != Board.EMPTY_CELL)
+                continue;
+            boolean won = ref.place(player, cell);
+            player = 1 - player;
+            if (won || ref.isFull()) {
+                ref = refs[++game];
+                player = Board.X;
+            }
+        }
+        return game;
+    }
+
+    private static String describe(int[] v) {
+        return new GameRules(v[0], v[1], v[2]).toString();
+    }
+
+    /** The GameRoom engine before the bitboard, generalised to N x N, K in a row. */
+    private static final class Reference {
+        final int size;
+        final int winLength;
+        final int pieceLimit;
+        final char[] board;
+        final Queue<Integer> xMoves = new LinkedList<>();
+        final Queue<Integer> oMoves = new LinkedList<>();
+
+        Reference(int size, int winLength, int pieceLimit) {
+            this.size = size;
+            this.winLength = winLength;
+            this.pieceLimit = pieceLimit;
+            this.board = new char[size * size];
+            Arrays.fill(board, Board.EMPTY_CELL);
+        }
+
+        boolean isFull() {
+            for (char c : board) {
+                if (c == Board.EMPTY_CELL)
+                    return false;
+            }
+            return true;
+        }
+
+        boolean place(int player, int cell) {
+            char symbol = player == Board.X ? 'X' : 'O';
+            Queue<Integer> playerMoves = player == Board.X ? xMoves : oMoves;
+            if (pieceLimit > 0 && playerMoves.size() >= pieceLimit) {
+                int oldIndex = playerMoves.poll();
+                board[oldIndex] = Board.EMPTY_CELL;
+            }
+            board[cell] = symbol;
+            playerMoves.add(cell);
+            return checkWinner(symbol);
+        }
+
+        // setiap kemungkinan garis K cell di seluruh board
+        boolean checkWinner(char symbol) {
+            int[][] dirs = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    for (int[] d : dirs) {
+                        int i = 0;
+                        for (; i < winLength; i++) {
+                            int rr = r + d[0] * i;
+                            int cc = c + d[1] * i;
+                            if (rr < 0 || rr >= size || cc < 0 || cc >= size || board[rr * size + cc] != symbol)
+                                break;
+                        }
+                        if (i == winLength)
+                            return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
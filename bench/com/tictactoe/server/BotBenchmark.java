@@ -0,0 +1,136 @@
+package com.tictactoe.server;
+
+import java.util.Random;
+
+/**
+ * {@link BotSearch} speed and transposition table behaviour per variant.
+ *
+ * First checks that the search takes an immediate win, blocks an immediate
+ * loss and leaves the board exactly as it got it, then searches random
+ * mid-game positions under a fixed time budget and prints nodes/sec, the
+ * depth reached and the TT hit / replacement rate.
+ *
+ * Run: make bench BENCH=server.BotBenchmark [ARGS="moveTimeMs positions seed"]
+ */
+public class BotBenchmark {
+
+    // size, winLength, pieceLimit, langkah acak sebelum search
+    private static final int[][] VARIANTS = {
+            { 3, 3, 3, 4 }, // infinity (default)
+            { 3, 3, 0, 2 },
+            { 7, 4, 0, 8 },
+            { 15, 5, 0, 12 },
+            { 15, 5, 8, 12 },
+    };
+
+    public static void main(String[] args) {
+        long timeMs = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        int positions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        checkTactics();
+        System.out.println("tactics OK (seed " + seed + ")");
+
+        for (int[] v : VARIANTS) {
+            BotSearch search = new BotSearch(1 << 18);
+            Random rnd = new Random(seed);
+            long nodes = 0;
+            long nanos = 0;
+            int depth = 0;
+
+            for (int p = 0; p < positions; p++) {
+                Board board = randomPosition(v, rnd);
+                int player = v[3] % 2 == 0 ? Board.X : Board.O;
+                String before = board.appendTo(new StringBuilder()).toString();
+
+                long start = System.nanoTime();
+                int cell = search.search(board, player, timeMs, 32);
+                nanos += System.nanoTime() - start;
+                nodes += search.getNodes();
+                depth += search.getCompletedDepth();
+
+                if (!board.appendTo(new StringBuilder()).toString().equals(before))
+                    fail(describe(v) + ": board changed by search on " + before);
+                if (cell < 0 || !board.isFree(cell))
+                    fail(describe(v) + ": illegal move " + cell + " on " + before);
+            }
+
+            TranspositionTable tt = search.getTable();
+            System.out.println(describe(v));
+            System.out.printf("  %,12d nodes/sec, avg depth %.1f%n",
+                    nodes * 1_000_000_000L / Math.max(nanos, 1), (double) depth / positions);
+            System.out.printf("  TT: %,d probes, %.1f%% hit, %,d stores, %.1f%% replaced (%,d slots)%n",
+                    tt.getProbes(), percent(tt.getHits(), tt.getProbes()),
+                    tt.getStores(), percent(tt.getReplaced(), tt.getStores()), tt.capacity());
+        }
+    }
+
+    private static void checkTactics() {
+        BotSearch search = new BotSearch(1 << 12);
+
+        // X: 0,1 -> harus main 2
+        Board b = new Board(3, 3, 0);
+        b.place(Board.X, 0);
+        b.place(Board.O, 4);
+        b.place(Board.X, 1);
+        b.place(Board.O, 8);
+        int cell = search.search(b, Board.X, 100, 32);
+        if (cell != 2)
+            fail("missed win at 2, played " + cell);
+
+        // O harus blok 2 (X: 0,1)
+        b = new Board(3, 3, 0);
+        b.place(Board.X, 0);
+        b.place(Board.O, 4);
+        b.place(Board.X, 1);
+        cell = search.search(b, Board.O, 100, 32);
+        if (cell != 2)
+            fail("missed block at 2, played " + cell);
+
+        // 15x15, X punya 4 terbuka di baris 7
+        b = new Board(15, 5, 0);
+        for (int i = 0; i < 4; i++) {
+            b.place(Board.X, 7 * 15 + 5 + i);
+            b.place(Board.O, i * 15);
+        }
+        cell = search.search(b, Board.X, 100, 32);
+        if (cell != 7 * 15 + 4 && cell != 7 * 15 + 9)
+            fail("missed five on 15x15, played " + cell);
+    }
+
+    // langkah acak tanpa menang, supaya search mulai dari posisi yang masih jalan
+    private static Board randomPosition(int[] v, Random rnd) {
+        while (true) {
+            Board board = new Board(v[0], v[1], v[2]);
+            int center = v[0] / 2;
+            int spread = Math.min(v[0], 5);
+            boolean over = false;
+            for (int i = 0; i < v[3] && !over; i++) {
+                int player = i % 2 == 0 ? Board.X : Board.O;
+                int cell;
+                do {
+                    int r = center - spread / 2 + rnd.nextInt(spread);
+                    int c = center - spread / 2 + rnd.nextInt(spread);
+                    cell = r * v[0] + c;
+                } while (!board.isFree(cell));
+                board.place(player, cell);
+                over = board.wins(player, cell) || board.isFull();
+            }
+            if (!over)
+                return board;
+        }
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    private static String describe(int[] v) {
+        return new GameRules(v[0], v[1], v[2]).toString();
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
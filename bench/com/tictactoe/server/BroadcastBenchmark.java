@@ -0,0 +1,81 @@
+package com.tictactoe.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Heap allocation per broadcast: encoding the message for every recipient
+ * versus encoding it once and handing out read-only duplicates.
+ *
+ * Run: make bench BENCH=server.BroadcastBenchmark [ARGS="recipients rounds"]
+ */
+public class BroadcastBenchmark {
+
+    public static void main(String[] args) {
+        int recipients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        OutboundQueue[] queues = new OutboundQueue[recipients];
+        for (int i = 0; i < recipients; i++) {
+            queues[i] = new OutboundQueue(Long.MAX_VALUE, OutboundQueue.Overflow.DROP);
+        }
+
+        String msg = "CHAT_GLOBAL_FROM|razan|Halo semua, ada yang mau main satu ronde?";
+
+        // warmup supaya JIT sudah stabil
+        for (int i = 0; i < 50; i++) {
+            perRecipient(queues, msg);
+            encodeOnce(queues, msg);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < rounds; i++) {
+            perRecipient(queues, msg);
+        }
+        long perRecipientBytes = (allocatedBytes() - before) / rounds;
+
+        before = allocatedBytes();
+        for (int i = 0; i < rounds; i++) {
+            encodeOnce(queues, msg);
+        }
+        long encodeOnceBytes = (allocatedBytes() - before) / rounds;
+
+        System.out.println("recipients: " + recipients + ", rounds: " + rounds);
+        System.out.printf("encode per recipient : %,d bytes/broadcast (%,d bytes/recipient)%n",
+                perRecipientBytes, perRecipientBytes / recipients);
+        System.out.printf("encode once + dup    : %,d bytes/broadcast (%,d bytes/recipient)%n",
+                encodeOnceBytes, encodeOnceBytes / recipients);
+        System.out.printf("reduction            : %.1f%%%n",
+                100.0 * (perRecipientBytes - encodeOnceBytes) / perRecipientBytes);
+    }
+
+    // cara lama: tiap penerima encode String-nya sendiri
+    private static void perRecipient(OutboundQueue[] queues, String msg) {
+        for (OutboundQueue q : queues) {
+            q.offer(ByteBuffer.wrap((msg + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        drain(queues);
+    }
+
+    // sama dengan ServerState.broadcast
+    private static void encodeOnce(OutboundQueue[] queues, String msg) {
+        ByteBuffer frame = Frame.encodeShared(msg, false);
+        for (OutboundQueue q : queues) {
+            q.offer(frame.duplicate());
+        }
+        drain(queues);
+    }
+
+    private static void drain(OutboundQueue[] queues) {
+        for (OutboundQueue q : queues) {
+            q.clear();
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
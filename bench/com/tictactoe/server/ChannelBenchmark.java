@@ -0,0 +1,191 @@
+package com.tictactoe.server;
+
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link Channels}: fan-out cost per channel size, and joins/leaves racing
+ * with messages.
+ *
+ * Logs in N users without sockets. Reports ns per CHAT (and per recipient) in
+ * channels of 10, 100 and 1000 subscribers next to one CHAT_GLOBAL to all N.
+ * Check: while one thread publishes to a channel and another keeps joining
+ * and leaving it with other users, every steady subscriber gets every
+ * message exactly once, and the channel disappears once everybody has left.
+ * Second check: one user joining from several threads at once never ends up
+ * in more than chat.channelsPerUser channels, many users creating new
+ * channels at once never pass chat.maxChannels, and refused joins leave no
+ * per-user entry behind.
+ *
+ * Run: make bench BENCH=server.ChannelBenchmark [ARGS="users messages"]
+ */
+public class ChannelBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        ServerState state = new ServerState(ServerConfig.load(new String[] { "--bot.enabled=false",
+                "--journal.enabled=false", "--rating.file=", "--chat.channelsPerUser=100" }));
+        Channels channels = state.getChannels();
+        Fake[] users = new Fake[n];
+        for (int i = 0; i < n; i++)
+            users[i] = new Fake(state, "u" + i);
+
+        check(channels, users, messages);
+        checkLimits(state, users);
+
+        for (int size : new int[] { 10, 100, 1_000 }) {
+            String name = "c" + size;
+            for (int i = 0; i < size; i++)
+                channels.join(name, users[i]);
+            for (int i = 0; i < 200; i++) // warmup
+                channels.publish(name, "u0", "warmup");
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+                channels.publish(name, "u0", "hello " + i);
+            long took = System.nanoTime() - start;
+            System.out.printf("CHAT to %,5d subscribers: %,9.0f ns per message, %3.0f ns per recipient%n", size,
+                    (double) took / messages, (double) took / messages / size);
+        }
+
+        int globals = Math.max(1, messages / 10);
+        long start = System.nanoTime();
+        for (int i = 0; i < globals; i++)
+            state.chatGlobal("u0", "hello " + i);
+        long took = System.nanoTime() - start;
+        System.out.printf("CHAT_GLOBAL to %,d users: %,9.0f ns per message, %3.0f ns per recipient%n", n,
+                (double) took / globals, (double) took / globals / n);
+        System.out.println(channels.stats());
+        System.exit(0);
+    }
+
+    private static void check(Channels channels, Fake[] users, int messages) throws InterruptedException {
+        int steady = 100;
+        int churners = 50;
+        for (int i = 0; i < steady; i++)
+            channels.join("race", users[i]);
+
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < messages; i++)
+                channels.publish("race", "u0", "m" + i);
+        });
+        AtomicBoolean done = new AtomicBoolean();
+        Thread churn = new Thread(() -> {
+            int rounds = 0;
+            while (!done.get() || rounds == 0) {
+                for (int i = 0; i < churners; i++)
+                    channels.join("race", users[steady + i]);
+                for (int i = 0; i < churners; i++)
+                    channels.leave("race", users[steady + i].getUsername());
+                rounds++;
+            }
+        });
+        churn.start();
+        publisher.start();
+        publisher.join();
+        done.set(true);
+        churn.join();
+
+        for (int i = 0; i < steady; i++)
+            if (users[i].chats != messages)
+                fail(users[i].getUsername() + " got " + users[i].chats + " of " + messages + " messages");
+        for (int i = 0; i < churners; i++)
+            if (users[steady + i].chats > messages)
+                fail(users[steady + i].getUsername() + " got " + users[steady + i].chats + " messages");
+        if (channels.subscribers("race", "u0") != steady)
+            fail("race has " + channels.subscribers("race", "u0") + " subscribers, expected " + steady);
+
+        for (int i = 0; i < steady; i++)
+            channels.leaveAll(users[i].getUsername());
+        if (!channels.list(10).equals("0|"))
+            fail("channels left after everybody left: " + channels.list(10));
+        for (Fake f : users)
+            f.chats = 0;
+        System.out.println("check: " + steady + " steady subscribers got all " + messages
+                + " messages while " + churners + " others joined and left; empty channel removed");
+    }
+
+    private static void checkLimits(ServerState state, Fake[] users) throws InterruptedException {
+        int cap = 5;
+        Channels limited = new Channels(ServerConfig.load(new String[] {
+                "--chat.channelsPerUser=" + cap, "--chat.maxChannels=" + cap }));
+        int threads = 8;
+        int perThread = 20;
+        Thread[] t = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            t[i] = new Thread(() -> {
+                for (int c = 0; c < perThread; c++)
+                    limited.join("cap-" + id + "-" + c, users[0]);
+            });
+            t[i].start();
+        }
+        for (Thread thread : t)
+            thread.join();
+        int in = 0;
+        for (int i = 0; i < threads; i++)
+            for (int c = 0; c < perThread; c++)
+                if (limited.subscribers("cap-" + i + "-" + c, "u0") >= 0)
+                    in++;
+        if (in != cap)
+            fail("u0 is in " + in + " channels, limit " + cap);
+
+        // channel penuh (maxChannels) dan user limit: tidak ada entry kosong yang tertinggal
+        if (limited.join("other", users[1]) != Channels.TOO_MANY_CHANNELS)
+            fail("channel limit not enforced");
+        if (limited.join("cap-extra", users[0]) != Channels.USER_LIMIT)
+            fail("user limit not enforced");
+        if (limited.joinedUsers() != 1)
+            fail(limited.joinedUsers() + " users with channels after refused joins, expected 1");
+        limited.leaveAll("u0");
+        if (limited.joinedUsers() != 0 || !limited.list(10).equals("0|"))
+            fail("left over after leaveAll: " + limited.stats());
+
+        // banyak user membuat channel baru bersamaan: tetap paling banyak maxChannels
+        Channels few = new Channels(ServerConfig.load(new String[] {
+                "--chat.channelsPerUser=" + perThread, "--chat.maxChannels=" + cap }));
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            t[i] = new Thread(() -> {
+                for (int c = 0; c < perThread; c++)
+                    few.join("new-" + id + "-" + c, users[id]);
+            });
+            t[i].start();
+        }
+        for (Thread thread : t)
+            thread.join();
+        if (!few.list(0).equals(cap + "|"))
+            fail("channel limit " + cap + " passed: " + few.stats());
+        for (int i = 0; i < threads; i++)
+            few.leaveAll(users[i].getUsername());
+        if (few.join("again", users[0]) != Channels.JOINED)
+            fail("no channel slot free after everybody left: " + few.stats());
+        System.out.println("check: " + threads + " threads joining for one user stopped at " + cap
+                + " channels, " + threads + " users creating channels stopped at " + cap
+                + "; refused joins left nothing behind");
+    }
+
+    /** Logged-in handler without a socket; counts CHAT_FROM frames. */
+    private static final class Fake extends ClientHandler {
+        volatile int chats; // hanya thread publisher yang menulis
+
+        Fake(ServerState state, String name) {
+            super((Socket) null, state, null);
+            handleMessage("LOGIN|" + name);
+        }
+
+        @Override
+        void write(ByteBuffer frame) {
+            // CHAT_FROM, bukan CHAT_GLOBAL_FROM
+            if (frame.get(frame.position()) == 'C' && frame.get(frame.position() + 5) == 'F')
+                chats++;
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,135 @@
+package com.tictactoe.server;
+
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link ChatHistory} with concurrent writers and readers.
+ *
+ * Writer threads add numbered messages while a reader thread keeps taking
+ * backfills. Checks: every backfill is one write with at most capacity
+ * messages, each writer's messages in order, and once the writers are done a
+ * backfill is exactly the last capacity messages. Reports ns per message
+ * added (the ring only; the fan-out frame is encoded by whoever sends it),
+ * ns per backfill, and the heap after a GC, which must not grow with the
+ * number of messages.
+ *
+ * Run: make bench BENCH=server.ChatHistoryBenchmark [ARGS="capacity messagesPerWriter writers"]
+ */
+public class ChatHistoryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int perWriter = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int writers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        ServerState state = new ServerState(ServerConfig.load(new String[] {
+                "--bot.enabled=false", "--journal.enabled=false", "--rating.file=" }));
+        ChatHistory history = new ChatHistory(capacity);
+        long heapBefore = usedHeap();
+
+        AtomicBoolean done = new AtomicBoolean();
+        long[] backfills = new long[1];
+        long[] readNanos = new long[1];
+        Thread reader = new Thread(() -> {
+            Fake f = new Fake(state, capacity, writers);
+            while (!done.get()) {
+                long t = System.nanoTime();
+                history.sendRecent(f);
+                readNanos[0] += System.nanoTime() - t;
+                backfills[0]++;
+            }
+        });
+        reader.start();
+
+        Thread[] threads = new Thread[writers];
+        long start = System.nanoTime();
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            threads[w] = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++)
+                    history.add("CHAT_GLOBAL_FROM|w" + id + "|" + i, true);
+            });
+            threads[w].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        long writeNanos = System.nanoTime() - start;
+        done.set(true);
+        reader.join();
+
+        // setelah semua writer selesai: tepat capacity pesan terakhir
+        Fake last = new Fake(state, capacity, writers);
+        if (history.sendRecent(last) != Math.min(capacity, perWriter * writers) || last.writes != 1)
+            fail("final backfill: " + last.lines + " messages in " + last.writes + " writes");
+        boolean hasLast = false;
+        for (int w = 0; w < writers; w++)
+            hasLast |= last.lastOf[w] == perWriter - 1;
+        if (!hasLast)
+            fail("final backfill does not include the last message");
+        System.out.println("check: " + backfills[0] + " concurrent backfills, each one write of <= " + capacity
+                + " messages in order; final backfill = last " + capacity);
+
+        long heapAfter = usedHeap();
+        long total = (long) perWriter * writers;
+        System.out.printf("%,d messages from %d writers: %.0f ns per add; backfill of %d: %.0f ns%n", total,
+                writers, (double) writeNanos * writers / total, capacity, (double) readNanos[0] / backfills[0]);
+        System.out.printf("heap after GC: %,d KB before, %,d KB after %,d messages%n", heapBefore / 1024,
+                heapAfter / 1024, total);
+        if (history.size() != total)
+            fail("size " + history.size() + ", expected " + total);
+        System.exit(0);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /** Handler without a socket or session that checks every backfill it gets. */
+    private static final class Fake extends ClientHandler {
+        final int capacity;
+        final int[] lastOf;
+        int writes;
+        int lines;
+
+        Fake(ServerState state, int capacity, int writers) {
+            super((Socket) null, state, null);
+            this.capacity = capacity;
+            this.lastOf = new int[writers];
+        }
+
+        @Override
+        void write(ByteBuffer frame) {
+            writes++;
+            byte[] bytes = new byte[frame.remaining()];
+            frame.duplicate().get(bytes);
+            String[] msgs = new String(bytes, StandardCharsets.UTF_8).split("\n");
+            if (msgs.length > capacity)
+                fail("backfill of " + msgs.length + " messages");
+            lines = msgs.length;
+            java.util.Arrays.fill(lastOf, -1);
+            for (String m : msgs) {
+                String[] p = m.split("\\|");
+                if (p.length != 3 || !p[0].equals("CHAT_GLOBAL_FROM"))
+                    fail("bad message in backfill: " + m);
+                int w = Integer.parseInt(p[1].substring(1));
+                int n = Integer.parseInt(p[2]);
+                if (n <= lastOf[w])
+                    fail("w" + w + " out of order: " + n + " after " + lastOf[w]);
+                lastOf[w] = n;
+            }
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,184 @@
+package com.tictactoe.server;
+
+import com.tictactoe.protocol.BinaryCodec;
+import com.tictactoe.protocol.FrameDecoder;
+import com.tictactoe.protocol.TextCodec;
+
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Heap allocation of the inbound hot path: read buffer -> FrameDecoder ->
+ * ClientHandler dispatch for PING and GAME_MOVE, text and binary.
+ *
+ * The handlers have no socket, but every frame for them goes into a real
+ * {@link OutboundQueue} (through their session, as in the server), so a PING
+ * costs what a queued PONG costs: its duplicate plus a queue node. Accepted
+ * moves are played in turn on a 15x15 board with piece limit 2, which never
+ * ends; their cost is split into the reader thread (parse, rate limit, the
+ * task handed to the game's shard) and the shard thread (the move, the
+ * BOARD_UPDATE and YOUR_TURN for both players, session ring, queue nodes).
+ * The rate limits are set so high that nothing is dropped.
+ *
+ * Exits with status 1 if parsing a message that is not queued anywhere (a
+ * move from the player not on turn, a bad index) allocates, or if a PONG or
+ * an accepted move costs the reader thread more than {@value #QUEUED_LIMIT}
+ * bytes.
+ *
+ * Run: make bench BENCH=server.DispatchAllocationBenchmark [ARGS="rounds"]
+ */
+public class DispatchAllocationBenchmark {
+
+    private static final int BATCH = 64; // message per "read"
+    private static final int QUEUED_LIMIT = 256;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        // rate limit tetap dicek (harus juga tanpa alokasi), tapi tidak pernah menolak
+        ServerState state = new ServerState(ServerConfig.load(new String[] { "--journal.enabled=false",
+                "--rating.file=", "--rate.message.perSec=1000000000", "--rate.message.burst=1000000000" }));
+        Conn alice = new Conn(state, "alice");
+        Conn bob = new Conn(state, "bob");
+        // tidak pernah selesai: paling banyak 2 bidak per pemain, perlu 5 sebaris
+        GameRoom game = state.createGame("alice", "bob", new GameRules(15, 5, 2));
+        game.startGame();
+        String id = game.getGameId();
+
+        boolean ok = true;
+        System.out.println("not queued (must be 0):");
+        ok &= run("GAME_MOVE not on turn", bob, text("GAME_MOVE|" + id + "|4"), rounds, 1);
+        ok &= run("  binary", bob, binary("GAME_MOVE|" + id + "|4"), rounds, 1);
+        ok &= run("GAME_MOVE bad index", bob, text("GAME_MOVE|" + id + "|x"), rounds, 1);
+        System.out.println("queued:");
+        ok &= run("PING -> PONG", bob, text("PING"), rounds, QUEUED_LIMIT);
+        ok &= run("  binary", bob, binary("PING"), rounds, QUEUED_LIMIT);
+        ok &= moves(game, alice, bob, rounds);
+
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean run(String name, Conn handler, byte[] message, int rounds, int limit) throws Exception {
+        ByteBuffer read = ByteBuffer.allocate(message.length * BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            read.put(message);
+        }
+        FrameDecoder decoder = new FrameDecoder();
+        FrameDecoder.Sink sink = handler.getDispatcher();
+
+        // warmup supaya JIT sudah stabil
+        for (int i = 0; i < 20_000; i++) {
+            feed(decoder, read, sink);
+            handler.out.clear();
+        }
+
+        long before = allocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < rounds; i++) {
+            feed(decoder, read, sink);
+            handler.out.clear(); // writer yang mengosongkan antrian
+        }
+        double perMessage = (double) (allocatedBytes(Thread.currentThread().getId()) - before)
+                / ((long) rounds * BATCH);
+
+        boolean ok = perMessage < limit;
+        System.out.printf("  %-24s %8.2f bytes/message%s%n", name, perMessage, ok ? "" : "  <-- allocates");
+        return ok;
+    }
+
+    /** Accepted moves, alternating players, each one sent once the previous one is on the board. */
+    private static boolean moves(GameRoom game, Conn alice, Conn bob, int count) throws Exception {
+        String id = game.getGameId();
+        // X di sel 0..49, O di sel 100..149: sel berikutnya selalu kosong
+        ByteBuffer[][] reads = new ByteBuffer[2][50];
+        for (int c = 0; c < 50; c++) {
+            reads[0][c] = ByteBuffer.wrap(text("GAME_MOVE|" + id + "|" + c));
+            reads[1][c] = ByteBuffer.wrap(binary("GAME_MOVE|" + id + "|" + (100 + c)));
+        }
+        Conn[] players = { alice, bob };
+        FrameDecoder[] decoders = { new FrameDecoder(), new FrameDecoder() };
+
+        long[] shard = new long[1];
+        CountDownLatch found = new CountDownLatch(1);
+        game.execute(() -> {
+            shard[0] = Thread.currentThread().getId();
+            found.countDown();
+        });
+        found.await();
+        long reader = Thread.currentThread().getId();
+
+        int warmup = 20_000;
+        long readerBefore = 0;
+        long shardBefore = 0;
+        for (int i = 0; i < warmup + count; i++) {
+            if (i == warmup) {
+                readerBefore = allocatedBytes(reader);
+                shardBefore = allocatedBytes(shard[0]);
+            }
+            int p = i & 1;
+            Conn player = players[p];
+            ByteBuffer read = reads[p][(i >> 1) % 50];
+            read.clear();
+            decoders[p].feed(read, player.getDispatcher());
+            while (player.getUsername().equals(game.getCurrentTurn()))
+                Thread.yield();
+            if ((i & 63) == 63) {
+                alice.out.clear();
+                bob.out.clear();
+            }
+        }
+        if (game.getStatus() != GameRoom.GameStatus.IN_PROGRESS)
+            fail("game ended during the move benchmark");
+        double readerPerMove = (double) (allocatedBytes(reader) - readerBefore) / count;
+        double shardPerMove = (double) (allocatedBytes(shard[0]) - shardBefore) / count;
+
+        boolean ok = readerPerMove < QUEUED_LIMIT;
+        System.out.printf("  %-24s %8.2f bytes/move on the reader thread%s%n", "GAME_MOVE on turn",
+                readerPerMove, ok ? "" : "  <-- allocates");
+        System.out.printf("  %-24s %8.2f bytes/move on the shard thread%n", "", shardPerMove);
+        return ok;
+    }
+
+    private static void feed(FrameDecoder decoder, ByteBuffer read, FrameDecoder.Sink sink) throws Exception {
+        read.flip();
+        decoder.feed(read, sink);
+        read.limit(read.capacity());
+    }
+
+    private static byte[] text(String msg) {
+        return (msg + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] binary(String msg) {
+        return BinaryCodec.encode(TextCodec.split(msg));
+    }
+
+    private static long allocatedBytes(long threadId) {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return mx.getThreadAllocatedBytes(threadId);
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+
+    /** Logged-in handler whose frames end up in a real outbound queue. */
+    private static final class Conn extends ClientHandler {
+        final OutboundQueue out;
+
+        Conn(ServerState state, String name) {
+            super((Socket) null, state, null);
+            this.out = OutboundQueue.create(state.getConfig());
+            handleMessage("LOGIN|" + name);
+        }
+
+        @Override
+        void write(ByteBuffer frame) {
+            out.offer(frame);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.tictactoe.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link GameIds} and {@link LongGameMap}.
+ *
+ * Checks that ids from several threads are unique and increasing per
+ * thread, that the base-36 form round-trips and rejects non-ids, and that
+ * the map agrees with a HashMap under random put/remove. Then compares the
+ * GAME_MOVE lookup: old (String from the read buffer + ConcurrentHashMap of
+ * "GAME_<millis>" ids) against new (parse bytes to long + LongGameMap).
+ *
+ * Run: make bench BENCH=server.GameIdBenchmark [ARGS="games"]
+ */
+public class GameIdBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        checkUnique(8, 200_000);
+        checkText();
+        ServerState state = new ServerState(ServerConfig.load(new String[] { "--bot.enabled=false", "--journal.enabled=false" }));
+        checkMap(state);
+        measureLookup(state, games);
+    }
+
+    private static void checkUnique(int threads, int perThread) throws InterruptedException {
+        GameIds ids = new GameIds(5);
+        long[][] out = new long[threads][perThread];
+        Thread[] t = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            long[] mine = out[i];
+            t[i] = new Thread(() -> {
+                for (int j = 0; j < mine.length; j++) {
+                    mine[j] = ids.next();
+                }
+            });
+            t[i].start();
+        }
+        long[] all = new long[threads * perThread];
+        for (int i = 0; i < threads; i++) {
+            t[i].join();
+            for (int j = 1; j < perThread; j++) {
+                if (out[i][j] <= out[i][j - 1])
+                    fail("ids not increasing on thread " + i);
+            }
+            System.arraycopy(out[i], 0, all, i * perThread, perThread);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            if (all[i] == all[i - 1])
+                fail("duplicate id " + GameIds.format(all[i]));
+        }
+        if (GameIds.nodeOf(all[0]) != 5 || all[0] < 0)
+            fail("node bits lost: " + all[0]);
+        System.out.println(all.length + " ids from " + threads + " threads unique, e.g. "
+                + GameIds.format(all[all.length - 1]));
+    }
+
+    private static void checkText() {
+        Random rnd = new Random(7);
+        for (int i = 0; i < 1_000_000; i++) {
+            long id = rnd.nextLong() >>> (1 + rnd.nextInt(63));
+            String text = GameIds.format(id);
+            byte[] bytes = ("x" + text + "|").getBytes(StandardCharsets.US_ASCII);
+            if (GameIds.parse(text) != id || GameIds.parse(bytes, 1, text.length()) != id)
+                fail("round trip " + id + " -> " + text);
+        }
+        if (GameIds.parse(GameIds.format(Long.MAX_VALUE)) != Long.MAX_VALUE)
+            fail("Long.MAX_VALUE round trip");
+        for (String bad : new String[] { "", "GAME_1792264557395", "ABC", "-1", "1zzzzzzzzzzzz", "zzzzzzzzzzzzzz" }) {
+            if (GameIds.parse(bad) != -1)
+                fail("accepted " + bad);
+        }
+        System.out.println("base-36 round trip OK");
+    }
+
+    private static void checkMap(ServerState state) {
+        LongGameMap map = new LongGameMap();
+        Map<Long, GameRoom> ref = new HashMap<>();
+        Random rnd = new Random(11);
+        GameRoom[] pool = new GameRoom[5_000];
+        for (int i = 0; i < pool.length; i++) {
+            // kadang id berdekatan, kadang acak
+            long id = i % 2 == 0 ? 1_000 + i : rnd.nextLong() >>> 1;
+            pool[i] = new GameRoom(id, "a", "b", state);
+        }
+        for (int op = 0; op < 500_000; op++) {
+            GameRoom g = pool[rnd.nextInt(pool.length)];
+            if (rnd.nextInt(3) == 0) {
+                if (map.remove(g.getId()) != ref.remove(g.getId()))
+                    fail("remove differs for " + g.getId());
+            } else {
+                map.put(g);
+                ref.put(g.getId(), g);
+            }
+            if (map.size() != ref.size())
+                fail("size " + map.size() + " != " + ref.size());
+            GameRoom probe = pool[rnd.nextInt(pool.length)];
+            if (map.get(probe.getId()) != ref.get(probe.getId()))
+                fail("get differs for " + probe.getId());
+        }
+        System.out.println("LongGameMap agrees with HashMap (" + map.size() + " live, "
+                + map.capacity() + " slots)");
+    }
+
+    private static void measureLookup(ServerState state, int games) {
+        GameIds ids = new GameIds(0);
+        LongGameMap map = new LongGameMap();
+        ConcurrentMap<String, GameRoom> old = new ConcurrentHashMap<>();
+        byte[][] newIds = new byte[games][];
+        byte[][] oldIds = new byte[games][];
+        long millis = System.currentTimeMillis();
+        for (int i = 0; i < games; i++) {
+            GameRoom g = new GameRoom(ids.next(), "a", "b", state);
+            map.put(g);
+            String oldId = "GAME_" + (millis + i);
+            old.put(oldId, g);
+            newIds[i] = g.getGameId().getBytes(StandardCharsets.US_ASCII);
+            oldIds[i] = oldId.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        int rounds = 200;
+        long sink = 0;
+        for (int w = 0; w < 2; w++) { // pertama warmup
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (byte[] id : oldIds) {
+                    sink += old.get(new String(id, 0, id.length, StandardCharsets.UTF_8)).getId();
+                }
+            }
+            long oldNs = System.nanoTime() - start;
+            long oldAlloc = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (byte[] id : newIds) {
+                    sink += map.get(GameIds.parse(id, 0, id.length)).getId();
+                }
+            }
+            long newNs = System.nanoTime() - start;
+            long newAlloc = allocatedBytes() - before;
+
+            if (w == 1) {
+                long n = (long) rounds * games;
+                System.out.println(games + " games, id " + oldIds[0].length + " -> " + newIds[0].length + " bytes");
+                System.out.printf("  String + ConcurrentHashMap : %6.1f ns/lookup, %6.1f bytes/lookup%n",
+                        (double) oldNs / n, (double) oldAlloc / n);
+                System.out.printf("  parse long + LongGameMap   : %6.1f ns/lookup, %6.1f bytes/lookup%n",
+                        (double) newNs / n, (double) newAlloc / n);
+            }
+        }
+        if (sink == 42)
+            System.out.println();
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
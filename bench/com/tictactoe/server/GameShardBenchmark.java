@@ -0,0 +1,139 @@
+package com.tictactoe.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Move throughput of {@link GameShards} for 1..N shards.
+ *
+ * Several producer threads (the "reader threads") send moves for many games;
+ * each move runs on the game's shard and does what processMove does: place,
+ * win check, BOARD_UPDATE string. Every game's board is only touched by its
+ * own shard, so the check at the end (piece counts match the moves sent)
+ * fails if two threads ever worked on one game at the same time. A second
+ * check fills a blocked shard with client tasks and expects exactly
+ * game.shardQueueMax of them to get in.
+ *
+ * Run: make bench BENCH=server.GameShardBenchmark [ARGS="games movesPerGame producers"]
+ */
+public class GameShardBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int movesPerGame = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int producers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.println(games + " games x " + movesPerGame + " moves, " + producers
+                + " producer threads, " + cores + " cores");
+        checkBound();
+        run(new GameShards(1, Integer.MAX_VALUE), games, movesPerGame, producers); // warmup
+        for (int shards = 1; shards <= Math.max(cores, 2); shards *= 2) {
+            GameShards gs = new GameShards(shards, Integer.MAX_VALUE);
+            double rate = run(gs, games, movesPerGame, producers);
+            System.out.printf("  %2d shard(s): %,12.0f moves/sec   %s%n", shards, rate, gs.stats());
+        }
+    }
+
+    /** offer() refuses once maxQueued tasks wait; execute() never does. */
+    private static void checkBound() throws InterruptedException {
+        int max = 100;
+        GameShards gs = new GameShards(1, max);
+        GameShards.Shard shard = gs.forGame(0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        shard.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        int accepted = 0;
+        for (int i = 0; i < max + 50; i++)
+            if (shard.offer(() -> { }))
+                accepted++;
+        shard.execute(() -> { }); // task server tetap masuk
+        if (accepted != max || gs.queueDepth(0) != max + 1)
+            fail(accepted + " of " + (max + 50) + " offers accepted, depth " + gs.queueDepth(0) + ", max " + max);
+        release.countDown();
+        System.out.println("check: full shard refused " + (max + 50 - accepted) + " client tasks; " + gs.stats());
+    }
+
+    private static double run(GameShards shards, int games, int movesPerGame, int producers)
+            throws InterruptedException {
+        GameIds ids = new GameIds(0);
+        Executor[] owners = new Executor[games];
+        Game[] state = new Game[games];
+        for (int g = 0; g < games; g++) {
+            long id = ids.next();
+            owners[g] = shards.forGame(id);
+            state[g] = new Game(GameIds.format(id));
+        }
+
+        long total = (long) games * movesPerGame;
+        CountDownLatch done = new CountDownLatch(games);
+        Thread[] threads = new Thread[producers];
+        long start = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            int first = p;
+            threads[p] = new Thread(() -> {
+                // round-robin: setiap game dapat satu langkah per putaran
+                for (int m = 0; m < movesPerGame; m++) {
+                    for (int g = first; g < games; g += producers) {
+                        Game game = state[g];
+                        boolean last = m == movesPerGame - 1;
+                        owners[g].execute(() -> {
+                            game.move();
+                            if (last)
+                                done.countDown();
+                        });
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        done.await();
+        long ns = System.nanoTime() - start;
+
+        for (Game game : state) {
+            if (game.moves != movesPerGame)
+                fail(game.id + ": " + game.moves + " moves applied, " + movesPerGame + " sent");
+        }
+        return total * 1e9 / ns;
+    }
+
+    /** Stand-in for a GameRoom's state: only its shard calls move(). */
+    private static final class Game {
+        final String id;
+        final Board board = new Board(GameRules.CLASSIC);
+        int player = Board.X;
+        int next;
+        int moves;
+        int length; // supaya string tidak dibuang JIT
+
+        Game(String id) {
+            this.id = id;
+        }
+
+        void move() {
+            while (!board.isFree(next))
+                next = (next + 4) % board.getCells();
+            int cell = next;
+            int removed = board.place(player, cell);
+            if (board.wins(player, cell))
+                board.undo(player, cell, removed); // lanjut main, bench tidak peduli menang
+            StringBuilder msg = new StringBuilder(40).append("BOARD_UPDATE|").append(id).append('|');
+            length += board.appendTo(msg).length();
+            player = 1 - player;
+            moves++;
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.tictactoe.server;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * {@link IdleTimer} with many connections.
+ *
+ * Registers N entries; the main thread keeps every even entry busy, the odd
+ * ones go quiet. Checks that exactly the quiet half is evicted, none of them
+ * before the timeout, and that no busy entry is evicted. Reports how late the
+ * last eviction was (one tick of precision plus scheduling), ns per touch
+ * and the longest wheel tick.
+ *
+ * Run: make bench BENCH=server.IdleTimerBenchmark [ARGS="connections timeoutMs tickMs"]
+ */
+public class IdleTimerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long timeoutMs = args.length > 1 ? Long.parseLong(args[1]) : 1_000;
+        long tickMs = args.length > 2 ? Long.parseLong(args[2]) : 50;
+
+        IdleTimer timer = new IdleTimer(timeoutMs, tickMs);
+        long[] evictedAt = new long[n];
+        AtomicIntegerArray evictions = new AtomicIntegerArray(n);
+        IdleTimer.Entry[] entries = new IdleTimer.Entry[n];
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            int id = i;
+            entries[i] = timer.register(() -> {
+                evictedAt[id] = System.nanoTime();
+                evictions.incrementAndGet(id);
+            });
+        }
+
+        // even entry = koneksi aktif, disentuh terus sampai akhir
+        long end = start + (timeoutMs + 4 * tickMs) * 1_000_000L;
+        long touches = 0;
+        long touchNanos = 0;
+        while (System.nanoTime() < end) {
+            long t = System.nanoTime();
+            for (int i = 0; i < n; i += 2)
+                entries[i].touch();
+            touchNanos += System.nanoTime() - t;
+            touches += (n + 1) / 2;
+        }
+
+        int quiet = 0;
+        long late = 0;
+        for (int i = 0; i < n; i++) {
+            int count = evictions.get(i);
+            if (i % 2 == 0 && count != 0)
+                fail("busy entry " + i + " evicted");
+            if (i % 2 == 1) {
+                if (count != 1)
+                    fail("quiet entry " + i + " evicted " + count + " times");
+                long after = (evictedAt[i] - start) / 1_000_000;
+                if (after < timeoutMs)
+                    fail("quiet entry " + i + " evicted after " + after + " ms");
+                late = Math.max(late, after - timeoutMs);
+                quiet++;
+            }
+        }
+        System.out.printf("%,d connections: %,d evicted (latest %d ms after timeout), %,d busy kept%n", n, quiet,
+                late, n - quiet);
+        System.out.printf("touch: %.2f ns (%,d touches)%n", (double) touchNanos / touches, touches);
+        System.out.println(timer.stats());
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,215 @@
+package com.tictactoe.server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * {@link InfinityTable} for 3x3 infinity: generation time, correctness and
+ * lookup cost.
+ *
+ * Writes the table to a temp file and maps it back, then plays random games
+ * and compares every position against a plain depth-limited minimax on
+ * {@link Board} (no table, no hashing): a position the table calls won or
+ * lost in d plies must be exactly that at depth d, and a draw must not be
+ * decided at any depth tried. Also checks that following bestMove from a
+ * won position wins in the promised number of plies.
+ *
+ * Run: make bench BENCH=server.InfinityTableBenchmark [ARGS="games seed"]
+ */
+public class InfinityTableBenchmark {
+
+    private static final int MAX_CHECK_DEPTH = 9;
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        long start = System.nanoTime();
+        InfinityTable generated = InfinityTable.generate(GameRules.CLASSIC);
+        System.out.printf("generate: %d positions in %d ms%n",
+                generated.stateCount(), (System.nanoTime() - start) / 1_000_000);
+
+        Path file = Files.createTempFile("infinity", ".tbl");
+        try {
+            generated.write(file);
+            start = System.nanoTime();
+            InfinityTable table = InfinityTable.load(file);
+            System.out.printf("mmap: %d bytes in %d us%n", Files.size(file), (System.nanoTime() - start) / 1000);
+            for (int s = 0; s < table.stateCount(); s++) {
+                if (table.entry(s) != generated.entry(s))
+                    fail("mapped entry " + s + " differs");
+            }
+            InfinityTableGenerator.printSummary(table);
+
+            int checked = checkRandomGames(table, games, new Random(seed));
+            System.out.println(checked + " positions checked against minimax (seed " + seed + ")");
+            checkBestMovePlay(table, new Random(seed));
+
+            measure(table, new Random(seed));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static int checkRandomGames(InfinityTable table, int games, Random rnd) {
+        int checked = 0;
+        for (int g = 0; g < games; g++) {
+            Board board = new Board(GameRules.CLASSIC);
+            int player = Board.X;
+            for (int turn = 0; turn < 30; turn++) {
+                int entry = table.lookup(board, player);
+                int outcome = InfinityTable.outcomeOf(entry);
+                int dist = InfinityTable.distanceOf(entry);
+                if (outcome == InfinityTable.INVALID || (outcome == InfinityTable.LOSS && dist == 0))
+                    fail("playable position marked terminal: " + show(board, player));
+
+                if (outcome == InfinityTable.DRAW) {
+                    if (solve(board, player, MAX_CHECK_DEPTH) != 0)
+                        fail("table draw is decided by minimax: " + show(board, player));
+                    checked++;
+                } else if (dist <= MAX_CHECK_DEPTH) {
+                    int expected = outcome == InfinityTable.WIN ? dist : -dist;
+                    int actual = solve(board, player, dist);
+                    if (actual != expected)
+                        fail("table " + expected + ", minimax " + actual + ": " + show(board, player));
+                    if (dist > 1 && solve(board, player, dist - 1) != 0)
+                        fail("decided before " + dist + " plies: " + show(board, player));
+                    checked++;
+                }
+
+                int cell = randomFree(board, rnd);
+                board.place(player, cell);
+                if (board.wins(player, cell))
+                    break;
+                player = 1 - player;
+            }
+        }
+        return checked;
+    }
+
+    // dari posisi menang: bestMove vs lawan acak harus menang dalam jumlah ply yang dijanjikan
+    private static void checkBestMovePlay(InfinityTable table, Random rnd) {
+        int games = 0;
+        for (int g = 0; g < 2_000; g++) {
+            Board board = new Board(GameRules.CLASSIC);
+            int player = Board.X;
+            int entry = table.lookup(board, player);
+            int me = player;
+            int plies = 0;
+            while (true) {
+                int cell = player == me ? table.bestMove(board, player) : randomFree(board, rnd);
+                board.place(player, cell);
+                plies++;
+                if (board.wins(player, cell)) {
+                    if (player != me)
+                        fail("bestMove lost a won position");
+                    break;
+                }
+                player = 1 - player;
+                if (plies > InfinityTable.distanceOf(entry))
+                    fail("win took more than " + InfinityTable.distanceOf(entry) + " plies");
+            }
+            games++;
+        }
+        System.out.println(games + " games from the start: bestMove always won in time");
+    }
+
+    private static void measure(InfinityTable table, Random rnd) {
+        Board[] boards = new Board[1024];
+        int[] players = new int[boards.length];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new Board(GameRules.CLASSIC);
+            int player = Board.X;
+            for (int t = rnd.nextInt(12); t > 0; t--) {
+                int cell = randomFree(boards[i], rnd);
+                int removed = boards[i].place(player, cell);
+                if (boards[i].wins(player, cell)) {
+                    boards[i].undo(player, cell, removed);
+                    break;
+                }
+                player = 1 - player;
+            }
+            players[i] = player;
+        }
+
+        long sink = 0;
+        int rounds = 2_000;
+        for (int w = 0; w < 2; w++) { // pertama warmup
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < boards.length; i++) {
+                    sink += table.lookup(boards[i], players[i]);
+                }
+            }
+            long lookupNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int r = 0; r < rounds / 10; r++) {
+                for (int i = 0; i < boards.length; i++) {
+                    sink += table.bestMove(boards[i], players[i]);
+                }
+            }
+            long bestNs = System.nanoTime() - start;
+            if (w == 1) {
+                System.out.printf("lookup  : %6.1f ns%n", (double) lookupNs / rounds / boards.length);
+                System.out.printf("bestMove: %6.1f ns%n", (double) bestNs / (rounds / 10) / boards.length);
+            }
+        }
+        if (sink == 42)
+            System.out.println();
+    }
+
+    /**
+     * Depth-limited minimax for the side to move: +d if it wins in exactly d
+     * plies with best play (shortest win), -d if it loses in d (longest
+     * defence), 0 if not decided within {@code depth} plies.
+     */
+    private static int solve(Board board, int player, int depth) {
+        if (depth == 0)
+            return 0;
+        int bestWin = Integer.MAX_VALUE;
+        int longestLoss = 0;
+        boolean allLose = true;
+        for (int cell = 0; cell < board.getCells(); cell++) {
+            if (!board.isFree(cell))
+                continue;
+            int removed = board.place(player, cell);
+            boolean won = board.wins(player, cell);
+            int r = won ? 0 : solve(board, 1 - player, depth - 1);
+            board.undo(player, cell, removed);
+
+            if (won || r < 0) {
+                // langsung menang, atau lawan kalah dalam -r ply
+                bestWin = Math.min(bestWin, won ? 1 : -r + 1);
+                allLose = false;
+            } else if (r > 0) {
+                longestLoss = Math.max(longestLoss, r + 1);
+            } else {
+                allLose = false;
+            }
+        }
+        if (bestWin <= depth)
+            return bestWin;
+        if (allLose && longestLoss <= depth)
+            return -longestLoss;
+        return 0;
+    }
+
+    private static int randomFree(Board board, Random rnd) {
+        int cell;
+        do {
+            cell = rnd.nextInt(board.getCells());
+        } while (!board.isFree(cell));
+        return cell;
+    }
+
+    private static String show(Board board, int player) {
+        return board.appendTo(new StringBuilder()) + " " + (player == Board.X ? "X" : "O") + " to move";
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,229 @@
+package com.tictactoe.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * {@link GameJournal}: correctness of roll + compaction, then append latency.
+ *
+ * Check: several threads play many games into small segments; most games
+ * finish, some stay open. Afterwards the live games must still have every
+ * move in order, finished games must be in history.log (CREATE + RESULT)
+ * and the segments holding only finished games must be gone. Then a crash
+ * in the middle of a compaction is faked both ways: a leftover intent must
+ * cut history.log back, a leftover tombstone must remove its segment from
+ * the replay and from disk.
+ *
+ * Latency: ns per MOVE append from several threads with group commit,
+ * against forcing the segment after every append (fsync per move).
+ *
+ * Run: make bench BENCH=server.JournalBenchmark [ARGS="games movesPerGame threads"]
+ */
+public class JournalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int movesPerGame = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        Path dir = Files.createTempDirectory("journal-bench");
+        try {
+            check(dir.resolve("check"), games, movesPerGame, threads);
+            crashes(dir.resolve("check"));
+            measure(dir.resolve("latency"), games, movesPerGame, threads);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void check(Path dir, int games, int movesPerGame, int threads) throws Exception {
+        GameJournal journal = GameJournal.open(dir, 64 * 1024, 5, 16 * 1024);
+        GameIds ids = new GameIds(1);
+        long[][] gameIds = new long[threads][];
+        Thread[] t = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            long[] mine = gameIds[i] = new long[games / threads];
+            t[i] = new Thread(() -> {
+                for (int g = 0; g < mine.length; g++) {
+                    mine[g] = ids.next();
+                    journal.created(mine[g], GameRules.CLASSIC, "p" + g, "q" + g);
+                    for (int m = 0; m < movesPerGame; m++)
+                        journal.moved(mine[g], m & 1, m % 9);
+                    // setiap game ke-100 dibiarkan jalan
+                    if (g % 100 != 0)
+                        journal.finished(mine[g], g % 2 == 0 ? GameJournal.WIN : GameJournal.SURRENDER, "p" + g);
+                }
+            });
+            t[i].start();
+        }
+        for (Thread thread : t)
+            thread.join();
+        journal.sync();
+        journal.compact();
+        System.out.println("check: " + journal.stats());
+        journal.close();
+
+        Replay replay = new Replay();
+        List<Long> left = GameJournal.segments(dir);
+        for (long no : left)
+            GameJournal.read(GameJournal.segmentFile(dir, no), replay);
+        long history = GameJournal.read(dir.resolve(GameJournal.HISTORY_FILE), replay);
+
+        int live = 0;
+        for (long[] mine : gameIds) {
+            for (int g = 0; g < mine.length; g++) {
+                Replay.Game game = replay.games.get(mine[g]);
+                if (game == null || !game.created)
+                    fail("CREATE missing for " + GameIds.format(mine[g]));
+                if (g % 100 == 0) {
+                    live++;
+                    if (game.result >= 0)
+                        fail("open game has a result");
+                    if (game.moves != movesPerGame || game.outOfOrder)
+                        fail("open game " + GameIds.format(mine[g]) + ": " + game.moves + " moves replayed");
+                } else if (game.result < 0) {
+                    fail("RESULT missing for " + GameIds.format(mine[g]));
+                }
+            }
+        }
+        if (history == 0 || left.size() > 2 + live)
+            fail(left.size() + " segments left, " + history + " history records");
+        System.out.println("check: " + live + " open games intact, " + left.size() + " segments left, "
+                + history + " history records");
+    }
+
+    private static void crashes(Path dir) throws IOException {
+        Path history = dir.resolve(GameJournal.HISTORY_FILE);
+        List<Long> left = GameJournal.segments(dir);
+        long no = left.get(0);
+        long size = Files.size(history);
+
+        // crash saat append ke history: intent ada, history berisi sampah setelah posisi awal
+        Files.write(dir.resolve(String.format("segment-%010d.compacting", no)),
+                ByteBuffer.allocate(8).putLong(0, size).array());
+        Files.write(history, new byte[100], StandardOpenOption.APPEND);
+        GameJournal.open(dir, 64 * 1024, 5, 16 * 1024).close();
+        if (Files.size(history) != size || !Files.exists(GameJournal.segmentFile(dir, no)))
+            fail("interrupted compaction: history " + Files.size(history) + " bytes, expected " + size);
+
+        // crash setelah history lengkap, sebelum delete: tombstone menang
+        Files.createFile(dir.resolve(String.format("segment-%010d.compacted", no)));
+        if (GameJournal.segments(dir).contains(no))
+            fail("tombstoned segment " + no + " would be replayed");
+        GameJournal.open(dir, 64 * 1024, 5, 16 * 1024).close();
+        if (Files.exists(GameJournal.segmentFile(dir, no)) || Files.size(history) != size)
+            fail("tombstoned segment " + no + " still there or compacted twice");
+        try (Stream<Path> files = Files.list(dir)) {
+            if (files.anyMatch(f -> f.getFileName().toString().contains(".compact")))
+                fail("compaction markers left after open");
+        }
+        System.out.println("check: interrupted compaction undone, tombstoned segment removed without a second copy");
+    }
+
+    private static void measure(Path dir, int games, int movesPerGame, int threads) throws Exception {
+        long moves = (long) games * movesPerGame;
+        for (int round = 0; round < 2; round++) { // pertama warmup
+            GameJournal journal = GameJournal.open(dir.resolve("group" + round), 4 << 20, 10, 256 << 10);
+            long[] lat = run(journal, moves / threads, threads, false);
+            journal.close();
+            if (round == 1)
+                print("group commit (10 ms / 256 KB)", lat, journal);
+        }
+        GameJournal journal = GameJournal.open(dir.resolve("fsync"), 4 << 20, 1000, Integer.MAX_VALUE);
+        long[] lat = run(journal, Math.min(2_000, moves / threads), threads, true);
+        journal.close();
+        print("force after every move", lat, journal);
+    }
+
+    // returns sorted per-append latencies (ns) of all threads
+    private static long[] run(GameJournal journal, long perThread, int threads, boolean forceEach)
+            throws InterruptedException {
+        long[][] lat = new long[threads][(int) perThread];
+        Thread[] t = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            long[] mine = lat[i];
+            long gameId = i;
+            t[i] = new Thread(() -> {
+                for (int m = 0; m < mine.length; m++) {
+                    long start = System.nanoTime();
+                    journal.moved(gameId, m & 1, m % 9);
+                    if (forceEach)
+                        journal.sync();
+                    mine[m] = System.nanoTime() - start;
+                }
+            });
+            t[i].start();
+        }
+        for (Thread thread : t)
+            thread.join();
+        long[] all = new long[threads * (int) perThread];
+        for (int i = 0; i < threads; i++)
+            System.arraycopy(lat[i], 0, all, i * (int) perThread, (int) perThread);
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static void print(String name, long[] lat, GameJournal journal) {
+        long sum = 0;
+        for (long l : lat)
+            sum += l;
+        System.out.printf("%-32s %,10d appends  avg %,9.0f ns  p50 %,9d ns  p99 %,11d ns%n", name, lat.length,
+                (double) sum / lat.length, lat[lat.length / 2], lat[(int) (lat.length * 0.99)]);
+        System.out.println("  " + journal.stats());
+    }
+
+    /** Per-game view of the records read back. */
+    private static final class Replay implements GameJournal.Visitor {
+        final Map<Long, Game> games = new HashMap<>();
+
+        static final class Game {
+            boolean created;
+            int moves;
+            boolean outOfOrder;
+            int result = -1;
+        }
+
+        private Game game(long id) {
+            return games.computeIfAbsent(id, k -> new Game());
+        }
+
+        @Override
+        public void created(long pos, long gameId, long time, GameRules rules, String player1, String player2) {
+            game(gameId).created = true;
+        }
+
+        @Override
+        public void moved(long pos, long gameId, int player, int cell) {
+            Game g = game(gameId);
+            if (player != (g.moves & 1) || cell != g.moves % 9)
+                g.outOfOrder = true;
+            g.moves++;
+        }
+
+        @Override
+        public void finished(long pos, long gameId, long time, int reason, String winner) {
+            game(gameId).result = reason;
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(p);
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,190 @@
+package com.tictactoe.server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * Recovery time of {@link JournalRecovery}.
+ *
+ * Writes about a million journal events (many interleaved games, half of
+ * them finish halfway), then rebuilds the unfinished games from the whole
+ * journal with 1 and N reader threads. Takes a snapshot of the rebuilt
+ * games, appends a tail of more moves and recovers again: now only the
+ * tail is replayed. Every rebuilt board (pieces oldest first, turn) is
+ * compared with the board the writer kept.
+ *
+ * Run: make bench BENCH=server.JournalRecoveryBenchmark [ARGS="games movesPerGame tailMoves"]
+ */
+public class JournalRecoveryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int movesPerGame = args.length > 1 ? Integer.parseInt(args[1]) : 66;
+        int tailMoves = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        Path dir = Files.createTempDirectory("journal-recovery");
+        try {
+            ServerState state = new ServerState(ServerConfig.load(new String[] {
+                    "--bot.enabled=false", "--journal.enabled=false" }));
+            GameJournal journal = GameJournal.open(dir, 16 << 20, 10, 256 << 10);
+
+            Map<Long, Ref> refs = new HashMap<>();
+            long events = write(journal, refs, games, movesPerGame);
+            journal.sync();
+            System.out.println(events + " events, " + refs.size() + " games open, "
+                    + GameJournal.segments(dir).size() + " segments");
+
+            JournalRecovery.Replay full = null;
+            for (int threads : new int[] { 1, 1, Math.max(2, cores) }) { // pertama warmup
+                full = timed("full journal, " + threads + " thread(s)", dir, state, threads, refs);
+            }
+
+            // hasil recovery jadi game yang jalan, lalu snapshot + tail
+            for (GameRoom game : full.games)
+                state.restoreGame(game);
+            long start = System.nanoTime();
+            if (!new JournalRecovery(state, journal, 0, 0).snapshot())
+                fail("snapshot timed out");
+            System.out.printf("snapshot of %d games: %.1f ms%n", full.games.size(),
+                    (System.nanoTime() - start) / 1e6);
+
+            long tail = 0;
+            Random rnd = new Random(3);
+            for (int m = 0; m < tailMoves; m++) {
+                for (Map.Entry<Long, Ref> e : refs.entrySet())
+                    tail += e.getValue().move(journal, e.getKey(), rnd);
+            }
+            journal.sync();
+            System.out.println(tail + " tail events after the snapshot");
+            timed("snapshot + tail, " + Math.max(2, cores) + " thread(s)", dir, state, Math.max(2, cores), refs);
+            journal.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static long write(GameJournal journal, Map<Long, Ref> refs, int games, int movesPerGame) {
+        GameIds ids = new GameIds(2);
+        Random rnd = new Random(1);
+        long[] gameIds = new long[games];
+        Ref[] all = new Ref[games];
+        long events = 0;
+        for (int g = 0; g < games; g++) {
+            // campuran varian: 3x3 infinity dan 15x15 tanpa limit
+            GameRules rules = g % 4 == 0 ? new GameRules(15, 5, 0) : GameRules.CLASSIC;
+            gameIds[g] = ids.next();
+            all[g] = new Ref(rules);
+            journal.created(gameIds[g], rules, "p" + g, "q" + g);
+            events++;
+        }
+        for (int m = 0; m < movesPerGame; m++) {
+            for (int g = 0; g < games; g++) {
+                if (all[g] == null)
+                    continue;
+                events += all[g].move(journal, gameIds[g], rnd);
+                // separuh game selesai di tengah jalan
+                if (m == movesPerGame / 2 && g % 2 == 1) {
+                    journal.finished(gameIds[g], GameJournal.SURRENDER, "p" + g);
+                    events++;
+                    all[g] = null;
+                }
+            }
+        }
+        for (int g = 0; g < games; g++) {
+            if (all[g] != null)
+                refs.put(gameIds[g], all[g]);
+        }
+        return events;
+    }
+
+    private static JournalRecovery.Replay timed(String name, Path dir, ServerState state, int threads,
+            Map<Long, Ref> refs) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        JournalRecovery.Replay replay = JournalRecovery.replay(dir, state, threads);
+        double ms = (System.nanoTime() - start) / 1e6;
+        System.out.printf("  %-34s %,9d events replayed, %,6d games (%d from snapshot): %8.1f ms%n", name,
+                replay.events, replay.games.size(), replay.fromSnapshot, ms);
+        verify(replay.games, refs);
+        return replay;
+    }
+
+    private static void verify(List<GameRoom> games, Map<Long, Ref> refs) throws InterruptedException {
+        if (games.size() != refs.size())
+            fail(games.size() + " games rebuilt, " + refs.size() + " open");
+        CountDownLatch done = new CountDownLatch(games.size());
+        String[] error = new String[1];
+        for (GameRoom game : games) {
+            game.resume(); // baru IN_PROGRESS yang punya giliran
+            game.execute(() -> {
+                try {
+                    Ref ref = refs.get(game.getId());
+                    Board board = game.copyBoard();
+                    String turn = game.getCurrentTurn();
+                    if (ref == null || turn == null || !ref.matches(board, game.playerIndex(turn)))
+                        error[0] = game.getGameId();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        if (error[0] != null)
+            fail("board of " + error[0] + " differs");
+    }
+
+    /** The writer's own copy of a game. */
+    private static final class Ref {
+        final Board board;
+        int player = Board.X;
+
+        Ref(GameRules rules) {
+            this.board = new Board(rules);
+        }
+
+        int move(GameJournal journal, long gameId, Random rnd) {
+            int cell;
+            do {
+                cell = rnd.nextInt(board.getCells());
+            } while (!board.isFree(cell));
+            board.place(player, cell);
+            journal.moved(gameId, player, cell);
+            player = 1 - player;
+            return 1;
+        }
+
+        boolean matches(Board other, int turn) {
+            if (turn != player)
+                return false;
+            for (int p = Board.X; p <= Board.O; p++) {
+                if (other.getPieceCount(p) != board.getPieceCount(p))
+                    return false;
+                for (int age = 0; age < board.getPieceCount(p); age++) {
+                    if (other.pieceAt(p, age) != board.pieceAt(p, age))
+                        return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(p);
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
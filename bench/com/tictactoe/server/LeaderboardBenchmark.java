@@ -0,0 +1,130 @@
+package com.tictactoe.server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * {@link Ratings}: rating updates and LEADERBOARD queries with many players.
+ *
+ * Plays random games between N players (the higher rated one wins more
+ * often, so the ratings spread out), keeping its own copy of every rating.
+ * Checks: "my rank" and the top K agree with a full sort of that copy, and a
+ * flushed file loads back to the same leaderboard. Reports ns per rated game,
+ * per LEADERBOARD and, for comparison, per full sort of all ratings (what a
+ * leaderboard without an index would cost per request).
+ *
+ * Run: make bench BENCH=server.LeaderboardBenchmark [ARGS="players games queries"]
+ */
+public class LeaderboardBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+
+        Ratings ratings = new Ratings(null, 32, 100, 1000);
+        String[] names = new String[n];
+        int[] copy = new int[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = "p" + i;
+            copy[i] = Ratings.INITIAL;
+        }
+
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            int x = random.nextInt(n);
+            int o = random.nextInt(n - 1);
+            if (o >= x)
+                o++;
+            // pemain "kuat" (id kecil) lebih sering menang
+            double pWin = 0.5 + 0.4 * (o - x) / (double) n;
+            double r = random.nextDouble();
+            int[] delta = ratings.record(names[x], names[o], r < pWin - 0.05 ? 1 : r < pWin + 0.05 ? 0.5 : 0);
+            copy[x] += delta[0];
+            copy[o] += delta[1];
+        }
+        long recordNanos = System.nanoTime() - start;
+
+        // cek rank dan top 10 terhadap sort penuh
+        int[] sorted = copy.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < 1_000; i++) {
+            int p = random.nextInt(n);
+            int higher = sorted.length - upperBound(sorted, copy[p]);
+            if (ratings.rank(names[p]) != higher + 1)
+                fail(names[p] + " rank " + ratings.rank(names[p]) + ", expected " + (higher + 1));
+            if (ratings.get(names[p]) != copy[p])
+                fail(names[p] + " rating " + ratings.get(names[p]) + ", expected " + copy[p]);
+        }
+        String board = ratings.leaderboard(names[0], 10);
+        String[] top = board.split("\\|")[3].split(",");
+        if (top.length != 10)
+            fail("top 10 has " + top.length + " entries: " + board);
+        for (int i = 0; i < top.length; i++) {
+            int rating = Integer.parseInt(top[i].substring(0, top[i].indexOf(':')));
+            if (rating != sorted[n - 1 - i])
+                fail("top " + (i + 1) + " is " + top[i] + ", expected rating " + sorted[n - 1 - i]);
+            if (copy[Integer.parseInt(top[i].substring(top[i].indexOf(':') + 2))] != rating)
+                fail(top[i] + " does not have that rating");
+        }
+        System.out.println("check: rank, rating and top 10 match a full sort; " + board.substring(0, 40) + "...");
+
+        // file: flush lalu load ulang
+        Path file = Files.createTempFile("ratings", ".dat");
+        Files.delete(file); // file kosong bukan file rating yang valid
+        try {
+            Ratings saved = new Ratings(file, 32, 100, 3_600_000);
+            for (int i = 0; i < 1_000; i++)
+                saved.record(names[i], names[i + 1], i % 3 == 0 ? 0.5 : 1);
+            saved.flush();
+            Ratings loaded = new Ratings(file, 32, 100, 3_600_000);
+            if (!loaded.leaderboard(names[500], 100).equals(saved.leaderboard(names[500], 100)))
+                fail("leaderboard differs after reload");
+            System.out.println("check: " + Files.size(file) + " byte file loads back to the same leaderboard");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        long sink = 0;
+        start = System.nanoTime();
+        for (int q = 0; q < queries; q++)
+            sink += ratings.leaderboard(names[random.nextInt(n)], 10).length();
+        long queryNanos = System.nanoTime() - start;
+
+        int sorts = 50;
+        start = System.nanoTime();
+        for (int q = 0; q < sorts; q++) {
+            int[] all = copy.clone();
+            Arrays.sort(all);
+            sink += all[n - 1];
+        }
+        long sortNanos = System.nanoTime() - start;
+
+        System.out.printf("%,d players, %,d games: %.0f ns per rated game%n", n, games, (double) recordNanos / games);
+        System.out.printf("LEADERBOARD|10 with rank: %.0f ns, full sort per request: %.0f ns (%d)%n",
+                (double) queryNanos / queries, (double) sortNanos / sorts, sink % 10);
+        System.out.println(ratings.stats());
+    }
+
+    // index of the first value > v
+    private static int upperBound(int[] sorted, int v) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= v)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.tictactoe.server;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link Matchmaker} under synthetic load, without sockets or games.
+ *
+ * Ratings are normally distributed around 1500 (sd 200, clamped to
+ * 1000..2000 so every pair fits in the default match.maxWindow) and spread
+ * over two variants. Phase 1 enqueues at a steady rate and reports the time
+ * to match; phase 2 enqueues a burst as fast as possible and reports how many
+ * enqueue + match operations per second the matchmaker thread gets through.
+ * Checks: nobody is paired twice or with the other variant, every pair is
+ * inside the window, and everybody gets paired in the end.
+ *
+ * Run: make bench BENCH=server.MatchmakerBenchmark [ARGS="ratePerSec seconds burst"]
+ */
+public class MatchmakerBenchmark {
+
+    private static final GameRules[] VARIANTS = { GameRules.CLASSIC, new GameRules(15, 5, 0) };
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int burst = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+
+        run("steady", rate * seconds, rate);
+        run("burst", burst, 0);
+        System.exit(0);
+    }
+
+    // rate 0 = secepat mungkin
+    private static void run(String phase, int n, int rate) throws InterruptedException {
+        n &= ~(VARIANTS.length * 2 - 1); // genap per varian, supaya semua dapat lawan
+        Random random = new Random(42);
+        int[] ratings = new int[n];
+        for (int i = 0; i < n; i++)
+            ratings[i] = (int) Math.max(1000, Math.min(2000, 1500 + random.nextGaussian() * 200));
+
+        long[] waitNanos = new long[n];
+        AtomicIntegerArray pairedCount = new AtomicIntegerArray(n);
+        CountDownLatch done = new CountDownLatch(n / 2);
+        int maxWindow = 1000;
+        Matchmaker matchmaker = new Matchmaker(50, 100, 100, maxWindow, 250, new Matchmaker.Pairing() {
+            @Override
+            public boolean available(Matchmaker.Ticket t) {
+                return true;
+            }
+
+            @Override
+            public boolean paired(Matchmaker.Ticket x, Matchmaker.Ticket o) {
+                long now = System.nanoTime();
+                int a = Integer.parseInt(x.username);
+                int b = Integer.parseInt(o.username);
+                if (pairedCount.incrementAndGet(a) != 1 || pairedCount.incrementAndGet(b) != 1)
+                    fail(x.username + " or " + o.username + " paired twice");
+                if (!x.rules.equals(o.rules))
+                    fail(x.username + " and " + o.username + " paired across variants");
+                if (Math.abs(x.rating - o.rating) > maxWindow)
+                    fail(x.username + " and " + o.username + " are " + Math.abs(x.rating - o.rating) + " apart");
+                if (x.enqueuedAt > o.enqueuedAt)
+                    fail(x.username + " plays X but waited less");
+                waitNanos[a] = now - x.enqueuedAt;
+                waitNanos[b] = now - o.enqueuedAt;
+                done.countDown();
+                return true;
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            if (rate > 0) {
+                long due = start + (long) i * 1_000_000_000L / rate;
+                long wait = due - System.nanoTime();
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
+            }
+            matchmaker.enqueue(Integer.toString(i), ratings[i], VARIANTS[i % VARIANTS.length]);
+        }
+        long enqueued = System.nanoTime() - start;
+        if (!done.await(60, TimeUnit.SECONDS))
+            fail(phase + ": only " + (n / 2 - done.getCount()) + " of " + n / 2 + " pairs after 60 s ("
+                    + matchmaker.stats() + ")");
+        long took = System.nanoTime() - start;
+
+        Arrays.sort(waitNanos);
+        System.out.printf("%s: %,d players in %.2f s (enqueue %.2f s), %,.0f enqueue+match ops/s%n", phase, n,
+                took / 1e9, enqueued / 1e9, (n + n / 2) / (took / 1e9));
+        System.out.printf("  time to match: median %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                pct(waitNanos, 50), pct(waitNanos, 90), pct(waitNanos, 99), waitNanos[n - 1] / 1e6);
+        System.out.println("  " + matchmaker.stats());
+    }
+
+    private static double pct(long[] sorted, int p) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) sorted.length * p / 100)] / 1e6;
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
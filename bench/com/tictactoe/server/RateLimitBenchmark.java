@@ -0,0 +1,145 @@
+package com.tictactoe.server;
+
+import com.tictactoe.protocol.FrameDecoder;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RateLimits} against a scripted client.
+ *
+ * Checks with the default limits: a CHAT_GLOBAL burst gets through up to the
+ * chat burst size and then the sender gets one RATE_LIMITED, the bucket
+ * refills over time, and a client that keeps flooding REQ_USER_LIST is
+ * disconnected and logged out. Then one client floods CHAT_GLOBAL at N other
+ * users, once with and once without limits, and reports how many chat frames
+ * reached the others and how long the flood kept the server busy.
+ *
+ * Run: make bench BENCH=server.RateLimitBenchmark [ARGS="users floodMessages"]
+ */
+public class RateLimitBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int flood = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        check();
+        for (boolean enabled : new boolean[] { false, true }) {
+            ServerState state = state("--rate.enabled=" + enabled);
+            Fake attacker = login(state, "attacker");
+            for (int i = 0; i < users; i++)
+                login(state, "u" + i);
+            long before = Fake.chats.get();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < flood && state.getUser("attacker") != null; i++)
+                attacker.feed("CHAT_GLOBAL|spam " + i);
+            long took = System.nanoTime() - start;
+            System.out.printf("limits %-3s: %,d CHAT_GLOBAL -> %,d chat frames to %,d users in %.1f ms%s%n",
+                    enabled ? "on" : "off", flood, Fake.chats.get() - before, users, took / 1e6,
+                    state.getUser("attacker") == null ? " (attacker disconnected)" : "");
+            if (enabled)
+                System.out.println(state.getRateLimitStats());
+        }
+        System.exit(0);
+    }
+
+    private static void check() throws InterruptedException {
+        ServerState state = state();
+        Fake a = login(state, "a");
+        login(state, "b");
+
+        long chats = Fake.chats.get();
+        for (int i = 0; i < 10; i++)
+            a.feed("CHAT_GLOBAL|hi " + i);
+        // a dan b masing-masing dapat 5 (rate.chat.burst)
+        if (Fake.chats.get() - chats != 10)
+            fail("burst delivered " + (Fake.chats.get() - chats) + " chat frames, expected 10");
+        if (a.count("RATE_LIMITED|CHAT_GLOBAL") != 1)
+            fail("got " + a.count("RATE_LIMITED|CHAT_GLOBAL") + " RATE_LIMITED, expected 1");
+
+        Thread.sleep(600); // rate.chat.perSec=2: satu token lagi
+        chats = Fake.chats.get();
+        a.feed("CHAT_GLOBAL|again");
+        if (Fake.chats.get() - chats != 2)
+            fail("refilled bucket delivered " + (Fake.chats.get() - chats) + " chat frames, expected 2");
+        System.out.println("check: chat burst of 5, then one RATE_LIMITED, then refilled");
+
+        int sent = 0;
+        while (state.getUser("a") != null && sent < 1_000) {
+            a.feed("REQ_USER_LIST");
+            sent++;
+        }
+        if (state.getUser("a") != null)
+            fail("flooder still logged in after " + sent + " REQ_USER_LIST");
+        System.out.println("check: REQ_USER_LIST flooder disconnected after " + sent + " messages");
+    }
+
+    private static ServerState state(String... extra) {
+        String[] args = new String[3 + extra.length];
+        args[0] = "--bot.enabled=false";
+        args[1] = "--journal.enabled=false";
+        args[2] = "--rating.file=";
+        System.arraycopy(extra, 0, args, 3, extra.length);
+        return new ServerState(ServerConfig.load(args));
+    }
+
+    private static Fake login(ServerState state, String name) {
+        Fake f = new Fake(state);
+        f.feed("LOGIN|" + name);
+        return f;
+    }
+
+    /** Handler without a socket; messages go through the decoder and the dispatcher like real input. */
+    private static final class Fake extends ClientHandler {
+        static final AtomicLong chats = new AtomicLong();
+
+        private final FrameDecoder decoder = new FrameDecoder();
+        private final List<String> replies = new ArrayList<>();
+
+        Fake(ServerState state) {
+            super((Socket) null, state, null);
+        }
+
+        void feed(String msg) {
+            try {
+                decoder.feed(ByteBuffer.wrap((msg + "\n").getBytes(StandardCharsets.UTF_8)), getDispatcher());
+            } catch (IOException e) {
+                fail("decoder: " + e);
+            }
+        }
+
+        @Override
+        void write(ByteBuffer frame) {
+            byte first = frame.get(frame.position());
+            if (first == 'C') { // CHAT_GLOBAL_FROM: cukup dihitung
+                chats.incrementAndGet();
+                return;
+            }
+            if (first != 'R')
+                return;
+            ByteBuffer b = frame.duplicate();
+            byte[] bytes = new byte[b.remaining()];
+            b.get(bytes);
+            replies.add(new String(bytes, StandardCharsets.UTF_8).trim());
+        }
+
+        int count(String reply) {
+            int n = 0;
+            for (String r : replies)
+                if (r.equals(reply))
+                    n++;
+            return n;
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,170 @@
+package com.tictactoe.server;
+
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link Session}: replay correctness, then the cost of sending through it.
+ *
+ * Check: frames of 1..3 messages ("M|n", n = session seq) go into a small
+ * ring. Resuming from any seq must produce RESUME_OK|name|s followed by
+ * exactly the messages s+1 .. sent, in order, with s <= the resume point;
+ * a resume point older than the ring must be reported as GAP. A second
+ * ring bounded by bytes must never keep more than its limit, and a frame
+ * sent as a snapshot (not kept) must turn every resume from before it into
+ * a GAP while later frames still replay.
+ *
+ * Cost: ns per frame for ClientHandler.sendFrame with and without a
+ * session (the handler has no socket, so only the session bookkeeping is
+ * measured).
+ *
+ * Run: make bench BENCH=server.SessionBenchmark [ARGS="frames replayFrames"]
+ */
+public class SessionBenchmark {
+
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int replayFrames = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        check(replayFrames);
+        checkBytes();
+        measure(frames, replayFrames);
+    }
+
+    private static void check(int replayFrames) {
+        ServerState state = new ServerState(ServerConfig.load(new String[] {
+                "--bot.enabled=false", "--journal.enabled=false" }));
+        Session session = new Session("t", "alice", false, replayFrames, Integer.MAX_VALUE);
+        Random rnd = new Random(7);
+        long sent = 0;
+        int resumes = 0;
+        int gaps = 0;
+        for (int f = 0; f < replayFrames * 20; f++) {
+            int n = 1 + rnd.nextInt(3);
+            StringBuilder msg = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                if (i > 0)
+                    msg.append('\n');
+                msg.append("M|").append(++sent);
+            }
+            session.send(Frame.encode(msg.toString(), false), Frame.messages(msg.toString()));
+
+            if (f % 17 != 0)
+                continue;
+            long from = Math.max(0, sent - rnd.nextInt(replayFrames * 3));
+            Capture capture = new Capture(state);
+            int result = session.resume(capture, from, new ClientHandler[1]);
+            resumes++;
+            List<String> lines = capture.lines();
+            if (lines.isEmpty() || !lines.get(0).startsWith("RESUME_OK|alice|"))
+                fail("no RESUME_OK: " + lines);
+            long seq = Long.parseLong(lines.get(0).substring("RESUME_OK|alice|".length()));
+            if (result == Session.GAP) {
+                gaps++;
+                if (seq != sent || lines.size() != 1 || sent - from < replayFrames)
+                    fail("bad gap from " + from + " (sent " + sent + "): " + lines);
+                continue;
+            }
+            if (result != Session.REPLAYED || seq > from)
+                fail("resume from " + from + " started at " + seq);
+            for (int i = 1; i < lines.size(); i++) {
+                if (!lines.get(i).equals("M|" + (seq + i)))
+                    fail("resume from " + from + ": line " + i + " is " + lines.get(i));
+            }
+            if (seq + lines.size() - 1 != sent)
+                fail("resume from " + from + " ended at " + (seq + lines.size() - 1) + ", sent " + sent);
+        }
+        if (session.resume(new Capture(state), sent + 1, new ClientHandler[1]) != Session.INVALID)
+            fail("resume from the future accepted");
+        System.out.println("check: " + resumes + " resumes (" + gaps + " gaps) over " + sent + " messages ok");
+    }
+
+    private static void checkBytes() {
+        ServerState state = new ServerState(ServerConfig.load(new String[] {
+                "--bot.enabled=false", "--journal.enabled=false" }));
+        int limit = 1000;
+        Session session = new Session("t", "alice", false, 256, limit);
+        Random rnd = new Random(11);
+        StringBuilder pad = new StringBuilder();
+        long sent = 0;
+        for (int f = 0; f < 5_000; f++) {
+            pad.setLength(0);
+            for (int i = rnd.nextInt(300); i > 0; i--)
+                pad.append('x');
+            String msg = "M|" + ++sent + "|" + pad;
+            session.send(Frame.encode(msg, false), 1);
+            if (session.keptBytes() > limit)
+                fail(session.keptBytes() + " bytes kept, limit " + limit);
+        }
+
+        long before = sent;
+        session.send(Frame.encode("M|" + ++sent + "|snapshot", false), 1, false);
+        for (int i = 0; i < 3; i++)
+            session.send(Frame.encode("M|" + ++sent, false), 1);
+        if (session.resume(new Capture(state), before, new ClientHandler[1]) != Session.GAP)
+            fail("resume from before a snapshot frame was not a GAP");
+        Capture after = new Capture(state);
+        if (session.resume(after, before + 1, new ClientHandler[1]) != Session.REPLAYED
+                || after.lines().size() != 4 || !after.lines().get(3).equals("M|" + sent))
+            fail("resume after a snapshot frame: " + after.lines());
+        System.out.println("check: ring stays under " + limit + " bytes; snapshot frames are not kept and force a GAP");
+    }
+
+    private static void measure(int frames, int replayFrames) {
+        ServerState state = new ServerState(ServerConfig.load(new String[] {
+                "--bot.enabled=false", "--journal.enabled=false" }));
+        ByteBuffer frame = Frame.encodeShared("CHAT_GLOBAL_FROM|bob|hello", false);
+        for (int round = 0; round < 2; round++) { // pertama warmup
+            ClientHandler raw = new ClientHandler((Socket) null, state, null);
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++)
+                raw.sendFrame(frame.duplicate(), 1);
+            double rawNs = (double) (System.nanoTime() - start) / frames;
+
+            Session session = new Session("t", "alice", false, replayFrames, 64 * 1024);
+            session.attach(raw);
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++)
+                session.send(frame.duplicate(), 1);
+            double sessionNs = (double) (System.nanoTime() - start) / frames;
+
+            if (round == 1)
+                System.out.printf("send %,d frames: raw %.1f ns/frame, session (%d frames ring) %.1f ns/frame%n",
+                        frames, rawNs, replayFrames, sessionNs);
+        }
+    }
+
+    /** Handler that keeps what would go to its socket. */
+    private static final class Capture extends ClientHandler {
+        private final StringBuilder out = new StringBuilder();
+
+        Capture(ServerState state) {
+            super((Socket) null, state, null);
+        }
+
+        @Override
+        void write(ByteBuffer frame) {
+            byte[] bytes = new byte[frame.remaining()];
+            frame.get(bytes);
+            out.append(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        List<String> lines() {
+            List<String> lines = new ArrayList<>();
+            for (String line : out.toString().split("\n")) {
+                if (!line.isEmpty())
+                    lines.add(line);
+            }
+            return lines;
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
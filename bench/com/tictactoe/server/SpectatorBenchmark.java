@@ -0,0 +1,161 @@
+package com.tictactoe.server;
+
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of one featured game to many spectators ({@link Spectators}).
+ *
+ * N spectators watch a 15x15 game, every 10th one reports a full outbound
+ * queue during the first phase. Checks: fast spectators get every board,
+ * slow ones get none while slow and exactly the newest one once their
+ * backlog is gone, and everybody gets the result. Reports the time from a
+ * move to the end of its fan-out on the shard thread.
+ *
+ * Run: make bench BENCH=server.SpectatorBenchmark [ARGS="spectators moves"]
+ */
+public class SpectatorBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int spectators = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        ServerState state = new ServerState(ServerConfig.load(new String[] {
+                "--bot.enabled=false", "--journal.enabled=false", "--rating.file=" }));
+        Fake x = login(state, "x");
+        Fake o = login(state, "o");
+        GameRoom game = state.createGame("x", "o", new GameRules(15, 5, 0));
+        game.startGame();
+
+        List<Fake> watchers = new ArrayList<>();
+        for (int i = 0; i < spectators; i++) {
+            Fake w = login(state, "w" + i);
+            w.slow = w.wasSlow = i % 10 == 0;
+            w.handleMessage("WATCH|" + game.getGameId());
+            watchers.add(w);
+        }
+        sync(game);
+
+        // fase 1: spectator lambat tidak dapat board
+        int move = 0;
+        for (; move < moves / 3; move++) {
+            play(game, move, move % 2 == 0 ? x : o);
+            sync(game); // giliran berikutnya baru terlihat setelah langkah ini diproses
+        }
+        String board = lastBoard(x);
+        for (Fake w : watchers)
+            w.slow = false;
+        Thread.sleep(200); // watch.retryMs
+        sync(game);
+
+        for (Fake w : watchers) {
+            // WATCH_START + board awal + setiap board, atau cuma yang terbaru
+            int expect = 2 + (w.wasSlow ? 1 : moves / 3);
+            if (w.frames.size() != expect)
+                fail(w.name + " got " + w.frames.size() + " frames, expected " + expect);
+            if (!lastBoard(w).equals(board))
+                fail(w.name + " has board " + lastBoard(w) + ", expected " + board);
+        }
+        System.out.println("check: " + spectators / 10 + " slow spectators got only the newest board after "
+                + moves / 3 + " moves");
+
+        // fase 2: fan-out penuh, diukur per langkah
+        long total = 0;
+        long max = 0;
+        int timed = 0;
+        for (; move < moves; move++) {
+            long start = System.nanoTime();
+            play(game, move, move % 2 == 0 ? x : o);
+            sync(game);
+            long took = System.nanoTime() - start;
+            total += took;
+            max = Math.max(max, took);
+            timed++;
+        }
+        game.surrender("x");
+        sync(game);
+        for (Fake w : watchers) {
+            String last = w.text(w.frames.size() - 1);
+            if (!last.equals("GAME_RESULT|" + game.getGameId() + "|WINNER|o"))
+                fail(w.name + " ended with " + last);
+        }
+        System.out.printf("%,d spectators: %.1f us per move (max %.1f us), %s%n", spectators,
+                total / 1e3 / timed, max / 1e3, state.getSpectatorStats());
+        System.exit(0);
+    }
+
+    // sel yang tidak pernah bersebelahan: tidak ada yang menang sebelum surrender
+    private static void play(GameRoom game, int move, Fake player) {
+        int i = move / 2;
+        int r = 2 * (i / 7) + (move % 2);
+        int c = 2 * (i % 7) + (move % 2);
+        game.processMove(player.name, r * 15 + c);
+    }
+
+    private static void sync(GameRoom game) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        game.execute(done::countDown);
+        if (!done.await(10, TimeUnit.SECONDS))
+            fail("shard stuck");
+    }
+
+    private static String lastBoard(Fake f) {
+        for (int i = f.frames.size() - 1; i >= 0; i--) {
+            String line = f.text(i);
+            if (line.startsWith("BOARD_UPDATE|"))
+                return line;
+        }
+        return "";
+    }
+
+    private static Fake login(ServerState state, String name) {
+        Fake f = new Fake(state, name);
+        f.handleMessage("LOGIN|" + name);
+        f.frames.clear();
+        return f;
+    }
+
+    /** Handler without a socket that keeps its frames and can pretend to be slow. */
+    private static final class Fake extends ClientHandler {
+        final String name;
+        final List<ByteBuffer> frames = new ArrayList<>();
+        volatile boolean slow;
+        boolean wasSlow;
+
+        Fake(ServerState state, String name) {
+            super((Socket) null, state, null);
+            this.name = name;
+        }
+
+        @Override
+        void write(ByteBuffer frame) {
+            if (frame.get(frame.position()) == 'U')
+                return; // presence (USER_LIST / USER_JOINED) tidak dihitung
+            synchronized (frames) {
+                frames.add(frame);
+            }
+        }
+
+        @Override
+        long getTransportBacklog() {
+            return slow ? Long.MAX_VALUE : 0;
+        }
+
+        String text(int i) {
+            ByteBuffer b = frames.get(i).duplicate();
+            byte[] bytes = new byte[b.remaining()];
+            b.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    private static void fail(String msg) {
+        System.out.println("FAIL: " + msg);
+        System.exit(1);
+    }
+}
@@ -1,4 +1,4 @@
 #!/bin/bash
 # Script untuk menjalankan Server
 echo "Starting Server..."
-java -cp bin com.tictactoe.server.ServerMain
+java -cp bin com.tictactoe.server.ServerMain "$@"
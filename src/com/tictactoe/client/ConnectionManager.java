@@ -1,8 +1,14 @@
 package com.tictactoe.client;
 
+import com.tictactoe.protocol.BinaryCodec;
+import com.tictactoe.protocol.FrameDecoder;
+import com.tictactoe.protocol.TextCodec;
+
 import javax.swing.SwingUtilities;
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.*;
 
 public class ConnectionManager {
@@ -12,9 +18,26 @@ public class ConnectionManager {
         void onConnectionLost();
     }
 
+    // backoff reconnect: 250 ms, 500 ms, ... maksimal 5 s (plus jitter)
+    private static final long RECONNECT_MIN_MS = 250;
+    private static final long RECONNECT_MAX_MS = 5_000;
+
+    private String host;
+    private int port;
     private Socket socket;
-    private BufferedReader input;
-    private PrintWriter output;
+    private InputStream input;
+    private OutputStream output;
+
+    // dari SESSION|token|graceMs; null = server tanpa resume (atau session habis)
+    private volatile String token;
+    private volatile long graceMs;
+    // seq pesan terakhir yang diterima, dikirim balik di RESUME|token|seq
+    private volatile long received;
+    // true setelah disconnect(): receiver berhenti tanpa reconnect
+    private volatile boolean closing;
+
+    // true setelah server membalas LOGIN_OK|name|bin
+    private volatile boolean binary;
 
     private volatile MessageListener messageListener;
 
@@ -30,11 +53,10 @@ public class ConnectionManager {
     }
 
     public boolean connect(String host, int port) {
+        this.host = host;
+        this.port = port;
         try {
-            socket = new Socket(host, port);
-            input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            output = new PrintWriter(socket.getOutputStream(), true);
-
+            open();
             startReceiver();
             startHeartbeat();
             return true;
@@ -45,29 +67,117 @@ public class ConnectionManager {
         }
     }
 
+    private synchronized void open() throws IOException {
+        socket = new Socket(host, port);
+        input = new BufferedInputStream(socket.getInputStream());
+        output = new BufferedOutputStream(socket.getOutputStream());
+    }
+
     private void startReceiver() {
+        InputStream in = input;
         receiverExecutor.submit(() -> {
             try {
-                String line;
-                while ((line = input.readLine()) != null) {
-                    final String msg = line; // penting: final untuk lambda
-
-                    SwingUtilities.invokeLater(() -> {
-                        MessageListener listener = messageListener;
-                        if (listener != null) {
-                            listener.onMessageReceived(msg);
-                        }
-                    });
+                // server bisa kirim text line dan binary frame, decoder menerima keduanya
+                FrameDecoder decoder = new FrameDecoder();
+                byte[] buf = new byte[4096];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    decoder.feed(ByteBuffer.wrap(buf, 0, n), this::received);
                 }
             } catch (IOException e) {
                 System.err.println("[CLIENT] Connection lost: " + e.getMessage());
             } finally {
-                SwingUtilities.invokeLater(() -> {
-                    MessageListener listener = messageListener;
-                    if (listener != null) {
-                        listener.onConnectionLost();
-                    }
-                });
+                if (closing || token == null) {
+                    connectionLost();
+                } else {
+                    // session masih ditahan server selama graceMs: sambung lagi tanpa login
+                    reconnect(0, System.currentTimeMillis() + graceMs);
+                }
+            }
+        });
+    }
+
+    private boolean received(String[] parts) {
+        switch (parts[0]) {
+            case "LOGIN_OK":
+                if (parts.length >= 3 && parts[2].equals(BinaryCodec.LOGIN_OPTION)) {
+                    binary = true;
+                }
+                break;
+
+            case "SESSION":
+                // SESSION|token|graceMs, selalu pesan nomor 1 dari session
+                token = parts[1];
+                graceMs = Long.parseLong(parts[2]);
+                received = 1;
+                return true;
+
+            case "RESUME_OK":
+                // RESUME_OK|name|seq: pesan sesudahnya mulai dari seq + 1 (replay dulu)
+                received = Long.parseLong(parts[2]);
+                System.out.println("[CLIENT] Session resumed at " + received);
+                return true;
+
+            case "RESUME_FAIL":
+                System.err.println("[CLIENT] Resume failed: " + parts[parts.length - 1]);
+                token = null;
+                closing = true;
+                closeSocket();
+                return false;
+
+            case "PONG":
+            case "LOGIN_FAIL":
+                break;
+
+            default:
+                received++;
+                break;
+        }
+
+        final String msg = TextCodec.join(parts); // penting: final untuk lambda
+
+        SwingUtilities.invokeLater(() -> {
+            MessageListener listener = messageListener;
+            if (listener != null) {
+                listener.onMessageReceived(msg);
+            }
+        });
+        return true;
+    }
+
+    private void reconnect(int attempt, long deadline) {
+        synchronized (this) {
+            output = null; // pesan selama putus dibuang, seperti error kirim biasa
+        }
+        long delay = Math.min(RECONNECT_MAX_MS, RECONNECT_MIN_MS << Math.min(attempt, 5));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        if (closing || System.currentTimeMillis() + delay > deadline) {
+            connectionLost();
+            return;
+        }
+
+        heartbeatExecutor.schedule(() -> {
+            if (closing) {
+                connectionLost();
+                return;
+            }
+            try {
+                open();
+            } catch (IOException e) {
+                System.err.println("[CLIENT] Reconnect failed: " + e.getMessage());
+                reconnect(attempt + 1, deadline);
+                return;
+            }
+            startReceiver();
+            sendMessage("RESUME|" + token + "|" + received);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void connectionLost() {
+        SwingUtilities.invokeLater(() -> {
+            MessageListener listener = messageListener;
+            if (listener != null) {
+                listener.onConnectionLost();
             }
         });
     }
@@ -77,13 +187,32 @@ public class ConnectionManager {
                 5, 5, TimeUnit.SECONDS);
     }
 
-    public void sendMessage(String msg) {
-        if (output != null) {
-            output.println(msg);
+    // dipanggil dari EDT dan thread heartbeat
+    public synchronized void sendMessage(String msg) {
+        if (output == null)
+            return;
+
+        byte[] frame = binary ? BinaryCodec.encode(TextCodec.split(msg)) : null;
+        if (frame == null) {
+            frame = (msg + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        try {
+            output.write(frame);
+            output.flush();
+        } catch (IOException e) {
+            // sama seperti PrintWriter dulu: error kirim diabaikan, receiver yang
+            // akan mendeteksi koneksi putus
+            System.err.println("[CLIENT] Send failed: " + e.getMessage());
         }
     }
 
     public void disconnect() {
+        closing = true;
+        closeSocket();
+    }
+
+    private synchronized void closeSocket() {
         try {
             if (socket != null && !socket.isClosed())
                 socket.close();
@@ -1,5 +1,7 @@
 package com.tictactoe.client;
 
+import com.tictactoe.protocol.TextCodec;
+
 import javax.swing.*;
 import java.awt.*;
 
@@ -10,20 +12,26 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
     private final String gameId;
     private final String youSymbol;
     private final String opponentName;
+    private final int size;
+    private final String rulesText;
 
     private JLabel turnLabel;
-    private JButton[] cells = new JButton[9];
+    private JButton[] cells;
+    private String ratingText = ""; // dari RATING_UPDATE, datang tepat sebelum GAME_RESULT
 
     private JTextArea chatArea = new JTextArea();
     private JTextField chatInput = new JTextField();
 
     public GameFrame(ConnectionManager cm, LobbyFrame lobby,
-            String gameId, String youSymbol, String opponentName) {
+            String gameId, String youSymbol, String opponentName, int size, String rulesText) {
         this.cm = cm;
         this.lobby = lobby;
         this.gameId = gameId;
         this.youSymbol = youSymbol;
         this.opponentName = opponentName;
+        this.size = size;
+        this.rulesText = rulesText;
+        this.cells = new JButton[size * size];
 
         initUI();
 
@@ -43,7 +51,7 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
         turnLabel = new JLabel("Waiting for your turn...", SwingConstants.CENTER);
         turnLabel.setFont(new Font("SansSerif", Font.BOLD, 20));
 
-        JLabel opponentLabel = new JLabel("Opponent: " + opponentName, SwingConstants.CENTER);
+        JLabel opponentLabel = new JLabel("Opponent: " + opponentName + "  |  " + rulesText, SwingConstants.CENTER);
         opponentLabel.setFont(new Font("SansSerif", Font.PLAIN, 16));
 
         topPanel.add(turnLabel);
@@ -52,12 +60,15 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
         add(topPanel, BorderLayout.NORTH);
 
         // CENTER: board
-        JPanel boardPanel = new JPanel(new GridLayout(3, 3, 8, 8));
+        // papan besar: gap dan font mengecil supaya tetap muat di window
+        int gap = size <= 3 ? 8 : 2;
+        JPanel boardPanel = new JPanel(new GridLayout(size, size, gap, gap));
         boardPanel.setBorder(BorderFactory.createEmptyBorder(16, 16, 16, 16));
 
-        for (int i = 0; i < 9; i++) {
+        int fontSize = Math.max(10, 144 / size);
+        for (int i = 0; i < cells.length; i++) {
             JButton btn = new JButton("");
-            btn.setFont(new Font("SansSerif", Font.BOLD, 48));
+            btn.setFont(new Font("SansSerif", Font.BOLD, fontSize));
             btn.setMargin(new Insets(0, 0, 0, 0));
             btn.setFocusable(false);
 
@@ -80,7 +91,16 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
         JPanel chatPanel = new JPanel(new BorderLayout());
         chatPanel.add(new JLabel("Game Chat", SwingConstants.CENTER), BorderLayout.NORTH);
         chatPanel.add(chatScroll, BorderLayout.CENTER);
-        chatPanel.add(chatInput, BorderLayout.SOUTH);
+
+        // HINT: server jawab langkah terbaik (hanya untuk varian yang punya tabel)
+        JButton hintButton = new JButton("Hint");
+        hintButton.setFocusable(false);
+        hintButton.addActionListener(e -> cm.sendMessage("HINT|" + gameId));
+
+        JPanel inputPanel = new JPanel(new BorderLayout());
+        inputPanel.add(chatInput, BorderLayout.CENTER);
+        inputPanel.add(hintButton, BorderLayout.EAST);
+        chatPanel.add(inputPanel, BorderLayout.SOUTH);
 
         chatPanel.setPreferredSize(new Dimension(260, 0));
 
@@ -110,7 +130,7 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
 
     @Override
     public void onMessageReceived(String message) {
-        String[] parts = message.split("\\|");
+        String[] parts = TextCodec.split(message);
         String cmd = parts[0];
 
         switch (cmd) {
@@ -129,10 +149,43 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
                 }
                 break;
 
+            case "RATING_UPDATE":
+                // format: RATING_UPDATE|gameId|rating|+delta
+                if (parts.length >= 4) {
+                    ratingText = "\nRating: " + parts[2] + " (" + parts[3] + ")";
+                }
+                break;
+
             case "GAME_RESULT":
                 handleGameResult(parts);
                 break;
 
+            case "USER_LIST":
+            case "USER_JOINED":
+            case "USER_LEFT":
+                // lobby tersembunyi tapi daftar user-nya tetap di-update
+                lobby.onMessageReceived(message);
+                break;
+
+            case "HINT_RESULT":
+                // format: HINT_RESULT|gameId|cell|WIN/LOSS/DRAW|plies
+                if (parts.length >= 5) {
+                    int cell = Integer.parseInt(parts[2]);
+                    String outlook = parts[3].equals("DRAW") ? "draw"
+                            : (parts[3].equals("WIN") ? "win" : "loss") + " in " + parts[4] + " plies";
+                    chatArea.append("SYSTEM: Hint: row " + (cell / size + 1) + ", col " + (cell % size + 1)
+                            + " (" + outlook + ")\n");
+                }
+                break;
+
+            case "RATE_LIMITED":
+                chatArea.append("SYSTEM: Too many messages, slow down.\n");
+                break;
+
+            case "HINT_FAIL":
+                chatArea.append("SYSTEM: " + (parts.length >= 2 ? parts[1] : "No hint") + "\n");
+                break;
+
             case "CHAT_GAME_FROM":
                 // format: CHAT_GAME_FROM|sender|msg
                 String sender = parts[1];
@@ -143,7 +196,7 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
     }
 
     private void updateBoard(String board) {
-        for (int i = 0; i < 9 && i < board.length(); i++) {
+        for (int i = 0; i < cells.length && i < board.length(); i++) {
             char c = board.charAt(i);
             if (c != '-') {
                 cells[i].setText(String.valueOf(c));
@@ -194,7 +247,7 @@ public class GameFrame extends JFrame implements ConnectionManager.MessageListen
             msg = "Game selesai.";
         }
 
-        JOptionPane.showMessageDialog(this, msg);
+        JOptionPane.showMessageDialog(this, msg + ratingText);
 
         // balik ke lobby
         lobby.returnFromGame();
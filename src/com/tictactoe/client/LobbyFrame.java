@@ -1,5 +1,7 @@
 package com.tictactoe.client;
 
+import com.tictactoe.protocol.TextCodec;
+
 import javax.swing.*;
 import java.awt.*;
 
@@ -9,11 +11,30 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
     private final String username;
 
     private DefaultListModel<String> userListModel = new DefaultListModel<>();
+    // seq presence terakhir yang sudah diterapkan, -1 = belum punya snapshot
+    private long presenceSeq = -1;
     private JList<String> userList = new JList<>(userListModel);
 
     private JTextArea chatArea = new JTextArea();
     private JTextField chatInput = new JTextField();
 
+    // varian game untuk INVITE: label, size, winLength, pieceLimit (0 = tanpa limit)
+    private static final String[] VARIANT_NAMES = {
+            "3x3 Infinity (max 3 pieces)",
+            "3x3 Classic",
+            "7x7, 4 in a row",
+            "15x15 Gomoku (5 in a row)",
+    };
+    private static final int[][] VARIANT_RULES = {
+            { 3, 3, 3 },
+            { 3, 3, 0 },
+            { 7, 4, 0 },
+            { 15, 5, 0 },
+    };
+    private JComboBox<String> variantBox = new JComboBox<>(VARIANT_NAMES);
+    private JButton queueBtn = new JButton("Quick Match");
+    private boolean queued;
+
     public LobbyFrame(ConnectionManager cm, String username) {
         this.connectionManager = cm;
         this.username = username;
@@ -43,12 +64,20 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
         JButton inviteBtn = new JButton("Invite to Play");
         inviteBtn.addActionListener(e -> inviteSelectedUser());
 
+        queueBtn.addActionListener(e -> toggleQueue());
+
+        JButton leaderboardBtn = new JButton("Leaderboard");
+        leaderboardBtn.addActionListener(e -> connectionManager.sendMessage("LEADERBOARD|10"));
+
         JButton quitBtn = new JButton("Quit");
         quitBtn.addActionListener(e -> logout());
 
-        JPanel bottomButtons = new JPanel(new GridLayout(2, 1, 6, 6));
+        JPanel bottomButtons = new JPanel(new GridLayout(5, 1, 6, 6));
         bottomButtons.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        bottomButtons.add(variantBox);
         bottomButtons.add(inviteBtn);
+        bottomButtons.add(queueBtn);
+        bottomButtons.add(leaderboardBtn);
         bottomButtons.add(quitBtn);
 
         leftPanel.add(onlineLabel, BorderLayout.NORTH);
@@ -87,7 +116,7 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
         add(footer, BorderLayout.SOUTH);
 
         setVisible(true);
-        connectionManager.sendMessage("REQ_USER_LIST");
+        // USER_LIST snapshot dikirim server otomatis setelah LOGIN_OK
     }
 
     // ======= BUTTON ACTIONS =======
@@ -103,16 +132,44 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
             return;
         }
 
-        connectionManager.sendMessage("INVITE|" + target);
-        chatArea.append("[INFO] Invite sent to " + target + "\n");
+        int[] rules = VARIANT_RULES[variantBox.getSelectedIndex()];
+        connectionManager.sendMessage("INVITE|" + target + "|" + rules[0] + "|" + rules[1] + "|" + rules[2]);
+        chatArea.append("[INFO] Invite sent to " + target + " (" + variantBox.getSelectedItem() + ")\n");
     }
 
+    // QUEUE dengan varian yang dipilih, atau LEAVE_QUEUE kalau sudah mengantri
+    private void toggleQueue() {
+        if (queued) {
+            connectionManager.sendMessage("LEAVE_QUEUE");
+            return;
+        }
+        int[] rules = VARIANT_RULES[variantBox.getSelectedIndex()];
+        connectionManager.sendMessage("QUEUE|" + rules[0] + "|" + rules[1] + "|" + rules[2]);
+    }
+
+    private void setQueued(boolean queued) {
+        this.queued = queued;
+        queueBtn.setText(queued ? "Leave Queue" : "Quick Match");
+    }
+
+    // "/join name", "/leave name", "/channels", "#name teks" -> channel; selain itu chat global
     private void sendChat() {
         String msg = chatInput.getText().trim();
-        if (!msg.isEmpty()) {
+        if (msg.isEmpty())
+            return;
+        String[] words = msg.split("\\s+", 2);
+        if (words[0].equals("/join") && words.length == 2) {
+            connectionManager.sendMessage("JOIN_CHANNEL|" + words[1]);
+        } else if (words[0].equals("/leave") && words.length == 2) {
+            connectionManager.sendMessage("LEAVE_CHANNEL|" + words[1]);
+        } else if (words[0].equals("/channels")) {
+            connectionManager.sendMessage("LIST_CHANNELS");
+        } else if (msg.startsWith("#") && words.length == 2 && words[0].length() > 1) {
+            connectionManager.sendMessage("CHAT|" + words[0].substring(1) + "|" + words[1]);
+        } else {
             connectionManager.sendMessage("CHAT_GLOBAL|" + msg);
-            chatInput.setText("");
         }
+        chatInput.setText("");
     }
 
     private void logout() {
@@ -145,12 +202,13 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
 
     @Override
     public void onMessageReceived(String message) {
-        String[] p = message.split("\\|");
+        String[] p = TextCodec.split(message);
         String cmd = p[0];
 
         switch (cmd) {
 
             case "USER_LIST":
+                // format: USER_LIST|user1,user2,...|seq
                 userListModel.clear();
                 if (p.length > 1) {
                     for (String u : p[1].split(",")) {
@@ -158,14 +216,49 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
                             userListModel.addElement(u);
                     }
                 }
+                presenceSeq = p.length > 2 ? Long.parseLong(p[2]) : -1;
+                break;
+
+            case "USER_JOINED":
+                applyPresenceDelta(p, true);
+                break;
+
+            case "USER_LEFT":
+                applyPresenceDelta(p, false);
                 break;
 
             case "CHAT_GLOBAL_FROM":
                 chatArea.append(p[1] + ": " + p[2] + "\n");
                 break;
 
+            case "CHAT_FROM":
+                chatArea.append("[#" + p[1] + "] " + p[2] + ": " + p[3] + "\n");
+                break;
+
+            case "CHANNEL_JOINED":
+                chatArea.append("[INFO] Joined #" + p[1] + " (" + p[2] + " users). Type #" + p[1]
+                        + " <message> to chat there.\n");
+                break;
+
+            case "CHANNEL_LEFT":
+                chatArea.append("[INFO] Left #" + p[1] + ".\n");
+                break;
+
+            case "CHANNEL_FAIL":
+                chatArea.append("[INFO] " + (p[1].isEmpty() ? "" : "#" + p[1] + ": ") + (p.length > 2 ? p[2] : "")
+                        + "\n");
+                break;
+
+            case "CHANNEL_LIST":
+                showChannels(p);
+                break;
+
             case "INVITE_FROM":
-                handleInvite(p[1]);
+                handleInvite(p);
+                break;
+
+            case "INVITE_FAIL":
+                chatArea.append("[INFO] Invite failed: " + (p.length > 1 ? p[1] : "") + "\n");
                 break;
 
             case "INVITE_ACCEPTED":
@@ -176,16 +269,115 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
                 chatArea.append("[INFO] " + p[1] + " declined your invite.\n");
                 break;
 
+            case "QUEUE_OK":
+                setQueued(true);
+                chatArea.append("[INFO] Looking for an opponent (" + variantBox.getSelectedItem() + ", rating "
+                        + p[1] + ")...\n");
+                break;
+
+            case "QUEUE_LEFT":
+                setQueued(false);
+                chatArea.append("[INFO] Left the queue.\n");
+                break;
+
+            case "QUEUE_FAIL":
+                chatArea.append("[INFO] Quick match failed: " + (p.length > 1 ? p[1] : "") + "\n");
+                break;
+
+            case "MATCH_FOUND":
+                setQueued(false);
+                chatArea.append("[INFO] Matched with " + p[1] + " (rating " + p[2] + ").\n");
+                break;
+
+            case "RATE_LIMITED":
+                chatArea.append("[INFO] Too many messages, slow down.\n");
+                break;
+
+            case "LEADERBOARD_RESULT":
+                showLeaderboard(p);
+                break;
+
             case "GAME_START":
+                setQueued(false);
                 openGame(p);
                 break;
         }
     }
 
-    private void handleInvite(String from) {
+    // format: CHANNEL_LIST|count|name:subscribers:messages,...
+    private void showChannels(String[] p) {
+        StringBuilder sb = new StringBuilder("[INFO] Channels (" + p[1] + "):\n");
+        if (p.length > 2 && !p[2].isEmpty()) {
+            for (String entry : p[2].split(",")) {
+                String[] f = entry.split(":");
+                sb.append("  #").append(f[0]).append(" - ").append(f[1]).append(" users, ").append(f[2])
+                        .append(" messages\n");
+            }
+        }
+        chatArea.append(sb.toString());
+    }
+
+    // format: LEADERBOARD_RESULT|myRank|myRating|players|rating:name,rating:name,...
+    private void showLeaderboard(String[] p) {
+        if (p.length < 4)
+            return;
+        StringBuilder sb = new StringBuilder("[INFO] Leaderboard (" + p[3] + " rated players):\n");
+        int rank = 0;
+        int lastRating = -1;
+        String[] entries = p.length > 4 && !p[4].isEmpty() ? p[4].split(",") : new String[0];
+        for (int i = 0; i < entries.length; i++) {
+            int colon = entries[i].indexOf(':');
+            int rating = Integer.parseInt(entries[i].substring(0, colon));
+            if (rating != lastRating) // rating sama, rank sama
+                rank = i + 1;
+            lastRating = rating;
+            sb.append("  ").append(rank).append(". ").append(entries[i].substring(colon + 1))
+                    .append(" (").append(rating).append(")\n");
+        }
+        sb.append("  You: ").append(p[1].equals("0") ? "unranked" : "#" + p[1]).append(", rating ").append(p[2])
+                .append('\n');
+        chatArea.append(sb.toString());
+    }
+
+    // format: USER_JOINED|seq|username atau USER_LEFT|seq|username
+    private void applyPresenceDelta(String[] p, boolean joined) {
+        if (p.length < 3 || presenceSeq < 0)
+            return; // tunggu snapshot dulu
+
+        long seq = Long.parseLong(p[1]);
+        if (seq <= presenceSeq)
+            return; // sudah termasuk di snapshot
+
+        if (seq != presenceSeq + 1) {
+            // ada delta yang terlewat -> minta snapshot baru
+            presenceSeq = -1;
+            connectionManager.sendMessage("REQ_USER_LIST");
+            return;
+        }
+        presenceSeq = seq;
+
+        String user = p[2];
+        if (user.equals(username))
+            return;
+        if (joined) {
+            if (!userListModel.contains(user))
+                userListModel.addElement(user);
+        } else {
+            userListModel.removeElement(user);
+        }
+    }
+
+    // format: INVITE_FROM|inviter[|size|winLength|pieceLimit]
+    private void handleInvite(String[] p) {
+        String from = p[1];
+        String variant = "";
+        if (p.length >= 5) {
+            variant = " (" + describeRules(Integer.parseInt(p[2]), Integer.parseInt(p[3]), Integer.parseInt(p[4])) + ")";
+        }
+
         int r = JOptionPane.showConfirmDialog(
                 this,
-                from + " invited you to play. Accept?",
+                from + " invited you to play" + variant + ". Accept?",
                 "Invitation",
                 JOptionPane.YES_NO_OPTION);
 
@@ -196,16 +388,42 @@ public class LobbyFrame extends JFrame implements ConnectionManager.MessageListe
         }
     }
 
+    // format: GAME_START|gameId|you=X|opponent=name[|size=N|k=K|limit=L]
     private void openGame(String[] p) {
         String gameId = p[1];
         String youSymbol = p[2].split("=")[1];
         String opponent = p[3].split("=")[1];
 
-        GameFrame gameFrame = new GameFrame(connectionManager, this, gameId, youSymbol, opponent);
+        // server lama tidak mengirim rules: 3x3, 3 in a row, max 3 pieces
+        int size = 3, winLength = 3, pieceLimit = 3;
+        for (int i = 4; i < p.length; i++) {
+            String[] kv = p[i].split("=", 2);
+            if (kv.length < 2)
+                continue;
+            switch (kv[0]) {
+                case "size":
+                    size = Integer.parseInt(kv[1]);
+                    break;
+                case "k":
+                    winLength = Integer.parseInt(kv[1]);
+                    break;
+                case "limit":
+                    pieceLimit = Integer.parseInt(kv[1]);
+                    break;
+            }
+        }
+
+        GameFrame gameFrame = new GameFrame(connectionManager, this, gameId, youSymbol, opponent,
+                size, describeRules(size, winLength, pieceLimit));
         connectionManager.setMessageListener(gameFrame);
         this.setVisible(false);
     }
 
+    static String describeRules(int size, int winLength, int pieceLimit) {
+        return size + "x" + size + ", " + winLength + " in a row"
+                + (pieceLimit > 0 ? ", max " + pieceLimit + " pieces" : "");
+    }
+
     @Override
     public void onConnectionLost() {
         JOptionPane.showMessageDialog(this, "Disconnected from server.");
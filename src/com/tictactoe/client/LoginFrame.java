@@ -1,5 +1,8 @@
 package com.tictactoe.client;
 
+import com.tictactoe.protocol.BinaryCodec;
+import com.tictactoe.protocol.TextCodec;
+
 import javax.swing.*;
 import java.awt.*;
 
@@ -93,21 +96,26 @@ public class LoginFrame extends JFrame implements ConnectionManager.MessageListe
             return;
         }
 
-        connectionManager.sendMessage("LOGIN|" + username);
+        // minta protokol binary, kecuali dijalankan dengan -Dtictactoe.protocol=text
+        if (System.getProperty("tictactoe.protocol", "bin").equals("text")) {
+            connectionManager.sendMessage("LOGIN|" + username);
+        } else {
+            connectionManager.sendMessage("LOGIN|" + username + "|" + BinaryCodec.LOGIN_OPTION);
+        }
         connectButton.setEnabled(false);
     }
 
     @Override
     public void onMessageReceived(String message) {
-        String[] parts = message.split("\\|");
+        String[] parts = TextCodec.split(message);
 
         switch (parts[0]) {
             case "LOGIN_OK":
+                // sudah di EDT; lobby langsung jadi listener supaya snapshot
+                // USER_LIST yang menyusul LOGIN_OK tidak hilang
                 String user = parts[1];
-                SwingUtilities.invokeLater(() -> {
-                    LobbyFrame lobby = new LobbyFrame(connectionManager, user);
-                    this.setVisible(false);
-                });
+                new LobbyFrame(connectionManager, user);
+                this.setVisible(false);
                 break;
 
             case "LOGIN_FAIL":
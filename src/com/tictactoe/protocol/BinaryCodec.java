@@ -0,0 +1,159 @@
+package com.tictactoe.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Length-prefixed binary protocol. One frame is
+ *
+ *   [0x80 | opcode] [varint payload length] [payload]
+ *
+ * and the payload holds the fields in {@link MessageType} order: STR/TEXT as
+ * varint length + UTF-8 bytes, NUM as a varint, BOARD as varint length + one
+ * raw byte per cell. The high bit of the first byte never appears at the start
+ * of a text line, so text lines and binary frames can be mixed on one stream.
+ */
+public final class BinaryCodec {
+
+    public static final int FRAME_FLAG = 0x80;
+
+    /** Option in LOGIN|name|bin and LOGIN_OK|name|bin that switches to this codec. */
+    public static final String LOGIN_OPTION = "bin";
+
+    private BinaryCodec() {
+    }
+
+    public static boolean isFrameStart(byte b) {
+        return (b & FRAME_FLAG) != 0;
+    }
+
+    /**
+     * Encodes a split message into a complete frame, or returns null when the
+     * command has no opcode or a NUM field is not a number (send it as text).
+     */
+    public static byte[] encode(String[] parts) {
+        MessageType type = MessageType.byName(parts[0]);
+        if (type == null)
+            return null;
+
+        Buffer payload = new Buffer(32);
+        for (int i = 1; i < parts.length; i++) {
+            String value = parts[i];
+            switch (type.getField(i - 1)) {
+                case NUM:
+                    long n;
+                    try {
+                        n = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    if (n < 0)
+                        return null;
+                    payload.varint(n);
+                    break;
+                case BOARD:
+                    payload.varint(value.length());
+                    for (int c = 0; c < value.length(); c++) {
+                        payload.put((byte) value.charAt(c));
+                    }
+                    break;
+                default:
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    payload.varint(bytes.length);
+                    payload.put(bytes, 0, bytes.length);
+                    break;
+            }
+        }
+
+        Buffer frame = new Buffer(payload.size + 6);
+        frame.put((byte) (FRAME_FLAG | type.getCode()));
+        frame.varint(payload.size);
+        frame.put(payload.data, 0, payload.size);
+        return frame.toArray();
+    }
+
+    /**
+     * Decodes the payload of one frame into command + fields (same shape as
+     * {@link TextCodec#split(String)}), or null for an unknown opcode.
+     */
+    public static String[] decode(int opcode, byte[] payload, int off, int len) {
+        MessageType type = MessageType.byCode(opcode);
+        if (type == null)
+            return null;
+
+        String[] parts = new String[1 + type.getFieldCount()];
+        parts[0] = type.name();
+
+        int pos = off;
+        int end = off + len;
+        int count = 1;
+        while (pos < end) {
+            if (count == parts.length)
+                parts = Arrays.copyOf(parts, count + 1);
+
+            MessageType.Field field = type.getField(count - 1);
+
+            // varint: nilai NUM, atau panjang untuk field lainnya
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (pos >= end || shift > 63)
+                    return null;
+                b = payload[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if (field == MessageType.Field.NUM) {
+                parts[count++] = Long.toString(value);
+                continue;
+            }
+
+            if (value > end - pos)
+                return null;
+            int n = (int) value;
+            parts[count++] = field == MessageType.Field.BOARD
+                    ? new String(payload, pos, n, StandardCharsets.ISO_8859_1)
+                    : new String(payload, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+        }
+
+        return count == parts.length ? parts : Arrays.copyOf(parts, count);
+    }
+
+    // growable byte array, cukup untuk encode satu frame
+    private static final class Buffer {
+        byte[] data;
+        int size;
+
+        Buffer(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void put(byte b) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = b;
+        }
+
+        void put(byte[] src, int off, int len) {
+            if (size + len > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + len));
+            System.arraycopy(src, off, data, size, len);
+            size += len;
+        }
+
+        void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((byte) v);
+        }
+
+        byte[] toArray() {
+            return size == data.length ? data : Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.tictactoe.protocol;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Incremental decoder for one inbound stream. Bytes can be fed in any chunk
+ * size (a message may arrive across several reads); every complete message is
+ * handed to the {@link Sink} already split into command + fields. Text lines
+ * and binary frames may be mixed: a first byte with the high bit set starts a
+ * binary frame, anything else a text line.
+ *
+ * PING and GAME_MOVE are the bulk of the inbound traffic. If the sink is a
+ * {@link FastSink} they are recognised straight from the byte buffer (by
+ * opcode, or by prefix for text lines) and delivered without creating a
+ * String, an array or any other object.
+ */
+public class FrameDecoder {
+
+    public interface Sink {
+        /** Returns false to stop decoding the rest of the current chunk. */
+        boolean onMessage(String[] parts) throws IOException;
+    }
+
+    /** Sink with allocation-free callbacks for the hot commands. */
+    public interface FastSink extends Sink {
+        boolean onPing() throws IOException;
+
+        /**
+         * GAME_MOVE|gameId|cell. The game id is {@code idLen} bytes at
+         * {@code id[idOff]} and only valid during the call; {@code cell} is -1
+         * when the index is not a number.
+         */
+        boolean onGameMove(byte[] id, int idOff, int idLen, int cell) throws IOException;
+    }
+
+    public static final int MAX_MESSAGE_LENGTH = 64 * 1024;
+
+    private static final int IDLE = 0;
+    private static final int TEXT = 1;
+    private static final int BINARY_LENGTH = 2;
+    private static final int BINARY_PAYLOAD = 3;
+
+    private static final byte[] PING = { 'P', 'I', 'N', 'G' };
+    private static final byte[] GAME_MOVE = { 'G', 'A', 'M', 'E', '_', 'M', 'O', 'V', 'E', '|' };
+    private static final int PING_CODE = MessageType.PING.getCode();
+    private static final int GAME_MOVE_CODE = MessageType.GAME_MOVE.getCode();
+
+    private int state = IDLE;
+
+    private byte[] buf = new byte[128];
+    private int len;
+
+    private int opcode;
+    private int payloadLength;
+    private int shift;
+
+    // hasil parse varint terakhir di readVarint
+    private long varint;
+
+    public void feed(ByteBuffer in, Sink sink) throws IOException {
+        while (in.hasRemaining()) {
+            switch (state) {
+                case IDLE: {
+                    byte b = in.get();
+                    len = 0;
+                    if (BinaryCodec.isFrameStart(b)) {
+                        opcode = b & 0x7F;
+                        payloadLength = 0;
+                        shift = 0;
+                        state = BINARY_LENGTH;
+                    } else {
+                        state = TEXT;
+                        if (b == '\n') {
+                            state = IDLE;
+                            if (!emitText(sink))
+                                return;
+                        } else {
+                            append(b);
+                        }
+                    }
+                    break;
+                }
+
+                case TEXT: {
+                    byte b = in.get();
+                    if (b == '\n') {
+                        state = IDLE;
+                        if (!emitText(sink))
+                            return;
+                    } else {
+                        append(b);
+                    }
+                    break;
+                }
+
+                case BINARY_LENGTH: {
+                    byte b = in.get();
+                    payloadLength |= (b & 0x7F) << shift;
+                    shift += 7;
+                    if ((b & 0x80) != 0) {
+                        if (shift > 21)
+                            throw new ProtocolException("Frame length too long");
+                        break;
+                    }
+                    if (payloadLength > MAX_MESSAGE_LENGTH)
+                        throw new ProtocolException("Frame too large: " + payloadLength);
+                    ensureCapacity(payloadLength);
+                    state = BINARY_PAYLOAD;
+                    if (payloadLength == 0) {
+                        state = IDLE;
+                        if (!emitBinary(sink))
+                            return;
+                    }
+                    break;
+                }
+
+                default: { // BINARY_PAYLOAD
+                    int take = Math.min(in.remaining(), payloadLength - len);
+                    in.get(buf, len, take);
+                    len += take;
+                    if (len == payloadLength) {
+                        state = IDLE;
+                        if (!emitBinary(sink))
+                            return;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private void append(byte b) throws ProtocolException {
+        if (len == MAX_MESSAGE_LENGTH)
+            throw new ProtocolException("Line too long");
+        ensureCapacity(len + 1);
+        buf[len++] = b;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buf.length)
+            buf = Arrays.copyOf(buf, Math.min(Math.max(buf.length * 2, capacity), MAX_MESSAGE_LENGTH));
+    }
+
+    private boolean emitText(Sink sink) throws IOException {
+        int n = len;
+        if (n > 0 && buf[n - 1] == '\r')
+            n--;
+
+        if (sink instanceof FastSink) {
+            FastSink fast = (FastSink) sink;
+            if (n == PING.length && startsWith(PING))
+                return fast.onPing();
+            if (n > GAME_MOVE.length && startsWith(GAME_MOVE)) {
+                int idOff = GAME_MOVE.length;
+                int bar = indexOf('|', idOff, n);
+                if (bar > idOff && bar + 1 < n)
+                    return fast.onGameMove(buf, idOff, bar - idOff, parseCell(bar + 1, n));
+                // field kurang: biarkan jalur biasa yang menolak
+            }
+        }
+
+        String line = new String(buf, 0, n, StandardCharsets.UTF_8);
+        return sink.onMessage(TextCodec.split(line));
+    }
+
+    private boolean emitBinary(Sink sink) throws IOException {
+        if (sink instanceof FastSink) {
+            FastSink fast = (FastSink) sink;
+            if (opcode == PING_CODE)
+                return fast.onPing();
+            if (opcode == GAME_MOVE_CODE) {
+                // payload: [varint idLen][id][varint cell]
+                int pos = readVarint(0, payloadLength);
+                if (pos > 0 && varint > 0 && varint <= payloadLength - pos) {
+                    int idOff = pos;
+                    int idLen = (int) varint;
+                    pos = readVarint(idOff + idLen, payloadLength);
+                    if (pos > 0 && pos == payloadLength)
+                        return fast.onGameMove(buf, idOff, idLen, varint <= Integer.MAX_VALUE ? (int) varint : -1);
+                }
+                // payload rusak / field kurang: biarkan jalur biasa yang menolak
+            }
+        }
+
+        String[] parts = BinaryCodec.decode(opcode, buf, 0, payloadLength);
+        if (parts == null)
+            return true; // opcode tidak dikenal / payload rusak: lewati frame ini
+        return sink.onMessage(parts);
+    }
+
+    // ================= FAST PATH HELPERS =================
+
+    private boolean startsWith(byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c)
+                return i;
+        }
+        return -1;
+    }
+
+    // angka desimal sampai '|' berikutnya / akhir line, -1 kalau bukan angka
+    private int parseCell(int from, int to) {
+        int value = 0;
+        int i = from;
+        for (; i < to && buf[i] != '|'; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9 || value > (Integer.MAX_VALUE - d) / 10)
+                return -1;
+            value = value * 10 + d;
+        }
+        return i > from ? value : -1;
+    }
+
+    // varint mulai dari buf[pos] ke field varint; return posisi sesudahnya, -1 kalau rusak
+    private int readVarint(int pos, int end) {
+        long value = 0;
+        int bits = 0;
+        byte b;
+        do {
+            if (pos >= end || bits > 63)
+                return -1;
+            b = buf[pos++];
+            value |= (long) (b & 0x7F) << bits;
+            bits += 7;
+        } while ((b & 0x80) != 0);
+        varint = value;
+        return pos;
+    }
+}
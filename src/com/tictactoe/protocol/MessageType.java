@@ -0,0 +1,122 @@
+package com.tictactoe.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every protocol command with its binary opcode and field layout. Shared by
+ * server and client so both sides encode and split messages the same way.
+ */
+public enum MessageType {
+
+    // ===== client -> server =====
+    LOGIN(1, Field.STR, Field.STR),
+    CHAT_GLOBAL(2, Field.TEXT),
+    INVITE(3, Field.STR, Field.NUM, Field.NUM, Field.NUM),
+    ACCEPT_INVITE(4, Field.STR),
+    DECLINE_INVITE(5, Field.STR),
+    GAME_MOVE(6, Field.STR, Field.NUM),
+    GAME_CHAT(7, Field.STR, Field.TEXT),
+    GAME_SURRENDER(8),
+    PING(9),
+    REQ_USER_LIST(10),
+    QUIT(11),
+    HINT(12, Field.STR),
+    RESUME(13, Field.STR, Field.NUM),
+    WATCH(14, Field.STR),
+    UNWATCH(15),
+    QUEUE(16, Field.NUM, Field.NUM, Field.NUM),
+    LEAVE_QUEUE(17),
+    LEADERBOARD(18, Field.NUM),
+    JOIN_CHANNEL(19, Field.STR),
+    LEAVE_CHANNEL(20, Field.STR),
+    CHAT(21, Field.STR, Field.TEXT),
+    LIST_CHANNELS(22, Field.NUM),
+
+    // ===== server -> client =====
+    LOGIN_OK(32, Field.STR, Field.STR),
+    LOGIN_FAIL(33, Field.TEXT),
+    USER_LIST(34, Field.STR, Field.NUM),
+    USER_JOINED(35, Field.NUM, Field.STR),
+    USER_LEFT(36, Field.NUM, Field.STR),
+    CHAT_GLOBAL_FROM(37, Field.STR, Field.TEXT),
+    INVITE_FROM(38, Field.STR, Field.NUM, Field.NUM, Field.NUM),
+    INVITE_ACCEPTED(39, Field.STR),
+    INVITE_DECLINED(40, Field.STR),
+    GAME_START(41, Field.STR, Field.STR, Field.STR),
+    YOUR_TURN(42, Field.STR),
+    BOARD_UPDATE(43, Field.STR, Field.BOARD),
+    GAME_RESULT(44, Field.STR, Field.STR, Field.STR),
+    CHAT_GAME_FROM(45, Field.STR, Field.TEXT),
+    PONG(46),
+    INVITE_FAIL(47, Field.TEXT),
+    HINT_RESULT(48, Field.STR, Field.NUM, Field.STR, Field.NUM),
+    HINT_FAIL(49, Field.TEXT),
+    SESSION(50, Field.STR, Field.NUM),
+    RESUME_OK(51, Field.STR, Field.NUM),
+    RESUME_FAIL(52, Field.TEXT),
+    WATCH_START(53, Field.STR, Field.STR, Field.STR),
+    WATCH_FAIL(54, Field.TEXT),
+    QUEUE_OK(55, Field.NUM, Field.NUM, Field.NUM, Field.NUM),
+    QUEUE_LEFT(56),
+    QUEUE_FAIL(57, Field.TEXT),
+    MATCH_FOUND(58, Field.STR, Field.NUM),
+    LEADERBOARD_RESULT(59, Field.NUM, Field.NUM, Field.NUM, Field.TEXT),
+    RATING_UPDATE(60, Field.STR, Field.NUM, Field.STR),
+    RATE_LIMITED(61, Field.STR),
+    CHANNEL_JOINED(62, Field.STR, Field.NUM),
+    CHANNEL_LEFT(63, Field.STR),
+    CHANNEL_FAIL(64, Field.STR, Field.TEXT),
+    CHAT_FROM(65, Field.STR, Field.STR, Field.TEXT),
+    CHANNEL_LIST(66, Field.NUM, Field.TEXT);
+
+    public enum Field {
+        STR,   // string tanpa '|'
+        TEXT,  // teks bebas, selalu field terakhir (boleh berisi '|')
+        NUM,   // angka, varint di binary
+        BOARD  // isi papan, raw byte per cell di binary
+    }
+
+    private static final MessageType[] BY_CODE = new MessageType[128];
+    private static final Map<String, MessageType> BY_NAME = new HashMap<>();
+
+    static {
+        for (MessageType t : values()) {
+            BY_CODE[t.code] = t;
+            BY_NAME.put(t.name(), t);
+        }
+    }
+
+    private final int code;
+    private final Field[] fields;
+
+    MessageType(int code, Field... fields) {
+        this.code = code;
+        this.fields = fields;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    /** Kind of field {@code i} (0-based, not counting the command); extra fields are STR. */
+    public Field getField(int i) {
+        return i < fields.length ? fields[i] : Field.STR;
+    }
+
+    public boolean endsWithText() {
+        return fields.length > 0 && fields[fields.length - 1] == Field.TEXT;
+    }
+
+    public static MessageType byName(String name) {
+        return BY_NAME.get(name);
+    }
+
+    public static MessageType byCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
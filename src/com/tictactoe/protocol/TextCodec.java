@@ -0,0 +1,56 @@
+package com.tictactoe.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pipe-delimited text protocol ("COMMAND|field|field"). Splitting does not use
+ * a regex, and the TEXT field at the end of chat messages keeps any '|' the
+ * user typed instead of being cut into extra fields.
+ */
+public final class TextCodec {
+
+    private TextCodec() {
+    }
+
+    /**
+     * Splits a line into command + fields. Like {@code String.split("\\|")},
+     * trailing empty fields are dropped, so existing {@code parts.length}
+     * checks keep working.
+     */
+    public static String[] split(String line) {
+        int bar = line.indexOf('|');
+        String cmd = bar < 0 ? line : line.substring(0, bar);
+        if (bar < 0)
+            return new String[] { cmd };
+
+        MessageType type = MessageType.byName(cmd);
+        int maxParts = type != null && type.endsWithText() ? type.getFieldCount() + 1 : Integer.MAX_VALUE;
+
+        List<String> parts = new ArrayList<>(4);
+        parts.add(cmd);
+        int start = bar + 1;
+        while (true) {
+            if (parts.size() == maxParts - 1) {
+                parts.add(line.substring(start)); // TEXT: sisa baris apa adanya
+                break;
+            }
+            int next = line.indexOf('|', start);
+            if (next < 0) {
+                parts.add(line.substring(start));
+                break;
+            }
+            parts.add(line.substring(start, next));
+            start = next + 1;
+        }
+
+        int size = parts.size();
+        while (size > 1 && parts.get(size - 1).isEmpty())
+            size--;
+        return parts.subList(0, size).toArray(new String[0]);
+    }
+
+    public static String join(String[] parts) {
+        return String.join("|", parts);
+    }
+}
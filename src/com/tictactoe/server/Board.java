@@ -0,0 +1,207 @@
+package com.tictactoe.server;
+
+/**
+ * N x N board where a player needs K in a row (horizontal, vertical or
+ * diagonal). With a piece limit ("infinity" rule) each player keeps at most
+ * that many pieces and placing one more removes that player's oldest piece;
+ * limit 0 means pieces stay until the board is full.
+ *
+ * Every player is a bitset (bit i = cell i = row * size + col, same numbering
+ * as the BOARD_UPDATE string) and the piece order is a fixed-size ring of
+ * cell indexes, so playing a move does not allocate anything. Not
+ * thread-safe; a game's board is only touched by that game's shard thread
+ * (see {@link GameShards}).
+ */
+final class Board {
+
+    static final int X = 0;
+    static final int O = 1;
+
+    static final char EMPTY_CELL = '-';
+    private static final char[] SYMBOLS = { 'X', 'O' };
+
+    // arah yang dicek dari langkah terakhir: horizontal, vertikal, 2 diagonal
+    private static final int[] DIR_ROW = { 0, 1, 1, 1 };
+    private static final int[] DIR_COL = { 1, 0, 1, -1 };
+
+    private final int size;
+    private final int cells;
+    private final int winLength;
+    private final int pieceLimit;
+
+    private final long[][] bits;
+
+    // ring buffer per player: moves[player][(head + i) % capacity]
+    private final int[][] moves;
+    private final int[] head = new int[2];
+    private final int[] count = new int[2];
+
+    Board(GameRules rules) {
+        this(rules.getSize(), rules.getWinLength(), rules.getPieceLimit());
+    }
+
+    Board(int size, int winLength, int pieceLimit) {
+        this.size = size;
+        this.cells = size * size;
+        this.winLength = winLength;
+        this.pieceLimit = pieceLimit;
+
+        int words = (cells + 63) >>> 6;
+        this.bits = new long[2][words];
+
+        int capacity = pieceLimit > 0 ? pieceLimit : cells;
+        this.moves = new int[2][capacity];
+    }
+
+    /** Independent copy, e.g. for the bot to search on outside the game's shard thread. */
+    Board(Board other) {
+        this.size = other.size;
+        this.cells = other.cells;
+        this.winLength = other.winLength;
+        this.pieceLimit = other.pieceLimit;
+        this.bits = new long[][] { other.bits[X].clone(), other.bits[O].clone() };
+        this.moves = new int[][] { other.moves[X].clone(), other.moves[O].clone() };
+        this.head[X] = other.head[X];
+        this.head[O] = other.head[O];
+        this.count[X] = other.count[X];
+        this.count[O] = other.count[O];
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getCells() {
+        return cells;
+    }
+
+    int getWinLength() {
+        return winLength;
+    }
+
+    int getPieceLimit() {
+        return pieceLimit;
+    }
+
+    boolean has(int player, int cell) {
+        return (bits[player][cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    boolean isFree(int cell) {
+        return !has(X, cell) && !has(O, cell);
+    }
+
+    boolean isFull() {
+        return count[X] + count[O] == cells;
+    }
+
+    int getPieceCount(int player) {
+        return count[player];
+    }
+
+    /** Cell of the player's piece with the given age (0 = oldest, removed first). */
+    int pieceAt(int player, int age) {
+        int[] ring = moves[player];
+        return ring[(head[player] + age) % ring.length];
+    }
+
+    /** First cell >= {@code from} holding a piece of {@code player}, or -1. */
+    int nextPiece(int player, int from) {
+        long[] b = bits[player];
+        int w = from >>> 6;
+        if (w >= b.length)
+            return -1;
+        long word = b[w] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == b.length)
+                return -1;
+            word = b[w];
+        }
+    }
+
+    /**
+     * Places a piece for {@code player} on a free cell. Returns the cell of the
+     * oldest piece that was removed to make room, or -1.
+     */
+    int place(int player, int cell) {
+        int[] ring = moves[player];
+        int removed = -1;
+
+        if (pieceLimit > 0 && count[player] == pieceLimit) {
+            removed = ring[head[player]];
+            bits[player][removed >>> 6] &= ~(1L << removed);
+            head[player] = (head[player] + 1) % ring.length;
+            count[player]--;
+        }
+
+        ring[(head[player] + count[player]) % ring.length] = cell;
+        count[player]++;
+        bits[player][cell >>> 6] |= 1L << cell;
+        return removed;
+    }
+
+    /** Takes back {@link #place}: {@code removed} is the value it returned. */
+    void undo(int player, int cell, int removed) {
+        int[] ring = moves[player];
+        count[player]--;
+        bits[player][cell >>> 6] &= ~(1L << cell);
+
+        if (removed >= 0) {
+            head[player] = (head[player] - 1 + ring.length) % ring.length;
+            ring[head[player]] = removed;
+            count[player]++;
+            bits[player][removed >>> 6] |= 1L << removed;
+        }
+    }
+
+    /**
+     * True if the piece just placed on {@code cell} completes K in a row. Only
+     * the four lines through that cell are walked (at most K-1 steps each
+     * way): a line that did not exist before this move must contain it, and
+     * removing the oldest piece can never create one.
+     */
+    boolean wins(int player, int cell) {
+        int row = cell / size;
+        int col = cell % size;
+
+        for (int d = 0; d < DIR_ROW.length; d++) {
+            int run = 1 + count(player, row, col, DIR_ROW[d], DIR_COL[d])
+                    + count(player, row, col, -DIR_ROW[d], -DIR_COL[d]);
+            if (run >= winLength)
+                return true;
+        }
+        return false;
+    }
+
+    // jumlah bidak berurutan milik player dari (row, col) ke satu arah, tanpa cell awal
+    private int count(int player, int row, int col, int dRow, int dCol) {
+        int n = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (n < winLength - 1 && r >= 0 && r < size && c >= 0 && c < size
+                && has(player, r * size + c)) {
+            n++;
+            r += dRow;
+            c += dCol;
+        }
+        return n;
+    }
+
+    char cellAt(int cell) {
+        if (has(X, cell))
+            return SYMBOLS[X];
+        if (has(O, cell))
+            return SYMBOLS[O];
+        return EMPTY_CELL;
+    }
+
+    /** Appends the board string, one character per cell ("X-O-X----"). */
+    StringBuilder appendTo(StringBuilder sb) {
+        for (int i = 0; i < cells; i++) {
+            sb.append(cellAt(i));
+        }
+        return sb;
+    }
+}
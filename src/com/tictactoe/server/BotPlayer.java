@@ -0,0 +1,129 @@
+package com.tictactoe.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The BOT user: an opponent hosted inside the server, without a socket. It
+ * shows up in the lobby like any other user, accepts every INVITE right away
+ * and answers each of its turns with a {@link BotSearch}.
+ *
+ * Searches run on a dedicated pool of bot.threads worker threads with at most
+ * bot.maxPending queued requests, never on a ClientHandler / reactor thread.
+ * If the queue is full the bot plays {@link BotSearch#quickMove} instead of
+ * waiting. Each worker owns its own search and transposition table.
+ *
+ * Variants covered by the server's {@link InfinityTable} (3x3 infinity) are
+ * not searched at all: the move comes from the table, on the calling thread.
+ */
+class BotPlayer {
+
+    static final String NAME = "BOT";
+
+    private final ServerState serverState;
+    private final ClientHandler handler;
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<BotSearch> searches;
+
+    private final long moveTimeMs;
+    private final int maxDepth;
+
+    // counters
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong quickMoves = new AtomicLong();
+    private final AtomicLong tableMoves = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    BotPlayer(ServerState serverState) {
+        ServerConfig config = serverState.getConfig();
+        this.serverState = serverState;
+        this.handler = new ClientHandler(NAME, serverState);
+        this.moveTimeMs = config.getLong("bot.moveTimeMs", 500);
+        this.maxDepth = config.getInt("bot.maxDepth", 32);
+
+        int threads = config.getInt("bot.threads", 2);
+        int ttEntries = config.getInt("bot.ttEntries", 1 << 18);
+        this.searches = ThreadLocal.withInitial(() -> new BotSearch(ttEntries));
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getInt("bot.maxPending", 64)), r -> {
+                    Thread t = new Thread(r, "bot-search-" + threadId.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    ClientHandler getHandler() {
+        return handler;
+    }
+
+    // ================= INVITE =================
+
+    void acceptInvite(ClientHandler inviter, GameRules rules) {
+        GameRoom game = serverState.createGame(inviter.getUsername(), NAME, rules);
+        if (game == null) {
+            inviter.sendMessage("INVITE_FAIL|Already in a game");
+            return;
+        }
+        inviter.sendMessage("INVITE_ACCEPTED|" + NAME);
+        game.startGame();
+    }
+
+    // ================= MOVES =================
+
+    /**
+     * Called by GameRoom on its shard thread when it is the bot's turn.
+     * A searched move arrives later through processMove; a table move is
+     * played before this returns.
+     */
+    void requestMove(GameRoom game) {
+        Board board = game.copyBoard();
+        int player = game.playerIndex(NAME);
+
+        // permainan sempurna dari tabel, cuma beberapa lookup
+        InfinityTable table = serverState.getInfinityTable();
+        if (table != null && table.supports(game.getRules())) {
+            tableMoves.incrementAndGet();
+            game.processMove(NAME, table.bestMove(board, player));
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                int cell;
+                try {
+                    long start = System.nanoTime();
+                    BotSearch search = searches.get();
+                    cell = search.search(board, player, moveTimeMs, maxDepth);
+                    searchNanos.addAndGet(System.nanoTime() - start);
+                    nodes.addAndGet(search.getNodes());
+                    moves.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // game tidak boleh macet menunggu langkah bot
+                    System.out.println("[SERVER ERROR] Bot search failed: " + e);
+                    quickMoves.incrementAndGet();
+                    cell = BotSearch.quickMove(board, player);
+                }
+                game.processMove(NAME, cell);
+            });
+        } catch (RejectedExecutionException e) {
+            // antrian penuh: langkah cepat tanpa search, tidak ada yang menunggu
+            quickMoves.incrementAndGet();
+            game.processMove(NAME, BotSearch.quickMove(board, player));
+        }
+    }
+
+    String stats() {
+        long n = nodes.get();
+        long ms = TimeUnit.NANOSECONDS.toMillis(searchNanos.get());
+        return "moves=" + moves.get() + ", tableMoves=" + tableMoves.get() + ", quickMoves=" + quickMoves.get()
+                + ", nodes=" + n + ", nodes/sec=" + (ms > 0 ? n * 1000 / ms : 0)
+                + ", pending=" + executor.getQueue().size();
+    }
+}
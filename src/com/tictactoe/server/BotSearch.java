@@ -0,0 +1,391 @@
+package com.tictactoe.server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Move search for the BOT player: negamax with alpha-beta pruning, iterative
+ * deepening under a time budget and a {@link TranspositionTable}.
+ *
+ * The search plays on its own copy of the {@link Board} (make / undo), so the
+ * state includes each player's piece FIFO: with the infinity rule the same
+ * pieces in a different order are a different position, because a different
+ * piece disappears next. The Zobrist hash therefore has a key per
+ * (player, cell) and, when there is a piece limit, a key per
+ * (player, age, cell) for the order.
+ *
+ * One instance per worker thread; it reuses its buffers between searches.
+ */
+final class BotSearch {
+
+    static final int WIN = 1_000_000;
+    private static final int MAX_PLY = 64;
+    // skor di atas ini = menang/kalah paksa dalam sekian ply
+    private static final int WIN_BOUND = WIN - MAX_PLY;
+
+    private static final int[] DIR_ROW = { 0, 1, 1, 1 };
+    private static final int[] DIR_COL = { 1, 0, 1, -1 };
+
+    private final TranspositionTable tt;
+
+    // Zobrist keys, dibuat ulang hanya kalau ukuran board / limit berubah
+    private int keyCells = -1;
+    private int keyLimit = -1;
+    private long[][] pieceKeys;
+    private long[][][] orderKeys;
+    private long sideKey;
+
+    private Board board;
+    private int cells;
+    private int size;
+    private int[][] moveBuf = new int[MAX_PLY + 1][0];
+    private boolean[] nearBuf = new boolean[0];
+
+    private long deadline;
+    private boolean aborted;
+
+    // hasil search terakhir
+    private long nodes;
+    private int completedDepth;
+    private int bestScore;
+
+    BotSearch(int ttEntries) {
+        this.tt = new TranspositionTable(ttEntries);
+    }
+
+    /**
+     * Best cell for {@code player} to play on {@code board}. The board is
+     * used as scratch space and is back in its original state afterwards.
+     * Always returns a legal cell (if the budget is too small to finish depth
+     * 1, the first candidate).
+     */
+    int search(Board board, int player, long timeMs, int maxDepth) {
+        prepare(board);
+        tt.newSearch();
+        nodes = 0;
+        completedDepth = 0;
+        bestScore = 0;
+        aborted = false;
+        deadline = System.nanoTime() + timeMs * 1_000_000L;
+        maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+
+        int n = generateMoves(0);
+        int[] moves = moveBuf[0];
+        int best = moves[0];
+        long hash = hash(player);
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int alpha = -WIN - 1;
+            int iterationBest = -1;
+
+            // langkah terbaik iterasi sebelumnya dicek duluan
+            moveToFront(moves, n, best);
+            for (int i = 0; i < n; i++) {
+                int cell = moves[i];
+                int score = scoreMove(player, cell, depth, alpha, WIN + 1, 0, hash);
+                if (aborted)
+                    break;
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = cell;
+                }
+            }
+            if (aborted)
+                break; // iterasi belum selesai, pakai hasil depth sebelumnya
+
+            best = iterationBest;
+            bestScore = alpha;
+            completedDepth = depth;
+
+            if (Math.abs(alpha) > WIN_BOUND)
+                break; // menang/kalah paksa sudah ketemu, lebih dalam tidak mengubah apa-apa
+        }
+        return best;
+    }
+
+    // skor langkah dari sudut pandang player yang melangkah
+    private int scoreMove(int player, int cell, int depth, int alpha, int beta, int ply, long hash) {
+        int removed = board.place(player, cell);
+        int score;
+        if (board.wins(player, cell)) {
+            score = WIN - ply - 1;
+        } else if (board.isFull()) {
+            score = 0;
+        } else {
+            long child = hash ^ pieceKeys[player][cell] ^ sideKey;
+            if (removed >= 0)
+                child ^= pieceKeys[player][removed];
+            score = -negamax(1 - player, depth - 1, -beta, -alpha, ply + 1, child);
+        }
+        board.undo(player, cell, removed);
+        return score;
+    }
+
+    private int negamax(int player, int depth, int alpha, int beta, int ply, long hash) {
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline)
+            aborted = true;
+        if (aborted)
+            return 0;
+
+        if (depth <= 0 || ply >= MAX_PLY)
+            return evaluate(player);
+
+        long key = orderKeys == null ? hash : hash ^ orderHash();
+        int ttMove = -1;
+        long entry = tt.probe(key);
+        if (entry != TranspositionTable.MISS) {
+            ttMove = TranspositionTable.moveOf(entry);
+            if (TranspositionTable.depthOf(entry) >= depth) {
+                int score = fromTable(TranspositionTable.scoreOf(entry), ply);
+                int flag = TranspositionTable.flagOf(entry);
+                if (flag == TranspositionTable.EXACT
+                        || (flag == TranspositionTable.LOWER && score >= beta)
+                        || (flag == TranspositionTable.UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        int n = generateMoves(ply);
+        int[] moves = moveBuf[ply];
+        moveToFront(moves, n, ttMove);
+
+        int originalAlpha = alpha;
+        int best = -WIN - 1;
+        int bestMove = -1;
+        for (int i = 0; i < n; i++) {
+            int cell = moves[i];
+            int score = scoreMove(player, cell, depth, alpha, beta, ply, hash);
+            if (aborted)
+                return 0;
+            if (score > best) {
+                best = score;
+                bestMove = cell;
+            }
+            if (score > alpha)
+                alpha = score;
+            if (alpha >= beta)
+                break;
+        }
+
+        int flag = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+        tt.store(key, depth, flag, toTable(best, ply), bestMove);
+        return best;
+    }
+
+    // skor menang/kalah disimpan relatif ke node, bukan ke root
+    private static int toTable(int score, int ply) {
+        return score > WIN_BOUND ? score + ply : score < -WIN_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score > WIN_BOUND ? score - ply : score < -WIN_BOUND ? score + ply : score;
+    }
+
+    // ================= MOVE GENERATION =================
+
+    /**
+     * Free cells worth trying into moveBuf[ply]. Small boards: every free
+     * cell. Large boards: free cells next to a piece (center if empty), the
+     * rest of the board cannot matter for the next few plies.
+     */
+    private int generateMoves(int ply) {
+        int[] out = moveBuf[ply];
+        int n = 0;
+        int center = (size / 2) * size + size / 2;
+
+        if (cells > 25 && board.getPieceCount(Board.X) + board.getPieceCount(Board.O) == 0) {
+            out[n++] = center;
+            return n;
+        }
+
+        if (cells <= 25) {
+            // tengah dulu, cell tengah ikut di lebih banyak garis
+            if (board.isFree(center))
+                out[n++] = center;
+            for (int c = 0; c < cells; c++) {
+                if (c != center && board.isFree(c))
+                    out[n++] = c;
+            }
+            return n;
+        }
+
+        boolean[] near = nearBuf;
+        Arrays.fill(near, false);
+        for (int p = 0; p < 2; p++) {
+            for (int c = board.nextPiece(p, 0); c >= 0; c = board.nextPiece(p, c + 1)) {
+                int row = c / size;
+                int col = c % size;
+                for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                    for (int k = Math.max(0, col - 1); k <= Math.min(size - 1, col + 1); k++) {
+                        near[r * size + k] = true;
+                    }
+                }
+            }
+        }
+        for (int c = 0; c < cells; c++) {
+            if (near[c] && board.isFree(c))
+                out[n++] = c;
+        }
+        return n;
+    }
+
+    private static void moveToFront(int[] moves, int n, int move) {
+        if (move < 0)
+            return;
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+
+    // ================= EVALUATION =================
+
+    // deret bidak terbuka milik player dikurangi milik lawan
+    private int evaluate(int player) {
+        return lineScore(player) - lineScore(1 - player);
+    }
+
+    private int lineScore(int player) {
+        int k = board.getWinLength();
+        int score = 0;
+        for (int c = board.nextPiece(player, 0); c >= 0; c = board.nextPiece(player, c + 1)) {
+            int row = c / size;
+            int col = c % size;
+            for (int d = 0; d < DIR_ROW.length; d++) {
+                int pr = row - DIR_ROW[d];
+                int pc = col - DIR_COL[d];
+                boolean prevInside = pr >= 0 && pr < size && pc >= 0 && pc < size;
+                if (prevInside && board.has(player, pr * size + pc))
+                    continue; // bukan awal deret
+
+                int run = 1;
+                int r = row + DIR_ROW[d];
+                int cc = col + DIR_COL[d];
+                while (r >= 0 && r < size && cc >= 0 && cc < size && board.has(player, r * size + cc)) {
+                    run++;
+                    r += DIR_ROW[d];
+                    cc += DIR_COL[d];
+                }
+
+                int open = 0;
+                if (prevInside && board.isFree(pr * size + pc))
+                    open++;
+                if (r >= 0 && r < size && cc >= 0 && cc < size && board.isFree(r * size + cc))
+                    open++;
+                if (open > 0 && run > 1)
+                    score += open * run * run * (run >= k - 1 ? 8 : 1);
+            }
+        }
+        return score;
+    }
+
+    // ================= HASHING =================
+
+    private void prepare(Board board) {
+        this.board = board;
+        this.cells = board.getCells();
+        this.size = board.getSize();
+
+        int limit = board.getPieceLimit();
+        if (cells != keyCells || limit != keyLimit) {
+            Random rnd = new Random(31L * cells + limit);
+            pieceKeys = new long[2][cells];
+            orderKeys = limit > 0 ? new long[2][limit][cells] : null;
+            for (int p = 0; p < 2; p++) {
+                for (int c = 0; c < cells; c++) {
+                    pieceKeys[p][c] = rnd.nextLong();
+                    if (orderKeys != null) {
+                        for (int a = 0; a < limit; a++) {
+                            orderKeys[p][a][c] = rnd.nextLong();
+                        }
+                    }
+                }
+            }
+            sideKey = rnd.nextLong();
+            keyCells = cells;
+            keyLimit = limit;
+        }
+
+        if (moveBuf[0].length < cells) {
+            for (int i = 0; i < moveBuf.length; i++) {
+                moveBuf[i] = new int[cells];
+            }
+            nearBuf = new boolean[cells];
+        }
+    }
+
+    // hash bidak + giliran, tanpa urutan (urutan ditambah per node di orderHash)
+    private long hash(int player) {
+        long h = player == Board.O ? sideKey : 0;
+        for (int p = 0; p < 2; p++) {
+            for (int c = board.nextPiece(p, 0); c >= 0; c = board.nextPiece(p, c + 1)) {
+                h ^= pieceKeys[p][c];
+            }
+        }
+        return h;
+    }
+
+    private long orderHash() {
+        long h = 0;
+        for (int p = 0; p < 2; p++) {
+            int n = board.getPieceCount(p);
+            for (int age = 0; age < n; age++) {
+                h ^= orderKeys[p][age][board.pieceAt(p, age)];
+            }
+        }
+        return h;
+    }
+
+    // ================= FALLBACK =================
+
+    /**
+     * Cheap move without search (microseconds): win now, else block the
+     * opponent's immediate win, else the first candidate. Used when the bot
+     * executor is full.
+     */
+    static int quickMove(Board board, int player) {
+        int cells = board.getCells();
+        for (int p = player, pass = 0; pass < 2; pass++, p = 1 - p) {
+            for (int c = 0; c < cells; c++) {
+                if (!board.isFree(c))
+                    continue;
+                int removed = board.place(p, c);
+                boolean wins = board.wins(p, c);
+                board.undo(p, c, removed);
+                if (wins)
+                    return c;
+            }
+        }
+        int center = (board.getSize() / 2) * board.getSize() + board.getSize() / 2;
+        if (board.isFree(center))
+            return center;
+        for (int c = 0; c < cells; c++) {
+            if (board.isFree(c))
+                return c;
+        }
+        return -1;
+    }
+
+    // ================= STATS =================
+
+    long getNodes() {
+        return nodes;
+    }
+
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    int getBestScore() {
+        return bestScore;
+    }
+
+    TranspositionTable getTable() {
+        return tt;
+    }
+}
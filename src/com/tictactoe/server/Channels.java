@@ -0,0 +1,268 @@
+package com.tictactoe.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named chat channels (JOIN_CHANNEL / LEAVE_CHANNEL / CHAT|channel|text),
+ * next to the one global lobby chat.
+ *
+ * Every channel keeps its subscribers in a copy-on-write array: joining and
+ * leaving copy it under the channel's monitor, a message reads the volatile
+ * array once and sends to every entry without any lock, on the sender's
+ * thread, like {@link ServerState#broadcast}. A message is encoded once per
+ * protocol and each subscriber gets a duplicate. Chat is much more frequent
+ * than joins, so the copies are cheap overall; chat.maxChannels and
+ * chat.channelsPerUser bound the registry exactly: a new channel first takes
+ * a slot from an atomic counter, given back when it is removed or another
+ * join created it first.
+ *
+ * Memberships are tracked per username, so a RESUME keeps them and a real
+ * logout leaves every channel. A join reserves its place in the user's set
+ * (cap check and add in one compute) before it subscribes, and gives it back
+ * if the channel cannot be created; a user without channels has no entry.
+ * A channel without subscribers is removed.
+ */
+final class Channels {
+
+    // status join
+    static final int JOINED = 0;
+    static final int ALREADY_JOINED = 1;
+    static final int INVALID_NAME = 2;
+    static final int TOO_MANY_CHANNELS = 3;
+    static final int USER_LIMIT = 4;
+
+    static final int MAX_NAME = 32;
+
+    private static final ClientHandler[] NONE = new ClientHandler[0];
+
+    private final int maxChannels;
+    private final int channelsPerUser;
+    private final ConcurrentMap<String, Channel> channels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> joined = new ConcurrentHashMap<>();
+
+    // counters
+    private final AtomicInteger open = new AtomicInteger(); // channel di map + yang sedang dibuat
+    private final AtomicLong created = new AtomicLong();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+
+    Channels(ServerConfig config) {
+        this.maxChannels = Math.max(0, config.getInt("chat.maxChannels", 1000));
+        this.channelsPerUser = Math.max(0, config.getInt("chat.channelsPerUser", 10));
+    }
+
+    private static final class Channel {
+        final String name;
+        volatile ClientHandler[] subscribers = NONE;
+        boolean closed; // sudah dihapus dari map; join harus buat channel baru
+        final LongAdder messages = new LongAdder();
+
+        Channel(String name) {
+            this.name = name;
+        }
+    }
+
+    /** Channel names: 1..32 of [A-Za-z0-9_-]. */
+    static boolean validName(String name) {
+        if (name.isEmpty() || name.length() > MAX_NAME)
+            return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-'))
+                return false;
+        }
+        return true;
+    }
+
+    int join(String name, ClientHandler handler) {
+        if (!validName(name))
+            return INVALID_NAME;
+        String user = handler.getUsername();
+        // cek batas + reservasi dalam satu langkah atomic (compute mengunci entry user)
+        int[] status = { JOINED };
+        Set<String> mine = joined.compute(user, (u, set) -> {
+            if (set == null)
+                set = ConcurrentHashMap.newKeySet();
+            if (set.contains(name))
+                status[0] = ALREADY_JOINED;
+            else if (set.size() >= channelsPerUser)
+                status[0] = USER_LIMIT;
+            else
+                set.add(name);
+            return set.isEmpty() ? null : set;
+        });
+        if (status[0] != JOINED)
+            return status[0];
+
+        while (true) {
+            Channel ch = channels.get(name);
+            if (ch == null) {
+                if (!reserveChannel()) {
+                    release(user, name);
+                    return TOO_MANY_CHANNELS;
+                }
+                Channel fresh = new Channel(name);
+                ch = channels.putIfAbsent(name, fresh);
+                if (ch == null) {
+                    ch = fresh;
+                    created.incrementAndGet();
+                } else {
+                    open.decrementAndGet(); // join lain lebih dulu membuatnya
+                }
+            }
+            synchronized (ch) {
+                if (ch.closed)
+                    continue; // baru saja kosong dan dihapus: coba lagi
+                ClientHandler[] old = ch.subscribers;
+                ClientHandler[] next = Arrays.copyOf(old, old.length + 1);
+                next[old.length] = handler;
+                ch.subscribers = next;
+            }
+            // logout (leaveAll) di tengah join: reservasi sudah hilang, jangan tinggalkan subscriber
+            if (joined.get(user) != mine || !mine.contains(name))
+                unsubscribe(ch, user);
+            return JOINED;
+        }
+    }
+
+    // satu slot chat.maxChannels, CAS: join bersamaan untuk nama baru tidak bisa melewati batas
+    private boolean reserveChannel() {
+        while (true) {
+            int n = open.get();
+            if (n >= maxChannels)
+                return false;
+            if (open.compareAndSet(n, n + 1))
+                return true;
+        }
+    }
+
+    // join ditolak setelah reservasi: nama keluar lagi, set kosong dihapus
+    private void release(String user, String name) {
+        joined.computeIfPresent(user, (u, set) -> {
+            set.remove(name);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /** False if the user was not in the channel. */
+    boolean leave(String name, String user) {
+        boolean[] removed = new boolean[1];
+        joined.computeIfPresent(user, (u, set) -> {
+            removed[0] = set.remove(name);
+            return set.isEmpty() ? null : set;
+        });
+        if (!removed[0])
+            return false;
+        Channel ch = channels.get(name);
+        if (ch != null)
+            unsubscribe(ch, user);
+        return true;
+    }
+
+    /** Logout: out of every channel. */
+    void leaveAll(String user) {
+        Set<String> mine = joined.remove(user);
+        if (mine == null)
+            return;
+        for (String name : mine) {
+            Channel ch = channels.get(name);
+            if (ch != null)
+                unsubscribe(ch, user);
+        }
+    }
+
+    private void unsubscribe(Channel ch, String user) {
+        synchronized (ch) {
+            ClientHandler[] old = ch.subscribers;
+            int i = 0;
+            while (i < old.length && !user.equals(old[i].getUsername()))
+                i++;
+            if (i == old.length)
+                return;
+            if (old.length == 1) {
+                ch.subscribers = NONE;
+                ch.closed = true;
+                if (channels.remove(ch.name, ch))
+                    open.decrementAndGet();
+                return;
+            }
+            ClientHandler[] next = new ClientHandler[old.length - 1];
+            System.arraycopy(old, 0, next, 0, i);
+            System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+            ch.subscribers = next;
+        }
+    }
+
+    /** Subscribers of a channel the user is in; -1 if not joined. */
+    int subscribers(String name, String user) {
+        Set<String> mine = joined.get(user);
+        Channel ch = mine != null && mine.contains(name) ? channels.get(name) : null;
+        return ch != null ? ch.subscribers.length : -1;
+    }
+
+    /**
+     * CHAT|channel|text: CHAT_FROM|channel|from|text to every subscriber,
+     * sender included. Returns how many got it, -1 if the sender is not in
+     * the channel.
+     */
+    int publish(String name, String from, String text) {
+        Set<String> mine = joined.get(from);
+        Channel ch = mine != null && mine.contains(name) ? channels.get(name) : null;
+        if (ch == null)
+            return -1;
+        ClientHandler[] subs = ch.subscribers;
+        // encode sekali per protokol, setiap subscriber cuma dapat duplicate
+        Frame.Shared frame = new Frame.Shared("CHAT_FROM|" + name + "|" + from + "|" + text, subs.length > 2);
+        for (ClientHandler h : subs)
+            frame.sendTo(h);
+        ch.messages.increment();
+        messages.increment();
+        delivered.add(subs.length);
+        return subs.length;
+    }
+
+    /** Users in at least one channel. */
+    int joinedUsers() {
+        return joined.size();
+    }
+
+    /** LIST_CHANNELS: count and the {@code max} largest channels as name:subscribers:messages,... */
+    String list(int max) {
+        return channels.size() + "|" + top(max);
+    }
+
+    private String top(int max) {
+        // ukuran di-snapshot dulu: array subscriber bisa berubah selama sort
+        List<long[]> sizes = new ArrayList<>();
+        List<Channel> all = new ArrayList<>(channels.values());
+        for (int i = 0; i < all.size(); i++)
+            sizes.add(new long[] { all.get(i).subscribers.length, i });
+        Collections.sort(sizes, (a, b) -> Long.compare(b[0], a[0]));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(max, sizes.size()); i++) {
+            Channel ch = all.get((int) sizes.get(i)[1]);
+            if (i > 0)
+                sb.append(',');
+            sb.append(ch.name).append(':').append(sizes.get(i)[0]).append(':').append(ch.messages.sum());
+        }
+        return sb.toString();
+    }
+
+    String stats() {
+        long subscriptions = 0;
+        for (Channel ch : channels.values())
+            subscriptions += ch.subscribers.length;
+        return "channels=" + channels.size() + ", subscriptions=" + subscriptions + ", users=" + joined.size()
+                + ", created=" + created.get()
+                + ", messages=" + messages.sum() + ", delivered=" + delivered.sum() + ", top=" + top(5);
+    }
+}
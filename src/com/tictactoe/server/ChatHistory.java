@@ -0,0 +1,115 @@
+package com.tictactoe.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The last chat messages of one channel (the lobby, or one game), so a user
+ * who logs in or rejoins a game sees the recent conversation.
+ *
+ * A fixed ring of slots, lock-free: a writer takes the next sequence number
+ * and stores its entry in slot seq &amp; mask, overwriting the oldest one. An
+ * entry carries its seq, so a reader skips slots that are still being written
+ * or already overwritten instead of locking. An entry keeps the message and,
+ * once a backfill needed it, its encoding in that protocol on the heap: an
+ * add encodes nothing itself (the live fan-out encodes only the protocols its
+ * recipients use, in direct buffers), and a backfill is one frame with all
+ * of them, so memory is capacity entries whatever the chat volume.
+ */
+final class ChatHistory {
+
+    private static final class Entry {
+        final long seq;
+        final String msg;
+        // di-encode saat backfill pertama yang butuh; dua reader bisa sama-sama encode, hasilnya sama
+        volatile ByteBuffer text;
+        volatile ByteBuffer binary;
+
+        Entry(long seq, String msg) {
+            this.seq = seq;
+            this.msg = msg;
+        }
+
+        ByteBuffer frame(boolean binary) {
+            ByteBuffer b = binary ? this.binary : text;
+            if (b == null) {
+                b = Frame.encode(msg, binary);
+                if (binary)
+                    this.binary = b;
+                else
+                    text = b;
+            }
+            return b;
+        }
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    ChatHistory(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        int n = Integer.highestOneBit(this.capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, n));
+        this.mask = slots.length() - 1;
+    }
+
+    /**
+     * Stores a message and returns it as a frame for the live fan-out.
+     * {@code direct}: see {@link Frame#encodeShared}; game chat with two
+     * recipients keeps heap buffers.
+     */
+    Frame.Shared add(String msg, boolean direct) {
+        long seq = next.getAndIncrement();
+        slots.set((int) (seq & mask), new Entry(seq, msg));
+        return new Frame.Shared(msg, direct);
+    }
+
+    /** Sends the stored messages, oldest first, as one frame; returns how many. */
+    int sendRecent(ClientHandler handler) {
+        long end = next.get();
+        long start = Math.max(0, end - capacity);
+        boolean binary = handler.isBinary();
+
+        int bytes = 0;
+        int count = 0;
+        for (long seq = start; seq < end; seq++) {
+            Entry e = slots.get((int) (seq & mask));
+            if (e != null && e.seq == seq) {
+                bytes += e.frame(binary).remaining();
+                count++;
+            }
+        }
+        if (count == 0)
+            return 0;
+
+        ByteBuffer batch = ByteBuffer.allocate(bytes);
+        int copied = 0;
+        for (long seq = start; seq < end && copied < count; seq++) {
+            Entry e = slots.get((int) (seq & mask));
+            // sudah ditimpa sejak hitungan di atas: dilewati, batch jadi sedikit lebih pendek
+            if (e == null || e.seq != seq)
+                continue;
+            ByteBuffer frame = e.frame(binary);
+            if (frame.remaining() > batch.remaining())
+                break;
+            batch.put(frame.duplicate());
+            copied++;
+        }
+        batch.flip();
+        if (copied > 0)
+            handler.sendSnapshot(batch, copied);
+        return copied;
+    }
+
+    /** Messages ever added. */
+    long size() {
+        return next.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
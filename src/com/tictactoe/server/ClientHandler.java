@@ -1,34 +1,93 @@
 package com.tictactoe.server;
 
+import com.tictactoe.protocol.BinaryCodec;
+import com.tictactoe.protocol.FrameDecoder;
+import com.tictactoe.protocol.TextCodec;
+
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 public class ClientHandler implements Runnable {
 
+    // PONG di-encode sekali, tiap balasan cuma duplicate()
+    private static final ByteBuffer PONG_TEXT = Frame.encodeShared("PONG", false);
+    private static final ByteBuffer PONG_BINARY = Frame.encodeShared("PONG", true);
+
     private final Socket socket;
+    private final NioConnection connection; // null kalau mode thread
     private final ServerState serverState;
+    private final Executor writerExecutor;
 
-    private PrintWriter out;
-    private BufferedReader in;
+    private SocketWriter writer;
+    private InputStream in;
 
     private String username;
     private volatile boolean running = true;
-
-    public ClientHandler(Socket socket, ServerState serverState) {
+    // true setelah LOGIN|name|bin: semua frame keluar pakai BinaryCodec
+    private volatile boolean binary;
+    // semua pesan (kecuali PONG) lewat session: bernomor dan bisa di-replay saat RESUME
+    private volatile Session session;
+    private volatile boolean quit;
+    // disentuh setiap pesan masuk; null kalau idle.timeoutMs=0
+    private volatile IdleTimer.Entry idle;
+    // game yang sedang ditonton (WATCH), paling banyak satu
+    private volatile GameRoom watching;
+
+    private final Dispatcher dispatcher = new Dispatcher();
+    // token bucket per kelas command; hanya dipakai thread yang men-dispatch koneksi ini
+    private final RateLimits.Limiter limiter;
+
+    // invite yang diterima: inviter -> rules, dipakai saat ACCEPT_INVITE
+    private final ConcurrentMap<String, GameRules> invitesReceived = new ConcurrentHashMap<>();
+
+    public ClientHandler(Socket socket, ServerState serverState, Executor writerExecutor) {
         this.socket = socket;
+        this.connection = null;
         this.serverState = serverState;
+        this.writerExecutor = writerExecutor;
+        this.limiter = serverState.getRateLimits().newLimiter();
+    }
+
+    // dipakai NioServer: tidak ada thread per client, read/write lewat reactor
+    ClientHandler(NioConnection connection, ServerState serverState) {
+        this.socket = null;
+        this.connection = connection;
+        this.serverState = serverState;
+        this.writerExecutor = null;
+        this.limiter = serverState.getRateLimits().newLimiter();
+        watchIdle();
+    }
+
+    // user di dalam server tanpa koneksi (BOT): semua frame untuknya dibuang
+    ClientHandler(String username, ServerState serverState) {
+        this.socket = null;
+        this.connection = null;
+        this.serverState = serverState;
+        this.writerExecutor = null;
+        this.limiter = serverState.getRateLimits().newLimiter();
+        this.username = username;
     }
 
     @Override
     public void run() {
+        watchIdle();
         try {
-            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-            String line;
-            while (running && (line = in.readLine()) != null) {
-                System.out.println("[SERVER] Received: " + line);
-                handleMessage(line);
+            writer = new SocketWriter(socket, OutboundQueue.create(serverState.getConfig()), writerExecutor);
+            in = socket.getInputStream();
+
+            // text line dan binary frame dipotong oleh decoder yang sama dengan mode nio
+            FrameDecoder decoder = new FrameDecoder();
+            byte[] buf = new byte[4096];
+            ByteBuffer view = ByteBuffer.wrap(buf);
+            int n;
+            while (running && (n = in.read(buf)) != -1) {
+                view.clear();
+                view.limit(n);
+                decoder.feed(view, dispatcher);
             }
         } catch (IOException e) {
             System.out.println("[SERVER] Connection error: " + e.getMessage());
@@ -37,27 +96,143 @@ public class ClientHandler implements Runnable {
         }
     }
 
-    private void handleMessage(String msg) {
-        String[] parts = msg.split("\\|");
+    // ================= DISPATCH =================
+
+    /**
+     * Inbound messages from the decoder. PING and GAME_MOVE come in through
+     * the allocation-free callbacks (and are not logged: at one PING per client
+     * every 5 seconds the log line would cost more than the command itself);
+     * everything else is split into fields and goes to handleMessage. Every
+     * message passes the connection's rate limits first.
+     */
+    private class Dispatcher implements FrameDecoder.FastSink {
+
+        @Override
+        public boolean onMessage(String[] parts) {
+            touch();
+            if (!allowed(RateLimits.bucketOf(parts[0]), parts[0]))
+                return running; // flood tidak di-log
+            System.out.println("[SERVER] Received: " + TextCodec.join(parts));
+            try {
+                handleMessage(parts);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+            return running;
+        }
+
+        @Override
+        public boolean onPing() {
+            touch();
+            if (!allowed(RateLimits.MESSAGE, "PING"))
+                return running;
+            // PONG tidak bernomor: dibalas langsung ke koneksi ini
+            write((binary ? PONG_BINARY : PONG_TEXT).duplicate());
+            return running;
+        }
+
+        @Override
+        public boolean onGameMove(byte[] id, int idOff, int idLen, int cell) {
+            touch();
+            if (!allowed(RateLimits.MESSAGE, "GAME_MOVE"))
+                return running;
+            try {
+                if (username != null)
+                    handleGameMove(id, idOff, idLen, cell);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+            return running;
+        }
+
+        // pesan yang lolos: tanpa alokasi; yang ditolak dibuang, dan yang terus flood diputus
+        private boolean allowed(int bucket, String command) {
+            switch (limiter.check(bucket)) {
+                case RateLimits.OK:
+                    return true;
+                case RateLimits.DROP_AND_NOTIFY:
+                    sendMessage("RATE_LIMITED|" + command);
+                    return false;
+                case RateLimits.DISCONNECT:
+                    System.out.println("[SERVER] Rate limit exceeded, disconnecting "
+                            + (username != null ? username : "client") + ".");
+                    quit = true; // tidak bisa RESUME
+                    disconnect();
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        // di mode thread exception ini dulu mematikan thread client, di mode nio
+        // jangan sampai reactor ikut mati: cukup putus koneksi ini saja
+        private void fail(RuntimeException e) {
+            System.out.println("[SERVER] Error handling message: " + e);
+            disconnect();
+        }
+    }
+
+    private void touch() {
+        IdleTimer.Entry e = idle;
+        if (e != null)
+            e.touch();
+    }
+
+    FrameDecoder.Sink getDispatcher() {
+        return dispatcher;
+    }
+
+    void handleMessage(String msg) {
+        handleMessage(TextCodec.split(msg));
+    }
+
+    void handleMessage(String[] parts) {
         String cmd = parts[0];
 
         switch (cmd) {
             case "LOGIN":
                 if (parts.length >= 2) {
-                    handleLogin(parts[1]);
+                    handleLogin(parts[1], parts.length >= 3 && parts[2].equals(BinaryCodec.LOGIN_OPTION));
                 }
                 break;
 
             case "CHAT_GLOBAL":
                 if (username != null && parts.length >= 2) {
                     String text = parts[1];
-                    serverState.broadcast("CHAT_GLOBAL_FROM|" + username + "|" + text);
+                    serverState.chatGlobal(username, text);
+                }
+                break;
+
+            case "CHAT":
+                if (username != null && parts.length >= 3) {
+                    handleChannelChat(parts[1], parts[2]);
+                }
+                break;
+
+            case "JOIN_CHANNEL":
+                if (username != null && parts.length >= 2) {
+                    handleJoinChannel(parts[1]);
+                }
+                break;
+
+            case "LEAVE_CHANNEL":
+                if (username != null && parts.length >= 2) {
+                    if (serverState.getChannels().leave(parts[1], username))
+                        sendMessage("CHANNEL_LEFT|" + parts[1]);
+                    else
+                        sendMessage("CHANNEL_FAIL|" + parts[1] + "|Not in channel");
+                }
+                break;
+
+            case "LIST_CHANNELS":
+                if (username != null) {
+                    handleListChannels(parts);
                 }
                 break;
 
             case "INVITE":
                 if (username != null && parts.length >= 2) {
-                    handleInvite(parts[1]);
+                    handleInvite(parts);
                 }
                 break;
 
@@ -85,6 +260,12 @@ public class ClientHandler implements Runnable {
                 }
                 break;
 
+            case "HINT":
+                if (username != null && parts.length >= 2) {
+                    handleHint(parts[1]);
+                }
+                break;
+
             case "GAME_SURRENDER":
                 if (username != null) {
                     handleSurrender();
@@ -92,15 +273,56 @@ public class ClientHandler implements Runnable {
                 break;
 
             case "PING":
-                // heartbeat dari client
-                sendMessage("PONG");
+                // heartbeat dari client (biasanya lewat Dispatcher.onPing)
+                dispatcher.onPing();
+                break;
+
+            case "RESUME":
+                if (username == null && parts.length >= 3) {
+                    handleResume(parts[1], parts[2]);
+                }
+                break;
+
+            case "WATCH":
+                if (username != null && parts.length >= 2) {
+                    handleWatch(parts[1]);
+                }
+                break;
+
+            case "UNWATCH":
+                if (username != null) {
+                    stopWatching();
+                }
+                break;
+
+            case "QUEUE":
+                if (username != null) {
+                    handleQueue(parts);
+                }
+                break;
+
+            case "LEAVE_QUEUE":
+                if (username != null) {
+                    serverState.getMatchmaker().cancel(username);
+                    sendMessage("QUEUE_LEFT");
+                }
+                break;
+
+            case "LEADERBOARD":
+                if (username != null) {
+                    handleLeaderboard(parts);
+                }
                 break;
 
             case "REQ_USER_LIST":
-                serverState.broadcastUserList();
+                // snapshot hanya untuk yang minta (mis. setelah gap seq)
+                if (username != null) {
+                    serverState.sendUserList(this);
+                }
                 break;
 
             case "QUIT":
+                quit = true;
                 running = false;
                 disconnect();
                 break;
@@ -114,30 +336,150 @@ public class ClientHandler implements Runnable {
 
     // ================= LOGIN =================
 
-    private void handleLogin(String name) {
-        if (serverState.isUsernameTaken(name)) {
+    private void handleLogin(String name, boolean wantsBinary) {
+        if (username != null)
+            return; // sudah login di koneksi ini
+
+        // nama BOT selalu dicadangkan, juga kalau bot.enabled=false
+        if (BotPlayer.NAME.equals(name)) {
+            sendMessage("LOGIN_FAIL|Username is reserved.");
+            return;
+        }
+
+        // cek + daftar dalam satu langkah atomic (putIfAbsent); nama yang session-nya
+        // detached diambil alih, user yang masih tersambung tetap ditolak
+        if (!serverState.addUser(name, this) && !takeOver(name)) {
             sendMessage("LOGIN_FAIL|Username already used.");
             return;
         }
 
         this.username = name;
-        serverState.addUser(name, this);
 
-        // Beri tahu client yang login
-        sendMessage("LOGIN_OK|" + name);
+        // Beri tahu client yang login. LOGIN_OK sendiri selalu text; frame
+        // sesudahnya binary kalau client memintanya.
+        if (wantsBinary) {
+            sendMessage("LOGIN_OK|" + name + "|" + BinaryCodec.LOGIN_OPTION);
+            binary = true;
+        } else {
+            sendMessage("LOGIN_OK|" + name);
+        }
 
-        // Sebarkan user list ke SEMUA client (ini yang penting)
-        serverState.broadcastUserList();
+        // token resume; SESSION selalu pesan nomor 1 karena session baru
+        // terlihat oleh thread lain setelah monitor-nya dilepas
+        Sessions sessions = serverState.getSessions();
+        if (sessions.isEnabled()) {
+            Session s = sessions.open(name, wantsBinary);
+            synchronized (s) {
+                s.attach(this);
+                session = s;
+                sendMessage("SESSION|" + s.getToken() + "|" + sessions.getGraceMs());
+            }
+        }
+
+        // USER_JOINED ke semua client lain, snapshot USER_LIST ke client ini
+        serverState.userJoined(this);
+        // chat lobby terakhir, satu frame
+        serverState.sendLobbyChat(this);
+
+        // game yang masih jalan (mis. dipulihkan dari journal setelah restart)
+        GameRoom game = serverState.findGameByPlayer(name);
+        if (game != null)
+            game.rejoin(name);
 
         System.out.println("[SERVER] User logged in: " + name);
     }
 
+    /**
+     * LOGIN for a name whose session is detached (e.g. the client restarted
+     * and lost its token): that session is closed and the name moves to this
+     * connection without a logout, so a running game goes on and is sent
+     * again by the login. Channels, queue and WATCH of the old connection end.
+     */
+    private boolean takeOver(String name) {
+        ClientHandler old = serverState.getUser(name);
+        Session s = old != null ? old.session : null;
+        if (s == null || !s.closeIfDetached())
+            return false;
+        Sessions sessions = serverState.getSessions();
+        sessions.close(s);
+        // RESUME atau takeover lain yang lebih dulu: session sudah tertutup, nama bukan punya kita
+        if (!serverState.replaceUser(name, old, this))
+            return false;
+        old.stopWatching();
+        serverState.getMatchmaker().cancel(name);
+        serverState.getChannels().leaveAll(name);
+        sessions.takenOver();
+        System.out.println("[SERVER] Detached session of " + name + " taken over by a new login");
+        return true;
+    }
+
+    // RESUME|token|lastSeq: koneksi baru mengambil alih session yang putus
+    private void handleResume(String token, String lastSeq) {
+        Sessions sessions = serverState.getSessions();
+        Session s = sessions.get(token);
+        ClientHandler old = s != null ? serverState.getUser(s.getUsername()) : null;
+        long seq;
+        try {
+            seq = Long.parseLong(lastSeq);
+        } catch (NumberFormatException e) {
+            seq = -1;
+        }
+        if (old == null || old.session != s || seq < 0) {
+            sessions.failed();
+            sendMessage("RESUME_FAIL|Unknown or expired session");
+            return;
+        }
+
+        ClientHandler[] previous = new ClientHandler[1];
+        int result = s.resume(this, seq, previous);
+        sessions.resumed(result);
+        if (result == Session.INVALID) {
+            sendMessage("RESUME_FAIL|Unknown or expired session");
+            return;
+        }
+
+        this.username = s.getUsername();
+        this.binary = s.isBinary();
+        this.session = s;
+        invitesReceived.putAll(old.invitesReceived);
+        watching = old.watching;
+        if (old != this)
+            serverState.replaceUser(username, old, this);
+        if (previous[0] != null && previous[0] != this)
+            previous[0].closeTransport(); // koneksi lama yang belum ketahuan putus
+
+        if (result == Session.GAP) {
+            // pesan yang terlewat sudah keluar dari ring: kirim ulang state-nya saja
+            serverState.sendUserList(this);
+            serverState.sendLobbyChat(this);
+            GameRoom game = serverState.findGameByPlayer(username);
+            if (game != null)
+                game.rejoin(username);
+        }
+        System.out.println("[SERVER] User resumed: " + username + " (from seq " + seq
+                + (result == Session.GAP ? ", gap" : "") + ")");
+    }
+
     // ================= INVITE / GAME START =================
 
-    private void handleInvite(String target) {
-        ClientHandler targetHandler = serverState.getUser(target);
+    // INVITE|target[|size|winLength|pieceLimit]
+    private void handleInvite(String[] parts) {
+        GameRules rules = GameRules.parse(parts, 2, serverState.getConfig().getInt("game.maxSize", 19));
+        if (rules == null) {
+            sendMessage("INVITE_FAIL|Invalid game rules");
+            return;
+        }
+
+        BotPlayer bot = serverState.getBot();
+        if (bot != null && BotPlayer.NAME.equals(parts[1])) {
+            bot.acceptInvite(this, rules);
+            return;
+        }
+
+        ClientHandler targetHandler = serverState.getUser(parts[1]);
         if (targetHandler != null) {
-            targetHandler.sendMessage("INVITE_FROM|" + username);
+            targetHandler.invitesReceived.put(username, rules);
+            targetHandler.sendMessage("INVITE_FROM|" + username + rules.toFields());
         }
     }
 
@@ -145,11 +487,26 @@ public class ClientHandler implements Runnable {
         ClientHandler inviter = serverState.getUser(inviterName);
         ClientHandler invitee = serverState.getUser(username);
 
+        // accept tanpa invite yang tercatat (client lama) tetap main varian klasik
+        GameRules rules = invitesReceived.remove(inviterName);
+        if (rules == null)
+            rules = GameRules.CLASSIC;
+
         if (inviter == null || invitee == null)
             return;
 
-        // Buat game baru
-        GameRoom game = serverState.createGame(inviterName, username);
+        // keluar antrian dulu supaya matchmaker tidak memasangkan mereka lagi;
+        // kalau matchmaker tetap lebih cepat, createGame di bawah yang menolak
+        Matchmaker matchmaker = serverState.getMatchmaker();
+        matchmaker.cancel(inviterName, () -> inviter.sendMessage("QUEUE_LEFT"));
+        matchmaker.cancel(username, () -> invitee.sendMessage("QUEUE_LEFT"));
+
+        // klaim kedua player atomic: gagal kalau salah satu sudah main
+        GameRoom game = serverState.createGame(inviterName, username, rules);
+        if (game == null) {
+            sendMessage("INVITE_FAIL|Already in a game");
+            return;
+        }
 
         inviter.sendMessage("INVITE_ACCEPTED|" + username);
         invitee.sendMessage("INVITE_ACCEPTED|" + inviterName);
@@ -159,6 +516,7 @@ public class ClientHandler implements Runnable {
     }
 
     private void handleInviteDeclined(String inviterName) {
+        invitesReceived.remove(inviterName);
         ClientHandler inviter = serverState.getUser(inviterName);
         if (inviter != null) {
             inviter.sendMessage("INVITE_DECLINED|" + username);
@@ -168,10 +526,24 @@ public class ClientHandler implements Runnable {
     // ================= GAME PLAY =================
 
     private void handleGameMove(String[] parts) {
-        String gameId = parts[1];
-        int cellIndex = Integer.parseInt(parts[2]);
+        int cellIndex;
+        try {
+            cellIndex = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return; // index tidak valid, abaikan seperti langkah ilegal lainnya
+        }
 
-        GameRoom game = serverState.getGame(gameId);
+        GameRoom game = serverState.getGame(parts[1]);
+        if (game != null) {
+            game.processMove(username, cellIndex);
+        }
+    }
+
+    // jalur cepat: game id masih berupa byte dari read buffer
+    private void handleGameMove(byte[] id, int idOff, int idLen, int cellIndex) {
+        // id base 36 langsung jadi long, lookup tanpa String dan tanpa boxing
+        long gameId = GameIds.parse(id, idOff, idLen);
+        GameRoom game = gameId < 0 ? null : serverState.getGame(gameId);
         if (game != null) {
             game.processMove(username, cellIndex);
         }
@@ -183,42 +555,216 @@ public class ClientHandler implements Runnable {
 
         GameRoom game = serverState.getGame(gameId);
         if (game != null) {
-            game.broadcast("CHAT_GAME_FROM|" + username + "|" + text);
+            game.chat(username, text);
         }
     }
 
-    private void handleSurrender() {
-        GameRoom game = serverState.findGameByPlayer(username);
-        if (game == null)
+    // HINT|gameId -> HINT_RESULT|gameId|cell|WIN/LOSS/DRAW|plies, dari sudut pandang yang minta
+    private void handleHint(String gameId) {
+        GameRoom game = serverState.getGame(gameId);
+        if (game == null || !(username.equals(game.getPlayer1()) || username.equals(game.getPlayer2()))) {
+            sendMessage("HINT_FAIL|Unknown game");
             return;
+        }
 
-        String p1 = game.getPlayer1();
-        String p2 = game.getPlayer2();
-        String winner = username.equals(p1) ? p2 : p1;
+        InfinityTable table = serverState.getInfinityTable();
+        if (table == null || !table.supports(game.getRules())) {
+            sendMessage("HINT_FAIL|No hint for this variant");
+            return;
+        }
+
+        // dibaca di shard game, jadi board dan giliran konsisten dengan langkah terakhir
+        game.execute(() -> {
+            if (!username.equals(game.getCurrentTurn())) {
+                sendMessage("HINT_FAIL|Not your turn");
+                return;
+            }
+            Board board = game.copyBoard();
+            int player = game.playerIndex(username);
+            int entry = table.lookup(board, player);
+            sendMessage("HINT_RESULT|" + gameId + "|" + table.bestMove(board, player)
+                    + "|" + InfinityTable.outcomeName(entry) + "|" + InfinityTable.distanceOf(entry));
+        });
+    }
 
-        game.broadcast("GAME_RESULT|" + game.getGameId() + "|WIN|" + winner);
-        game.broadcast("GAME_RESULT|" + game.getGameId() + "|LOSE|" + username);
+    // ================= MATCHMAKING =================
 
-        // optional: hapus game dari server
-        serverState.removeGame(game.getGameId());
+    // QUEUE[|size|winLength|pieceLimit] -> QUEUE_OK|rating|size|k|limit, nanti MATCH_FOUND + GAME_START
+    private void handleQueue(String[] parts) {
+        GameRules rules = GameRules.parse(parts, 1, serverState.getConfig().getInt("game.maxSize", 19));
+        if (rules == null) {
+            sendMessage("QUEUE_FAIL|Invalid game rules");
+            return;
+        }
+        if (serverState.findGameByPlayer(username) != null) {
+            sendMessage("QUEUE_FAIL|Already in a game");
+            return;
+        }
+
+        int rating = serverState.getRating(username);
+        serverState.getMatchmaker().enqueue(username, rating, rules);
+        sendMessage("QUEUE_OK|" + rating + rules.toFields());
     }
 
-    // ================= DISCONNECT =================
+    // LEADERBOARD[|k] -> LEADERBOARD_RESULT|myRank|myRating|players|rating:name,...
+    private void handleLeaderboard(String[] parts) {
+        int k = 10;
+        if (parts.length >= 2) {
+            try {
+                k = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                // pakai default
+            }
+        }
+        sendMessage("LEADERBOARD_RESULT|" + serverState.getRatings().leaderboard(username, k));
+    }
 
-    private void disconnect() {
-        try {
-            running = false;
+    // ================= CHANNELS =================
 
-            if (username != null) {
-                System.out.println("[SERVER] User disconnected: " + username);
-                serverState.removeUser(username);
-                serverState.broadcastUserList();
+    // JOIN_CHANNEL|name -> CHANNEL_JOINED|name|subscribers, atau CHANNEL_FAIL|name|reason
+    private void handleJoinChannel(String name) {
+        Channels channels = serverState.getChannels();
+        switch (channels.join(name, this)) {
+            case Channels.JOINED:
+            case Channels.ALREADY_JOINED:
+                sendMessage("CHANNEL_JOINED|" + name + "|" + channels.subscribers(name, username));
+                break;
+            case Channels.INVALID_NAME:
+                // nama tidak valid bisa berisi apa saja: tidak di-echo
+                sendMessage("CHANNEL_FAIL||Invalid channel name");
+                break;
+            case Channels.TOO_MANY_CHANNELS:
+                sendMessage("CHANNEL_FAIL|" + name + "|Too many channels");
+                break;
+            default:
+                sendMessage("CHANNEL_FAIL|" + name + "|Channel limit reached");
+                break;
+        }
+    }
+
+    // CHAT|channel|text -> CHAT_FROM|channel|from|text ke semua subscriber
+    private void handleChannelChat(String name, String text) {
+        if (serverState.getChannels().publish(name, username, text) < 0)
+            sendMessage("CHANNEL_FAIL|" + (Channels.validName(name) ? name : "") + "|Not in channel");
+    }
+
+    // LIST_CHANNELS[|k] -> CHANNEL_LIST|count|name:subscribers:messages,...
+    private void handleListChannels(String[] parts) {
+        int k = 20;
+        if (parts.length >= 2) {
+            try {
+                k = Math.max(0, Math.min(100, Integer.parseInt(parts[1])));
+            } catch (NumberFormatException e) {
+                // pakai default
             }
+        }
+        sendMessage("CHANNEL_LIST|" + serverState.getChannels().list(k));
+    }
+
+    // ================= SPECTATE =================
 
+    // WATCH|gameId -> WATCH_START|gameId|x=..|o=..|size=..|k=..|limit=.. + BOARD_UPDATE, atau WATCH_FAIL
+    private void handleWatch(String gameId) {
+        GameRoom game = serverState.getGame(gameId);
+        if (game == null) {
+            sendMessage("WATCH_FAIL|Unknown game");
+            return;
+        }
+        if (username.equals(game.getPlayer1()) || username.equals(game.getPlayer2())) {
+            sendMessage("WATCH_FAIL|You are playing this game");
+            return;
+        }
+        if (watching != game)
+            stopWatching();
+        watching = game;
+        game.watch(this);
+    }
+
+    private void stopWatching() {
+        GameRoom game = watching;
+        if (game != null) {
+            watching = null;
+            game.unwatch(username);
+        }
+    }
+
+    /** Game over (or WATCH refused): only clears it if still the watched game. */
+    void stoppedWatching(GameRoom game) {
+        if (watching == game)
+            watching = null;
+    }
+
+    private void handleSurrender() {
+        GameRoom game = serverState.findGameByPlayer(username);
+        if (game != null) {
+            game.surrender(username);
+        }
+    }
+
+    // ================= DISCONNECT =================
+
+    void disconnect() {
+        running = false;
+
+        Session s = session;
+        if (username != null) {
+            if (s != null && !quit) {
+                // user tetap login selama session.graceMs, menunggu RESUME
+                if (s.detach(this))
+                    System.out.println("[SERVER] User detached: " + username);
+            } else {
+                if (s != null)
+                    serverState.getSessions().close(s);
+                logout();
+            }
+        }
+        closeTransport();
+    }
+
+    /** Real logout: user list, presence, game. Once per user (removeUser decides). */
+    void logout() {
+        if (serverState.removeUser(username, this)) {
+            System.out.println("[SERVER] User disconnected: " + username);
+            serverState.userLeft(username);
+            stopWatching();
+            serverState.getMatchmaker().cancel(username);
+            serverState.getChannels().leaveAll(username);
+
+            GameRoom game = serverState.findGameByPlayer(username);
+            if (game != null)
+                game.playerLeft(username);
+        }
+    }
+
+    private void watchIdle() {
+        IdleTimer timer = serverState.getIdleTimer();
+        if (timer != null)
+            idle = timer.register(this::idleTimeout);
+    }
+
+    // thread idle-wheel: tidak ada pesan (termasuk PING) selama idle.timeoutMs.
+    // Lewat jalur disconnect biasa, jadi session tetap bisa di-RESUME.
+    private void idleTimeout() {
+        if (connection != null) {
+            connection.evictIdle();
+        } else {
+            System.out.println("[SERVER] Idle timeout, closing connection"
+                    + (username != null ? " of " + username : "") + ".");
+            disconnect();
+        }
+    }
+
+    void closeTransport() {
+        running = false;
+        if (idle != null)
+            idle.cancel();
+        try {
+            if (connection != null)
+                connection.close();
+            if (writer != null)
+                writer.close();
             if (in != null)
                 in.close();
-            if (out != null)
-                out.close();
             if (socket != null && !socket.isClosed())
                 socket.close();
 
@@ -229,11 +775,64 @@ public class ClientHandler implements Runnable {
     // ================= UTIL =================
 
     public void sendMessage(String msg) {
-        if (out != null) {
-            out.println(msg);
+        sendFrame(Frame.encode(msg, binary), Frame.messages(msg));
+    }
+
+    void sendFrame(ByteBuffer frame) {
+        sendFrame(frame, 1);
+    }
+
+    // frame berisi {@code messages} pesan protokol (lihat Frame.messages)
+    void sendFrame(ByteBuffer frame, int messages) {
+        Session s = session;
+        if (s != null) {
+            s.send(frame, messages);
+        } else {
+            write(frame);
         }
     }
 
+    // snapshot (USER_LIST, backfill chat): tidak disimpan di ring session, RESUME dengan GAP mengirim ulang
+    void sendSnapshot(ByteBuffer frame, int messages) {
+        Session s = session;
+        if (s != null) {
+            s.send(frame, messages, false);
+        } else {
+            write(frame);
+        }
+    }
+
+    // tidak pernah blocking: frame masuk antrian, writer yang kirim ke socket
+    void write(ByteBuffer frame) {
+        if (connection != null) {
+            connection.send(frame);
+        } else if (writer != null) {
+            writer.send(frame);
+        }
+    }
+
+    /** Bytes waiting for the user's socket, wherever the session is attached now. */
+    long getOutboundBacklog() {
+        Session s = session;
+        return s != null ? s.backlog() : getTransportBacklog();
+    }
+
+    long getTransportBacklog() {
+        if (connection != null)
+            return connection.getPendingBytes();
+        if (writer != null)
+            return writer.getPendingBytes();
+        return 0;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    Session getSession() {
+        return session;
+    }
+
     public String getUsername() {
         return username;
     }
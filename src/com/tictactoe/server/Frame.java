@@ -0,0 +1,110 @@
+package com.tictactoe.server;
+
+import com.tictactoe.protocol.BinaryCodec;
+import com.tictactoe.protocol.TextCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns protocol lines into wire frames for the outbound queues: either
+ * "message\n" (UTF-8 text) or a binary frame for clients that negotiated the
+ * binary protocol at LOGIN. A message may contain several lines separated by
+ * '\n'; they end up in one buffer.
+ */
+final class Frame {
+
+    private Frame() {
+    }
+
+    /** Protocol messages in {@code msg} (one per line); each gets its own session seq. */
+    static int messages(String msg) {
+        int n = 1;
+        for (int i = msg.indexOf('\n'); i >= 0; i = msg.indexOf('\n', i + 1))
+            n++;
+        return n;
+    }
+
+    /** Frame for a single recipient. */
+    static ByteBuffer encode(String msg, boolean binary) {
+        return ByteBuffer.wrap(toBytes(msg, binary));
+    }
+
+    /**
+     * Frame encoded once and shared by many recipients. The buffer is direct
+     * (NIO writes it without another copy) and read-only; every recipient must
+     * get its own {@link ByteBuffer#duplicate()} so positions stay independent.
+     */
+    static ByteBuffer encodeShared(String msg, boolean binary) {
+        byte[] bytes = toBytes(msg, binary);
+        ByteBuffer frame = ByteBuffer.allocateDirect(bytes.length);
+        frame.put(bytes).flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    private static byte[] toBytes(String msg, boolean binary) {
+        if (!binary) {
+            byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+            byte[] line = new byte[bytes.length + 1];
+            System.arraycopy(bytes, 0, line, 0, bytes.length);
+            line[bytes.length] = '\n';
+            return line;
+        }
+
+        if (msg.indexOf('\n') < 0)
+            return toBinary(msg);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String line : msg.split("\n")) {
+            byte[] b = toBinary(line);
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] toBinary(String line) {
+        byte[] frame = BinaryCodec.encode(TextCodec.split(line));
+        // command tanpa opcode tetap dikirim sebagai text, decoder client bisa campur
+        return frame != null ? frame : toBytes(line, false);
+    }
+
+    /**
+     * One message for many recipients, encoded at most once per protocol and
+     * only for the protocols actually used by the recipients. Not thread-safe;
+     * use it inside one fan-out loop.
+     */
+    static final class Shared {
+        private final String msg;
+        private final boolean direct;
+        private final int messages;
+        private ByteBuffer text;
+        private ByteBuffer binary;
+
+        Shared(String msg, boolean direct) {
+            this.msg = msg;
+            this.direct = direct;
+            this.messages = messages(msg);
+        }
+
+        void sendTo(ClientHandler handler) {
+            handler.sendFrame(duplicateFor(handler), messages);
+        }
+
+        /** Like sendTo, but not kept for replay (see {@link ClientHandler#sendSnapshot}). */
+        void sendSnapshotTo(ClientHandler handler) {
+            handler.sendSnapshot(duplicateFor(handler), messages);
+        }
+
+        ByteBuffer duplicateFor(ClientHandler handler) {
+            if (handler.isBinary()) {
+                if (binary == null)
+                    binary = direct ? encodeShared(msg, true) : encode(msg, true);
+                return binary.duplicate();
+            }
+            if (text == null)
+                text = direct ? encodeShared(msg, false) : encode(msg, false);
+            return text.duplicate();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.tictactoe.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Game id generator. An id is a positive 64-bit number:
+ *
+ *   [0][node 10 bit][sequence 53 bit]
+ *
+ * The sequence is one atomic counter, so ids never repeat within a process
+ * and always grow, however many games start in the same millisecond. It
+ * starts at (milliseconds since 2024-01-01) << 12 so a restarted server
+ * continues above the ids it handed out before (as long as it averaged less
+ * than 4096 games per millisecond). server.nodeId keeps ids of several
+ * servers apart.
+ *
+ * On the wire an id is lowercase base 36 ("2x8vk3jq0w", 10-13 characters).
+ */
+final class GameIds {
+
+    static final int NODE_BITS = 10;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final int SEQUENCE_BITS = 63 - NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long EPOCH_MS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    private static final int RADIX = 36;
+    private static final int MAX_CHARS = 13; // 36^13 > 2^63
+
+    private final long node;
+    private final AtomicLong sequence;
+
+    GameIds(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE)
+            throw new IllegalArgumentException("nodeId must be 0.." + MAX_NODE + ": " + nodeId);
+        this.node = (long) nodeId << SEQUENCE_BITS;
+        this.sequence = new AtomicLong((System.currentTimeMillis() - EPOCH_MS) << 12);
+    }
+
+    long next() {
+        return node | (sequence.incrementAndGet() & SEQUENCE_MASK);
+    }
+
+    static int nodeOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS);
+    }
+
+    static String format(long id) {
+        return Long.toString(id, RADIX);
+    }
+
+    /** Id from its text form, or -1 if it is not one (old "GAME_..." ids included). */
+    static long parse(String text) {
+        long id = 0;
+        int n = text.length();
+        if (n == 0 || n > MAX_CHARS)
+            return -1;
+        for (int i = 0; i < n; i++) {
+            int d = digit(text.charAt(i));
+            if (d < 0 || id > (Long.MAX_VALUE - d) / RADIX)
+                return -1;
+            id = id * RADIX + d;
+        }
+        return id;
+    }
+
+    /** Same as {@link #parse(String)}, straight from a read buffer (no String). */
+    static long parse(byte[] text, int off, int len) {
+        long id = 0;
+        if (len == 0 || len > MAX_CHARS)
+            return -1;
+        for (int i = off; i < off + len; i++) {
+            int d = digit(text[i]);
+            if (d < 0 || id > (Long.MAX_VALUE - d) / RADIX)
+                return -1;
+            id = id * RADIX + d;
+        }
+        return id;
+    }
+
+    private static int digit(int c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'z')
+            return c - 'a' + 10;
+        return -1;
+    }
+}
@@ -0,0 +1,798 @@
+package com.tictactoe.server;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of game events (create, move, result).
+ *
+ * Records go into fixed-size segment files (journal.segmentBytes, zero-filled
+ * up front) that are memory-mapped, so an append is a lock, a small encode
+ * and a copy into the mapping: no syscall on the move path. Durability is a
+ * group commit: the "journal-sync" thread forces the mapping to disk every
+ * journal.syncIntervalMs, or sooner once journal.syncBytes are waiting. A
+ * killed process loses nothing (the pages are in the OS cache already); a
+ * power failure loses at most the last interval.
+ *
+ * Record layout (big-endian):
+ *
+ *   [length int][crc32 int][type byte][gameId long][body]
+ *
+ * length and crc cover type..body; length 0 marks the unwritten rest of a
+ * segment, a torn record at the end fails its crc and ends the segment too.
+ *
+ *   CREATE  time long, size short, winLength short, pieceLimit int, player1 str, player2 str
+ *   MOVE    player byte, cell int
+ *   RESULT  time long, reason byte (WIN/DRAW/SURRENDER/LEFT), winner str ("" = draw)
+ *
+ * str = unsigned short length + UTF-8. A full segment is sealed and the next
+ * one (pre-allocated by the sync thread) takes over. A sealed segment in
+ * which every game has finished is compacted: its CREATE and RESULT records
+ * (the match history) are appended to history.log and the segment is
+ * deleted. A game that stays open only keeps the segments it wrote to,
+ * and only until a snapshot (see {@link JournalRecovery}) covers them.
+ *
+ * Compaction survives a crash at any step without writing history twice:
+ * segment-N.compacting holds the length of history.log before the append
+ * (open() cuts history.log back to it), and once the append is forced it is
+ * renamed to the tombstone segment-N.compacted. A tombstoned segment is
+ * never read or compacted again; open() deletes it, as does the next
+ * compaction if the delete failed (Windows refuses to delete a mapped file,
+ * so the segment's mapping is released first).
+ *
+ * A position is (segment << 32 | offset) of a record; appends return the
+ * position they wrote to, so a GameRoom knows its last journaled record.
+ */
+final class GameJournal {
+
+    static final byte CREATE = 1;
+    static final byte MOVE = 2;
+    static final byte RESULT = 3;
+
+    static final byte WIN = 0;
+    static final byte DRAW = 1;
+    static final byte SURRENDER = 2;
+    static final byte LEFT = 3;
+
+    static final String HISTORY_FILE = "history.log";
+    private static final String SPARE_FILE = "segment-next.tmp";
+    private static final String INTENT = ".compacting";
+    private static final String TOMBSTONE = ".compacted";
+    private static final int HEADER = 8; // length + crc
+
+    /** Callback for {@link #read}; one method per record type, pos = record position. */
+    interface Visitor {
+        void created(long pos, long gameId, long time, GameRules rules, String player1, String player2);
+
+        void moved(long pos, long gameId, int player, int cell);
+
+        void finished(long pos, long gameId, long time, int reason, String winner);
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long syncIntervalNanos;
+    private final int syncBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock(); // force vs. unmap segment sealed
+    private final ReentrantLock compactLock = new ReentrantLock(); // satu compaction sekaligus
+    private final CRC32 crc = new CRC32();
+    private byte[] scratch = new byte[256];
+    private ByteBuffer out = ByteBuffer.wrap(scratch);
+
+    // ----- dijaga lock -----
+    private Segment active;
+    private Segment spare; // sudah di-allocate + di-map, belum bernomor
+    private long nextSegment;
+    private final ArrayDeque<Segment> unsynced = new ArrayDeque<>(); // sealed, belum di-force
+    private int unsyncedBytes;
+    private final Set<Long> liveGames = new HashSet<>(); // sudah CREATE, belum RESULT
+    private long snapshotSegment; // segment < ini sudah tercakup snapshot
+    private final List<Sealed> sealed = new ArrayList<>(); // menunggu compaction
+
+    private final List<Long> undeleted = new ArrayList<>(); // sudah di history, delete gagal (compactLock)
+
+    private final Thread syncThread;
+    private volatile boolean closed;
+
+    // counters
+    private long records;
+    private long bytes;
+    private long dropped;
+    private volatile long syncs;
+    private volatile long syncedRecords;
+    private volatile long maxSyncMicros;
+    private volatile long compacted;
+
+    private GameJournal(Path dir, int segmentBytes, int syncIntervalMs, int syncBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, syncIntervalMs));
+        this.syncBytes = syncBytes;
+        this.syncThread = new Thread(this::syncLoop, "journal-sync");
+        this.syncThread.setDaemon(true);
+    }
+
+    /**
+     * Opens the journal in {@code dir}. Appends always start a new segment
+     * after the ones already there; those are compacted once a snapshot
+     * covers them (after recovery replayed them).
+     */
+    static GameJournal open(Path dir, int segmentBytes, int syncIntervalMs, int syncBytes) throws IOException {
+        if (segmentBytes < 4096)
+            throw new IllegalArgumentException("journal.segmentBytes must be >= 4096: " + segmentBytes);
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(SPARE_FILE));
+        finishCompactions(dir);
+
+        GameJournal journal = new GameJournal(dir, segmentBytes, syncIntervalMs, syncBytes);
+        List<Long> existing = segments(dir);
+        for (long no : existing)
+            journal.sealed.add(new Sealed(no, null));
+        journal.nextSegment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        journal.active = journal.newSegment(journal.nextSegment++);
+        journal.syncThread.start();
+        return journal;
+    }
+
+    // ================= APPEND =================
+
+    long created(long gameId, GameRules rules, String player1, String player2) {
+        byte[] p1 = player1.getBytes(StandardCharsets.UTF_8);
+        byte[] p2 = player2.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            ByteBuffer b = begin(CREATE, gameId, 8 + 2 + 2 + 4 + 2 + p1.length + 2 + p2.length);
+            b.putLong(System.currentTimeMillis());
+            b.putShort((short) rules.getSize());
+            b.putShort((short) rules.getWinLength());
+            b.putInt(rules.getPieceLimit());
+            putString(b, p1);
+            putString(b, p2);
+            liveGames.add(gameId);
+            return commit(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long moved(long gameId, int player, int cell) {
+        lock.lock();
+        try {
+            ByteBuffer b = begin(MOVE, gameId, 1 + 4);
+            b.put((byte) player);
+            b.putInt(cell);
+            return commit(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** reason is WIN, DRAW, SURRENDER or LEFT; winner is null for a draw. */
+    long finished(long gameId, int reason, String winner) {
+        byte[] w = winner != null ? winner.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        lock.lock();
+        try {
+            ByteBuffer b = begin(RESULT, gameId, 8 + 1 + 2 + w.length);
+            b.putLong(System.currentTimeMillis());
+            b.put((byte) reason);
+            putString(b, w);
+            liveGames.remove(gameId);
+            return commit(b);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer begin(byte type, long gameId, int bodyBytes) {
+        int size = HEADER + 1 + 8 + bodyBytes;
+        if (size > scratch.length) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+            out = ByteBuffer.wrap(scratch);
+        }
+        ByteBuffer b = out;
+        b.clear().position(HEADER);
+        b.put(type);
+        b.putLong(gameId);
+        return b;
+    }
+
+    // returns the position of the record (-1 if it was dropped)
+    private long commit(ByteBuffer b) {
+        int size = b.position();
+        crc.reset();
+        crc.update(scratch, HEADER, size - HEADER);
+        b.putInt(0, size - HEADER);
+        b.putInt(4, (int) crc.getValue());
+
+        if (size > active.buf.remaining() && !roll(size)) {
+            dropped++;
+            return -1;
+        }
+        long pos = position(active.no, active.buf.position());
+        active.buf.put(scratch, 0, size);
+        records++;
+        bytes += size;
+        unsyncedBytes += size;
+        if (unsyncedBytes >= syncBytes)
+            LockSupport.unpark(syncThread);
+        return pos;
+    }
+
+    // false if no new segment could be opened; the record is then dropped
+    private boolean roll(int need) {
+        if (need > segmentBytes)
+            return false;
+        Segment next = spare;
+        spare = null;
+        try {
+            if (next != null) {
+                Path file = segmentFile(dir, nextSegment);
+                Files.move(next.file, file, StandardCopyOption.ATOMIC_MOVE);
+                next = new Segment(nextSegment++, file, next.buf);
+            } else {
+                next = newSegment(nextSegment++);
+            }
+        } catch (IOException e) {
+            // disk penuh dsb.: game tetap jalan, hanya tidak tercatat
+            System.out.println("[SERVER ERROR] Journal roll failed: " + e.getMessage());
+            return false;
+        }
+        unsynced.add(active);
+        sealed.add(new Sealed(active.no, active));
+        active = next;
+        LockSupport.unpark(syncThread);
+        return true;
+    }
+
+    private static void putString(ByteBuffer b, byte[] s) {
+        b.putShort((short) s.length);
+        b.put(s);
+    }
+
+    // ================= SNAPSHOT HOOKS =================
+
+    /** Position the next record will get; everything before it is already appended. */
+    long position() {
+        lock.lock();
+        try {
+            return position(active.no, active.buf.position());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot holds the state of every game up to {@code pos}: segments
+     * before its segment are no longer needed to recover and can be compacted.
+     */
+    void coveredBy(long pos) {
+        lock.lock();
+        try {
+            snapshotSegment = Math.max(snapshotSegment, segmentOf(pos));
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(syncThread);
+    }
+
+    /** A game rebuilt by recovery is live again (its CREATE may be in an older run). */
+    void restoreLive(long gameId) {
+        lock.lock();
+        try {
+            liveGames.add(gameId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long records() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static long position(long segment, int offset) {
+        return segment << 32 | offset;
+    }
+
+    static long segmentOf(long pos) {
+        return pos >>> 32;
+    }
+
+    static int offsetOf(long pos) {
+        return (int) pos;
+    }
+
+    // ================= SYNC / COMPACTION =================
+
+    private void syncLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(this, syncIntervalNanos);
+            try {
+                sync();
+                compact();
+                prepareSpare();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[SERVER ERROR] Journal sync failed: " + e);
+            }
+        }
+    }
+
+    /** Forces everything appended so far to disk (one group commit). */
+    void sync() {
+        List<Segment> toForce = new ArrayList<>();
+        long upTo;
+        // forceLock sebelum daftar diambil: compaction tidak boleh unmap segment yang masih di-force
+        forceLock.lock();
+        try {
+            lock.lock();
+            try {
+                if (records == syncedRecords)
+                    return;
+                toForce.addAll(unsynced);
+                unsynced.clear();
+                toForce.add(active);
+                upTo = records;
+                unsyncedBytes = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            // di luar lock: append tetap jalan selama msync
+            long start = System.nanoTime();
+            for (Segment s : toForce) {
+                s.buf.force();
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+            if (micros > maxSyncMicros)
+                maxSyncMicros = micros;
+            syncedRecords = upTo;
+            syncs++;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /** Compacts the sealed segments that hold no record of an unfinished game. */
+    void compact() throws IOException {
+        compactLock.lock();
+        try {
+            undeleted.removeIf(this::deleteCompacted);
+            compactSealed();
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    private void compactSealed() throws IOException {
+        List<Sealed> candidates;
+        long covered;
+        lock.lock();
+        try {
+            if (!unsynced.isEmpty())
+                return;
+            candidates = new ArrayList<>(sealed);
+            covered = snapshotSegment;
+        } finally {
+            lock.unlock();
+        }
+
+        for (Sealed s : candidates) {
+            // sebelum snapshot: tidak perlu lagi untuk recovery, game hidup atau tidak
+            boolean free = s.no < covered;
+            if (!free && s.previousRun)
+                continue; // game-nya baru diketahui setelah recovery
+            if (!free && s.games == null)
+                s.games = gamesIn(segmentFile(dir, s.no)); // sekali per segment, di luar lock
+            lock.lock();
+            try {
+                if (!free) {
+                    free = true;
+                    for (long id : s.games) {
+                        if (liveGames.contains(id)) {
+                            free = false;
+                            break;
+                        }
+                    }
+                }
+                free = free && sealed.remove(s);
+            } finally {
+                lock.unlock();
+            }
+            if (free)
+                compactSegment(s);
+        }
+    }
+
+    private static long[] gamesIn(Path file) throws IOException {
+        Set<Long> ids = new HashSet<>();
+        read(file, new Visitor() {
+            @Override
+            public void created(long pos, long gameId, long time, GameRules rules, String player1,
+                    String player2) {
+                ids.add(gameId);
+            }
+
+            @Override
+            public void moved(long pos, long gameId, int player, int cell) {
+                ids.add(gameId);
+            }
+
+            @Override
+            public void finished(long pos, long gameId, long time, int reason, String winner) {
+                ids.add(gameId);
+            }
+        });
+        long[] out = new long[ids.size()];
+        int i = 0;
+        for (long id : ids)
+            out[i++] = id;
+        return out;
+    }
+
+    private void compactSegment(Sealed s) throws IOException {
+        Path file = segmentFile(dir, s.no);
+        Path intent = marker(dir, s.no, INTENT);
+        try (FileChannel out = FileChannel.open(dir.resolve(HISTORY_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            long start = out.size();
+            try {
+                // 1. intent dulu: crash di tengah append -> open() memotong history kembali ke start
+                try (FileChannel ch = FileChannel.open(intent, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer b = ByteBuffer.allocate(8).putLong(0, start);
+                    while (b.hasRemaining())
+                        ch.write(b);
+                    ch.force(true);
+                }
+                appendHistory(file, out.position(start));
+                out.force(false);
+            } catch (IOException e) {
+                // history kembali seperti semula, segment dicoba lagi nanti
+                out.truncate(start);
+                Files.deleteIfExists(intent);
+                lock.lock();
+                try {
+                    sealed.add(s);
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+            // 2. history lengkap: tombstone, segment ini tidak akan dibaca atau di-compact lagi
+            Files.move(intent, marker(dir, s.no, TOMBSTONE), StandardCopyOption.ATOMIC_MOVE);
+        }
+        compacted++;
+
+        // 3. mapping dilepas dulu (Windows tidak bisa delete file yang masih di-map), lalu hapus
+        if (s.segment != null) {
+            forceLock.lock();
+            try {
+                unmap(s.segment.buf);
+                s.segment = null;
+            } finally {
+                forceLock.unlock();
+            }
+        }
+        if (!deleteCompacted(s.no))
+            undeleted.add(s.no);
+    }
+
+    // CREATE + RESULT dari segment ke out (posisinya sudah di akhir history)
+    private static void appendHistory(Path file, FileChannel out) throws IOException {
+        ByteBuffer history = ByteBuffer.allocate(64 * 1024);
+        ByteBuffer buf = load(file);
+        ByteBuffer view = buf.duplicate();
+        CRC32 check = new CRC32();
+        int pos = 0;
+        int size;
+        while ((size = recordAt(buf, view, check, pos)) > 0) {
+            if (buf.get(pos + HEADER) != MOVE) {
+                if (history.remaining() < size) {
+                    drain(history, out);
+                    if (history.capacity() < size)
+                        history = ByteBuffer.allocate(size);
+                }
+                view.limit(pos + size).position(pos);
+                history.put(view);
+            }
+            pos += size;
+        }
+        drain(history, out);
+    }
+
+    // false kalau file masih terkunci; tombstone tetap ada sampai berhasil
+    private boolean deleteCompacted(long no) {
+        try {
+            Files.deleteIfExists(segmentFile(dir, no));
+            Files.delete(marker(dir, no, TOMBSTONE));
+            return true;
+        } catch (IOException e) {
+            System.out.println("[SERVER ERROR] Journal: compacted segment " + no + " not deleted yet: " + e);
+            return false;
+        }
+    }
+
+    /** Undoes or completes compactions a crash interrupted; called before anything reads the segments. */
+    private static void finishCompactions(Path dir) throws IOException {
+        List<Path> markers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.compact*")) {
+            for (Path f : files)
+                markers.add(f);
+        }
+        for (Path f : markers) {
+            String name = f.getFileName().toString();
+            if (name.endsWith(INTENT)) {
+                // append mungkin setengah jalan: potong history kembali, segment di-compact ulang nanti
+                byte[] start = Files.readAllBytes(f);
+                Path history = dir.resolve(HISTORY_FILE);
+                if (start.length == 8 && Files.exists(history)) {
+                    try (FileChannel out = FileChannel.open(history, StandardOpenOption.WRITE)) {
+                        out.truncate(ByteBuffer.wrap(start).getLong());
+                    }
+                }
+                Files.delete(f);
+            } else if (name.endsWith(TOMBSTONE)) {
+                // sudah di history: segment tinggal dihapus
+                Path segment = dir.resolve(name.substring(0, name.length() - TOMBSTONE.length()) + ".log");
+                try {
+                    Files.deleteIfExists(segment);
+                    Files.delete(f);
+                } catch (IOException e) {
+                    System.out.println("[SERVER ERROR] Journal: " + segment.getFileName() + " not deleted: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases a mapping now instead of at some later GC. Best effort: if the
+     * JDK does not allow it, the file is deleted once GC has dropped it.
+     */
+    private static void unmap(MappedByteBuffer buf) {
+        try {
+            Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+            Field field = unsafe.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buf); // Java 9+
+        } catch (NoSuchMethodException e) {
+            try {
+                Method cleaner = buf.getClass().getMethod("cleaner"); // Java 8
+                cleaner.setAccessible(true);
+                Object c = cleaner.invoke(buf);
+                if (c != null)
+                    c.getClass().getMethod("clean").invoke(c);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+    }
+
+    private static void drain(ByteBuffer b, FileChannel out) throws IOException {
+        b.flip();
+        while (b.hasRemaining())
+            out.write(b);
+        b.clear();
+    }
+
+    private void prepareSpare() throws IOException {
+        lock.lock();
+        try {
+            if (spare != null)
+                return;
+        } finally {
+            lock.unlock();
+        }
+        // hanya thread sync yang membuat spare, jadi aman dibuat di luar lock
+        Segment s = map(dir.resolve(SPARE_FILE), -1);
+        lock.lock();
+        try {
+            spare = s;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Segment newSegment(long no) throws IOException {
+        return map(segmentFile(dir, no), no);
+    }
+
+    private Segment map(Path file, long no) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(segmentBytes);
+            return new Segment(no, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        }
+    }
+
+    /** Final group commit; later appends are not guaranteed to reach disk. */
+    void close() {
+        closed = true;
+        LockSupport.unpark(syncThread);
+        sync();
+    }
+
+    // ================= READ =================
+
+    /**
+     * Calls {@code visitor} for every valid record in a segment (or the
+     * history file), in order; returns the number of records read.
+     */
+    static long read(Path file, Visitor visitor) throws IOException {
+        return read(file, 0, 0, visitor);
+    }
+
+    /** Records of segment {@code segment} from offset {@code from} on. */
+    static long read(Path file, long segment, int from, Visitor visitor) throws IOException {
+        ByteBuffer buf = load(file);
+        ByteBuffer b = buf.duplicate();
+        CRC32 check = new CRC32();
+        long count = 0;
+        int pos = from;
+        int size;
+        while ((size = recordAt(buf, b, check, pos)) > 0) {
+            b.limit(pos + size).position(pos + HEADER);
+            byte type = b.get();
+            long gameId = b.getLong();
+            switch (type) {
+                case CREATE: {
+                    long time = b.getLong();
+                    int boardSize = b.getShort();
+                    int winLength = b.getShort();
+                    int pieceLimit = b.getInt();
+                    GameRules rules = new GameRules(boardSize, winLength, pieceLimit);
+                    visitor.created(position(segment, pos), gameId, time, rules, getString(b), getString(b));
+                    break;
+                }
+                case MOVE:
+                    visitor.moved(position(segment, pos), gameId, b.get(), b.getInt());
+                    break;
+                case RESULT: {
+                    long time = b.getLong();
+                    int reason = b.get();
+                    String winner = getString(b);
+                    visitor.finished(position(segment, pos), gameId, time, reason,
+                            winner.isEmpty() ? null : winner);
+                    break;
+                }
+                default:
+                    break; // tipe baru dari versi lain: lewati
+            }
+            pos += size;
+            count++;
+        }
+        return count;
+    }
+
+    // seluruh file ke heap, bukan mmap: tidak ada mapping yang menahan file sampai GC
+    private static ByteBuffer load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("journal file too large: " + file);
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, buf.position()) < 0)
+                    break; // file dipotong selagi dibaca: sisanya nol = akhir data
+            }
+            buf.clear();
+            return buf;
+        }
+    }
+
+    // size of the valid record at pos, or 0 at the end of the data; view and
+    // check are scratch (view = duplicate of buf)
+    private static int recordAt(ByteBuffer buf, ByteBuffer view, CRC32 check, int pos) {
+        if (buf.capacity() - pos < HEADER)
+            return 0;
+        int length = buf.getInt(pos);
+        if (length <= 0 || length > buf.capacity() - pos - HEADER)
+            return 0;
+        view.limit(pos + HEADER + length).position(pos + HEADER);
+        check.reset();
+        check.update(view);
+        return (int) check.getValue() == buf.getInt(pos + 4) ? HEADER + length : 0;
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] s = new byte[b.getShort() & 0xFFFF];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    /** Segment numbers in {@code dir}, oldest first. */
+    static List<Long> segments(Path dir) throws IOException {
+        List<Long> out = new ArrayList<>();
+        if (!Files.isDirectory(dir))
+            return out;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.log")) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                try {
+                    out.add(Long.parseLong(name.substring(8, name.length() - 4)));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        // sudah di-compact, hanya delete yang gagal
+        out.removeIf(no -> Files.exists(marker(dir, no, TOMBSTONE)));
+        out.sort(null);
+        return out;
+    }
+
+    static Path segmentFile(Path dir, long no) {
+        return dir.resolve(String.format("segment-%010d.log", no));
+    }
+
+    private static Path marker(Path dir, long no, String suffix) {
+        return dir.resolve(String.format("segment-%010d", no) + suffix);
+    }
+
+    // ================= STATS =================
+
+    Path getDir() {
+        return dir;
+    }
+
+    String stats() {
+        lock.lock();
+        try {
+            long s = syncs;
+            return "records=" + records + ", bytes=" + bytes + ", segment=" + active.no
+                    + ", liveGames=" + liveGames.size() + ", syncs=" + s
+                    + ", records/sync=" + (s == 0 ? 0 : syncedRecords / s)
+                    + ", maxSync=" + maxSyncMicros + "us, compacted=" + compacted + ", dropped=" + dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Sealed {
+        final long no;
+        final boolean previousRun; // hanya di-compact setelah snapshot mencakupnya
+        Segment segment; // mapping run ini; null untuk run sebelumnya atau sesudah unmap
+        long[] games; // game id yang punya record di segment ini (diisi thread sync)
+
+        Sealed(long no, Segment segment) {
+            this.no = no;
+            this.segment = segment;
+            this.previousRun = segment == null;
+        }
+    }
+
+    private static final class Segment {
+        final long no; // -1 = spare
+        final Path file;
+        final MappedByteBuffer buf;
+
+        Segment(long no, Path file, MappedByteBuffer buf) {
+            this.no = no;
+            this.file = file;
+            this.buf = buf;
+        }
+    }
+}
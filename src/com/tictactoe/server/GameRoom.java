@@ -1,27 +1,33 @@
 // GameRoom.java
 package com.tictactoe.server;
 
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.Queue;
-
+/**
+ * One game. All state below is owned by the game's shard thread (see
+ * {@link GameShards}): the public methods only enqueue a task there, so
+ * moves, chat, surrender and a player leaving are applied one at a time in
+ * arrival order, without locks.
+ */
 public class GameRoom {
 
-    private final String gameId;
+    private final long id;
+    private final String gameId; // id dalam base 36, bentuk di protokol
     private final String player1; // inviter = X
     private final String player2; // invitee = O
 
     private final ServerState serverState;
 
-    private char[] board; // 9 cells
-    private String currentTurn; // username whose turn it is
-    private GameStatus status;
-    private String winner;
+    private final GameRules rules;
+    // bitboard + FIFO per player for "Infinity" logic (piece limit per player)
+    private final Board board;
+    // volatile: ditulis hanya oleh shard, dibaca thread lain untuk filter / getter
+    private volatile String currentTurn; // username whose turn it is
+    private volatile GameStatus status;
+    private volatile String winner;
 
-    // Track move history for "Infinity" logic (FIFO)
-    private Queue<Integer> xMoves;
-    private Queue<Integer> oMoves;
-    private static final int MAX_MOVES = 3;
+    private final GameShards.Shard shard;
+    private long journalPos = -1; // posisi record journal terakhir game ini
+    private Spectators.Audience audience; // null sampai ada WATCH
+    private ChatHistory chatHistory; // null sampai ada chat
 
     public enum GameStatus {
         WAITING,
@@ -29,90 +35,186 @@ public class GameRoom {
         FINISHED
     }
 
-    public GameRoom(String gameId, String player1, String player2, ServerState serverState) {
-        this.gameId = gameId;
+    public GameRoom(long id, String player1, String player2, ServerState serverState) {
+        this(id, player1, player2, GameRules.CLASSIC, serverState);
+    }
+
+    GameRoom(long id, String player1, String player2, GameRules rules, ServerState serverState) {
+        this.id = id;
+        this.gameId = GameIds.format(id);
         this.player1 = player1;
         this.player2 = player2;
+        this.rules = rules;
+        this.board = new Board(rules);
         this.serverState = serverState;
+        this.shard = serverState.getShards().forGame(id);
 
-        this.board = new char[] { '-', '-', '-', '-', '-', '-', '-', '-', '-' };
         this.status = GameStatus.WAITING;
         this.currentTurn = player1; // X always starts
-
-        this.xMoves = new LinkedList<>();
-        this.oMoves = new LinkedList<>();
     }
 
     // ----------------------
     // GAME START
     // ----------------------
     public void startGame() {
+        shard.execute(this::doStartGame);
+    }
+
+    private void doStartGame() {
         this.status = GameStatus.IN_PROGRESS;
         this.currentTurn = player1; // X turn first
 
+        GameJournal journal = serverState.getJournal();
+        if (journal != null)
+            journalPos = journal.created(id, rules, player1, player2);
+
         ClientHandler h1 = serverState.getUser(player1);
         ClientHandler h2 = serverState.getUser(player2);
 
         // Notify P1 = X
         if (h1 != null) {
-            h1.sendMessage("GAME_START|" + gameId + "|you=X|opponent=" + player2);
+            h1.sendMessage("GAME_START|" + gameId + "|you=X|opponent=" + player2 + rules.toNamedFields());
             // First turn:
             h1.sendMessage("YOUR_TURN|" + gameId);
         }
 
         // Notify P2 = O
         if (h2 != null) {
-            h2.sendMessage("GAME_START|" + gameId + "|you=O|opponent=" + player1);
+            h2.sendMessage("GAME_START|" + gameId + "|you=O|opponent=" + player1 + rules.toNamedFields());
         }
 
         sendBoardUpdate();
+
+        // BOT selalu invitee (O), jadi belum pernah jalan duluan; tetap dicek
+        if (isBotTurn())
+            serverState.getBot().requestMove(this);
     }
 
     // ----------------------
     // MOVE PROCESSING
     // ----------------------
-    public synchronized void processMove(String username, int cellIndex) {
+    public void processMove(String username, int cellIndex) {
+        // Bukan gilirannya: buang tanpa antri (client hanya jalan setelah YOUR_TURN,
+        // yang dikirim sesudah currentTurn ditulis). Keputusan final tetap di shard.
+        if (!username.equals(currentTurn))
+            return;
+
+        boolean queued = shard.offer(() -> {
+            if (doProcessMove(username, cellIndex))
+                serverState.getBot().requestMove(this);
+        });
+        if (!queued)
+            shardFull(username, "GAME_MOVE");
+    }
+
+    // returns true if the turn passed to the BOT
+    private boolean doProcessMove(String username, int cellIndex) {
 
         if (status != GameStatus.IN_PROGRESS)
-            return;
+            return false;
         if (!username.equals(currentTurn))
-            return;
-        if (cellIndex < 0 || cellIndex > 8)
-            return;
-        if (board[cellIndex] != '-')
-            return;
+            return false;
+        if (cellIndex < 0 || cellIndex >= board.getCells())
+            return false;
+        if (!board.isFree(cellIndex))
+            return false;
 
-        boolean isPlayer1 = username.equals(player1);
-        char symbol = isPlayer1 ? 'X' : 'O';
-        Queue<Integer> playerMoves = isPlayer1 ? xMoves : oMoves;
+        int player = playerIndex(username);
 
         // --- INFINITY LOGIC ---
-        // If player already has MAX moves, remove the oldest one
-        if (playerMoves.size() >= MAX_MOVES) {
-            int oldIndex = playerMoves.poll();
-            board[oldIndex] = '-'; // Clear the old spot
-        }
+        // If player already has MAX moves, the oldest one is removed
+        board.place(player, cellIndex);
 
-        // Add new move
-        board[cellIndex] = symbol;
-        playerMoves.add(cellIndex);
-        // ----------------------
+        GameJournal journal = serverState.getJournal();
+        if (journal != null)
+            journalPos = journal.moved(id, player, cellIndex);
 
         sendBoardUpdate();
 
         // Check win/draw
-        if (checkWinner(symbol)) {
-            status = GameStatus.FINISHED;
-            winner = username;
+        if (board.wins(player, cellIndex)) {
+            finish(username, GameJournal.WIN);
             broadcast("GAME_RESULT|" + gameId + "|WINNER|" + username);
-            return;
+            return false;
         }
 
-        // Note: isBoardFull check is removed because the board
-        // will never be full with the limit logic (max 6 items).
+        // Hanya bisa penuh kalau piece limit cukup besar (atau 0 = tanpa limit)
+        if (board.isFull()) {
+            finish(null, GameJournal.DRAW);
+            broadcast("GAME_RESULT|" + gameId + "|DRAW|NONE");
+            return false;
+        }
 
         switchTurn();
         notifyTurn();
+        return isBotTurn();
+    }
+
+    // ----------------------
+    // CHAT / SURRENDER / LEAVE
+    // ----------------------
+    public void chat(String username, String text) {
+        boolean queued = shard.offer(() -> {
+            String msg = "CHAT_GAME_FROM|" + username + "|" + text;
+            if (chatHistory == null)
+                chatHistory = serverState.newGameChatHistory();
+            broadcast(chatHistory != null ? chatHistory.add(msg, false) : new Frame.Shared(msg, false));
+        });
+        if (!queued)
+            shardFull(username, "GAME_CHAT");
+    }
+
+    // antrian shard penuh (game.shardQueueMax): pesan dibuang, pengirim diberi tahu
+    private void shardFull(String username, String command) {
+        ClientHandler h = serverState.getUser(username);
+        if (h != null)
+            h.sendMessage("RATE_LIMITED|" + command);
+    }
+
+    public void surrender(String username) {
+        shard.execute(() -> {
+            if (status != GameStatus.IN_PROGRESS)
+                return; // langkah terakhir lebih dulu mengakhiri game
+            finish(opponentOf(username), GameJournal.SURRENDER);
+            broadcast("GAME_RESULT|" + gameId + "|WIN|" + winner);
+            broadcast("GAME_RESULT|" + gameId + "|LOSE|" + username);
+        });
+    }
+
+    /** Player disconnected: the opponent wins. */
+    void playerLeft(String username) {
+        shard.execute(() -> {
+            if (status != GameStatus.IN_PROGRESS)
+                return;
+            finish(opponentOf(username), GameJournal.LEFT);
+            broadcast("GAME_RESULT|" + gameId + "|WINNER|" + winner);
+        });
+    }
+
+    // reason: GameJournal.WIN / DRAW / SURRENDER / LEFT
+    private void finish(String winner, byte reason) {
+        status = GameStatus.FINISHED;
+        this.winner = winner;
+        GameJournal journal = serverState.getJournal();
+        if (journal != null)
+            journal.finished(id, reason, winner);
+        serverState.removeGame(id);
+        serverState.gameFinished(this, winner);
+
+        // spectator dapat satu hasil netral, apa pun yang dikirim ke pemain
+        if (audience != null) {
+            audience.close(new Frame.Shared("GAME_RESULT|" + gameId
+                    + (winner != null ? "|WINNER|" + winner : "|DRAW|NONE"), true));
+            audience = null;
+        }
+    }
+
+    private String opponentOf(String username) {
+        return username.equals(player1) ? player2 : player1;
+    }
+
+    private boolean isBotTurn() {
+        return BotPlayer.NAME.equals(currentTurn) && serverState.getBot() != null;
     }
 
     // ----------------------
@@ -133,41 +235,124 @@ public class GameRoom {
     // BOARD UPDATE
     // ----------------------
     private void sendBoardUpdate() {
-        String boardString = new String(board);
-        broadcast("BOARD_UPDATE|" + gameId + "|" + boardString);
+        // satu encode untuk pemain dan semua spectator
+        Frame.Shared frame = new Frame.Shared(boardUpdate(), audience != null);
+        broadcast(frame);
+        if (audience != null)
+            audience.board(frame);
+    }
+
+    private String boardUpdate() {
+        StringBuilder msg = new StringBuilder(14 + gameId.length() + board.getCells())
+                .append("BOARD_UPDATE|").append(gameId).append('|');
+        return board.appendTo(msg).toString();
     }
 
     // ----------------------
-    // BROADCAST TO BOTH PLAYERS
+    // SPECTATORS (lihat Spectators)
     // ----------------------
-    public void broadcast(String msg) {
-        ClientHandler h1 = serverState.getUser(player1);
-        ClientHandler h2 = serverState.getUser(player2);
 
-        if (h1 != null)
-            h1.sendMessage(msg);
-        if (h2 != null)
-            h2.sendMessage(msg);
+    /** WATCH: WATCH_START + the current board, then every board (conflated if slow) and the result. */
+    void watch(ClientHandler handler) {
+        shard.execute(() -> {
+            if (status != GameStatus.IN_PROGRESS) {
+                handler.sendMessage("WATCH_FAIL|Game is not running");
+                handler.stoppedWatching(this);
+                return;
+            }
+            if (audience == null)
+                audience = serverState.getSpectators().newAudience(this, shard);
+            audience.add(handler);
+            handler.sendMessage("WATCH_START|" + gameId + "|x=" + player1 + "|o=" + player2
+                    + rules.toNamedFields());
+            handler.sendMessage(boardUpdate());
+        });
+    }
+
+    void unwatch(String username) {
+        shard.execute(() -> {
+            if (audience == null)
+                return;
+            audience.remove(username);
+            if (audience.isEmpty())
+                audience = null;
+        });
     }
 
     // ----------------------
-    // WIN CHECK
+    // RECOVERY (lihat JournalRecovery)
     // ----------------------
-    private boolean checkWinner(char symbol) {
-        int[][] lines = {
-                { 0, 1, 2 }, { 3, 4, 5 }, { 6, 7, 8 }, // rows
-                { 0, 3, 4 }, { 1, 4, 7 }, { 2, 5, 8 }, // cols
-                { 0, 4, 8 }, { 2, 4, 6 } // diagonals
-        };
 
-        for (int[] line : lines) {
-            if (board[line[0]] == symbol &&
-                    board[line[1]] == symbol &&
-                    board[line[2]] == symbol) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Player logged in again while this game is still running (e.g. after a
+     * server restart): GAME_START, BOARD_UPDATE and YOUR_TURN once more.
+     */
+    void rejoin(String username) {
+        shard.execute(() -> {
+            ClientHandler h = serverState.getUser(username);
+            if (status != GameStatus.IN_PROGRESS || h == null)
+                return;
+            boolean x = username.equals(player1);
+            h.sendMessage("GAME_START|" + gameId + "|you=" + (x ? "X" : "O") + "|opponent="
+                    + (x ? player2 : player1) + rules.toNamedFields());
+            h.sendMessage(boardUpdate());
+            if (username.equals(currentTurn))
+                h.sendMessage("YOUR_TURN|" + gameId);
+            if (chatHistory != null)
+                serverState.sendChatHistory(chatHistory, h);
+        });
+    }
+
+    /** Board + turn from a snapshot. Shard thread, before {@link #resume}. */
+    void restore(int[] xCells, int[] oCells, int turn, long pos) {
+        for (int cell : xCells)
+            board.place(Board.X, cell);
+        for (int cell : oCells)
+            board.place(Board.O, cell);
+        currentTurn = turn == Board.X ? player1 : player2;
+        journalPos = pos;
+    }
+
+    /**
+     * One journaled move, unless it is already part of the state ({@code pos}
+     * not after the last applied record). False if the move does not fit the
+     * board. Shard thread, before {@link #resume}.
+     */
+    boolean replayMove(int player, int cell, long pos) {
+        if (pos <= journalPos)
+            return true;
+        if (cell < 0 || cell >= board.getCells() || !board.isFree(cell))
+            return false;
+        board.place(player, cell);
+        currentTurn = player == Board.X ? player2 : player1;
+        journalPos = pos;
+        return true;
+    }
+
+    /** Recovered game goes live again; the BOT moves if it is its turn. */
+    void resume() {
+        shard.execute(() -> {
+            status = GameStatus.IN_PROGRESS;
+            if (isBotTurn())
+                serverState.getBot().requestMove(this);
+        });
+    }
+
+    // ----------------------
+    // BROADCAST TO BOTH PLAYERS
+    // ----------------------
+    public void broadcast(String msg) {
+        // cuma 2 penerima: heap frame cukup, direct buffer tidak sebanding biayanya
+        broadcast(new Frame.Shared(msg, false));
+    }
+
+    private void broadcast(Frame.Shared frame) {
+        ClientHandler h1 = serverState.getUser(player1);
+        ClientHandler h2 = serverState.getUser(player2);
+        if (h1 != null)
+            frame.sendTo(h1);
+        if (h2 != null)
+            frame.sendTo(h2);
     }
 
     // ----------------------
@@ -181,10 +366,43 @@ public class GameRoom {
         return player2;
     }
 
+    public long getId() {
+        return id;
+    }
+
     public String getGameId() {
         return gameId;
     }
 
+    GameRules getRules() {
+        return rules;
+    }
+
+    /** Board.X for player1, Board.O for player2. */
+    int playerIndex(String username) {
+        return username.equals(player1) ? Board.X : Board.O;
+    }
+
+    /** Runs {@code task} on this game's shard, after everything already queued. */
+    void execute(Runnable task) {
+        shard.execute(task);
+    }
+
+    /** Username on turn, or null if the game is not in progress. Shard thread only. */
+    String getCurrentTurn() {
+        return status == GameStatus.IN_PROGRESS ? currentTurn : null;
+    }
+
+    /** Position of the last journal record of this game (-1 = none). Shard thread only. */
+    long getJournalPos() {
+        return journalPos;
+    }
+
+    /** Independent copy of the board, e.g. for the bot. Shard thread only. */
+    Board copyBoard() {
+        return new Board(board);
+    }
+
     public GameStatus getStatus() {
         return status;
     }
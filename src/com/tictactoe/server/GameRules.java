@@ -0,0 +1,98 @@
+package com.tictactoe.server;
+
+/**
+ * Variant of a game, chosen by the inviter:
+ *
+ *   INVITE|target|size|winLength|pieceLimit
+ *
+ * size = board is size x size, winLength = pieces in a row needed to win,
+ * pieceLimit = pieces per player before the oldest is removed (0 = no limit).
+ * Without the extra fields the game is the original 3x3 "infinity" variant.
+ */
+final class GameRules {
+
+    static final GameRules CLASSIC = new GameRules(3, 3, 3);
+
+    static final int MIN_SIZE = 3;
+
+    private final int size;
+    private final int winLength;
+    private final int pieceLimit;
+
+    GameRules(int size, int winLength, int pieceLimit) {
+        this.size = size;
+        this.winLength = winLength;
+        this.pieceLimit = pieceLimit;
+    }
+
+    /**
+     * Reads size|winLength|pieceLimit from {@code parts[from]}. Missing fields
+     * fall back to {@link #CLASSIC}; returns null if a value is not a number
+     * or the combination is not playable.
+     */
+    static GameRules parse(String[] parts, int from, int maxSize) {
+        if (parts.length <= from)
+            return CLASSIC;
+
+        int size, winLength, pieceLimit;
+        try {
+            size = Integer.parseInt(parts[from]);
+            winLength = parts.length > from + 1 ? Integer.parseInt(parts[from + 1]) : Math.min(size, 5);
+            pieceLimit = parts.length > from + 2 ? Integer.parseInt(parts[from + 2]) : 0;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (size < MIN_SIZE || size > maxSize)
+            return null;
+        if (winLength < MIN_SIZE || winLength > size)
+            return null;
+        // kurang dari K bidak tidak akan pernah bisa menang
+        if (pieceLimit < 0 || (pieceLimit != 0 && pieceLimit < winLength))
+            return null;
+
+        return new GameRules(size, winLength, pieceLimit);
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getWinLength() {
+        return winLength;
+    }
+
+    int getPieceLimit() {
+        return pieceLimit;
+    }
+
+    /** "|size|winLength|pieceLimit", appended to INVITE_FROM. */
+    String toFields() {
+        return "|" + size + "|" + winLength + "|" + pieceLimit;
+    }
+
+    /** "|size=15|k=5|limit=0", appended to GAME_START. */
+    String toNamedFields() {
+        return "|size=" + size + "|k=" + winLength + "|limit=" + pieceLimit;
+    }
+
+    // the matchmaking queue has one pool per variant
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof GameRules))
+            return false;
+        GameRules r = (GameRules) o;
+        return size == r.size && winLength == r.winLength && pieceLimit == r.pieceLimit;
+    }
+
+    @Override
+    public int hashCode() {
+        return (size * 31 + winLength) * 31 + pieceLimit;
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + ", " + winLength + " in a row"
+                + (pieceLimit > 0 ? ", max " + pieceLimit + " pieces" : "");
+    }
+}
@@ -0,0 +1,117 @@
+package com.tictactoe.server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * N single-threaded executors that own all game state. Every GameRoom is
+ * pinned to one shard by a hash of its gameId, and every change to it
+ * (start, move, chat, surrender, player leaving) runs as a task on that
+ * shard, one after the other. Game state therefore needs no lock, and the
+ * reader threads only parse and enqueue.
+ *
+ * game.shards sets N (default: one per core). Tasks that come straight from
+ * a client (a move, game chat) go through {@link Shard#offer}, which refuses
+ * them once game.shardQueueMax tasks are waiting on the shard; the sender
+ * then gets RATE_LIMITED instead of growing the queue. Tasks the server
+ * itself starts (game start, BOT move, a player leaving, recovery) always
+ * get in, so a full shard never loses the end of a game.
+ */
+class GameShards {
+
+    private final Shard[] shards;
+
+    GameShards(int count, int maxQueued) {
+        this.shards = new Shard[Math.max(1, count)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, Math.max(1, maxQueued));
+        }
+    }
+
+    /** The executor that owns the game with this id; always the same one. */
+    Shard forGame(long gameId) {
+        // id berurutan, jadi di-mix dulu supaya game baru tersebar rata
+        long h = gameId * 0x9E3779B97F4A7C15L;
+        return shards[(int) ((h >>> 33) % shards.length)];
+    }
+
+    int size() {
+        return shards.length;
+    }
+
+    /** Tasks waiting on shard {@code i} right now. */
+    int queueDepth(int i) {
+        return shards[i].depth.get();
+    }
+
+    String stats() {
+        StringBuilder depth = new StringBuilder();
+        StringBuilder max = new StringBuilder();
+        long executed = 0;
+        long rejected = 0;
+        for (Shard s : shards) {
+            depth.append(depth.length() == 0 ? "" : ",").append(s.depth.get());
+            max.append(max.length() == 0 ? "" : ",").append(s.maxDepth.getAndSet(s.depth.get()));
+            executed += s.executed.get();
+            rejected += s.rejected.get();
+        }
+        return "shards=" + shards.length + ", depth=[" + depth + "], maxDepth=[" + max
+                + "], tasks=" + executed + ", rejected=" + rejected;
+    }
+
+    static final class Shard implements Executor {
+
+        private final ThreadPoolExecutor executor;
+        private final int maxQueued;
+
+        // counters (maxDepth direset setiap stats())
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        Shard(int id, int maxQueued) {
+            this.maxQueued = maxQueued;
+            this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "game-shard-" + id);
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+
+        /**
+         * Runs a client task unless maxQueued tasks are already waiting; false
+         * if it was refused. The check is not atomic with the enqueue, so the
+         * queue can overshoot by the number of threads offering at once.
+         */
+        boolean offer(Runnable task) {
+            if (depth.get() >= maxQueued) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            execute(task);
+            return true;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            maxDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+            executor.execute(() -> {
+                depth.decrementAndGet();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // satu game yang error tidak boleh mematikan shard
+                    System.out.println("[SERVER ERROR] Game task failed: " + e);
+                } finally {
+                    executed.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.tictactoe.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Idle detection for every connection with one hashed timing wheel.
+ *
+ * The wheel has a power-of-two number of slots, one per tick (idle.tickMs).
+ * A connection's {@link Entry} sits in the slot of the tick at which it would
+ * be idle for idle.timeoutMs. Receiving a message does not move the entry: it
+ * only stores the current tick in it ({@link Entry#touch}, one volatile write
+ * and usually not even that). When the wheel reaches a slot it looks at each
+ * entry there once: still idle means evict, otherwise the entry is moved to
+ * the slot of its new deadline. Cost per message is O(1), cost per tick is
+ * the number of entries in one slot, and there is no task per connection.
+ *
+ * Only the "idle-wheel" thread touches the slots; new entries come in through
+ * a queue and cancelled entries are dropped when their slot comes up.
+ * Precision: a connection is evicted between timeout and timeout + one tick
+ * after its last message.
+ */
+final class IdleTimer {
+
+    private final long tickNanos;
+    private final long timeoutTicks;
+    private final Entry[] slots; // head of a singly linked list per slot
+    private final int mask;
+
+    private final Queue<Entry> added = new ConcurrentLinkedQueue<>();
+    private volatile long tick;
+
+    // counters (ditulis hanya oleh thread wheel)
+    private volatile long tracked;
+    private volatile long evicted;
+    private volatile long rescheduled;
+    private volatile long maxTickNanos;
+
+    IdleTimer(long timeoutMs, long tickMs) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        this.timeoutTicks = Math.max(1, (timeoutMs + tickMs - 1) / Math.max(1, tickMs));
+        // cukup slot supaya entry yang baru disentuh tidak perlu berputar satu ronde
+        int n = Integer.highestOneBit((int) Math.min(1 << 20, timeoutTicks + 1)) << 1;
+        this.slots = new Entry[n];
+        this.mask = n - 1;
+
+        Thread t = new Thread(this::run, "idle-wheel");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** One connection. {@code onIdle} runs on the wheel thread, so it must not block. */
+    final class Entry {
+        private final Runnable onIdle;
+        private volatile long lastTick;
+        private volatile boolean cancelled;
+        // ----- hanya thread wheel -----
+        private Entry next;
+
+        private Entry(Runnable onIdle) {
+            this.onIdle = onIdle;
+            this.lastTick = tick;
+        }
+
+        /** A message was received. */
+        void touch() {
+            long now = tick;
+            if (lastTick != now) // banyak pesan per tick: cukup satu write
+                lastTick = now;
+        }
+
+        /** Connection closed; the entry leaves the wheel when its slot comes up. */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    Entry register(Runnable onIdle) {
+        Entry entry = new Entry(onIdle);
+        added.add(entry);
+        return entry;
+    }
+
+    private void run() {
+        long next = System.nanoTime() + tickNanos;
+        while (true) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            next += tickNanos;
+
+            long start = System.nanoTime();
+            try {
+                advance();
+            } catch (RuntimeException e) {
+                System.out.println("[SERVER] Idle wheel tick failed: " + e);
+            }
+            long took = System.nanoTime() - start;
+            if (took > maxTickNanos)
+                maxTickNanos = took;
+        }
+    }
+
+    private void advance() {
+        long now = ++tick;
+
+        Entry e;
+        while ((e = added.poll()) != null) {
+            tracked++;
+            place(e, deadlineOf(e));
+        }
+
+        int slot = (int) (now & mask);
+        Entry head = slots[slot];
+        slots[slot] = null;
+        while (head != null) {
+            e = head;
+            head = e.next;
+            e.next = null;
+            if (e.cancelled) {
+                tracked--;
+                continue;
+            }
+            long deadline = deadlineOf(e);
+            if (deadline > now) {
+                // ada pesan sejak entry ditaruh di slot ini (atau masih ronde berikutnya)
+                rescheduled++;
+                place(e, deadline);
+                continue;
+            }
+            tracked--;
+            evicted++;
+            try {
+                e.onIdle.run();
+            } catch (RuntimeException ex) {
+                System.out.println("[SERVER] Idle eviction failed: " + ex);
+            }
+        }
+    }
+
+    // lastTick bisa saja sudah hampir habis: +1 supaya tidak ada yang dievict sebelum timeout
+    private long deadlineOf(Entry e) {
+        return e.lastTick + timeoutTicks + 1;
+    }
+
+    private void place(Entry e, long deadline) {
+        // deadline yang sudah lewat diperiksa di tick berikutnya
+        int slot = (int) (Math.max(deadline, tick + 1) & mask);
+        e.next = slots[slot];
+        slots[slot] = e;
+    }
+
+    String stats() {
+        return "timeout=" + timeoutTicks * TimeUnit.NANOSECONDS.toMillis(tickNanos) + "ms, tick="
+                + TimeUnit.NANOSECONDS.toMillis(tickNanos) + "ms, slots=" + slots.length + ", tracked=" + tracked
+                + ", evicted=" + evicted + ", rescheduled=" + rescheduled
+                + ", maxTick=" + TimeUnit.NANOSECONDS.toMicros(maxTickNanos) + "us";
+    }
+}
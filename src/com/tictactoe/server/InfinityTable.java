@@ -0,0 +1,450 @@
+package com.tictactoe.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Perfect-play table for a small variant with a piece limit (the 3x3
+ * "infinity" game): one byte per position with the game-theoretic result
+ * for the side to move and the number of plies until the game ends.
+ *
+ * A position is X's pieces oldest first, O's pieces oldest first, and the
+ * side to move, so the same cells in a different order are a different
+ * position. The piece counts follow from the number of moves played, so the
+ * table is split in phases of (X count, O count, side) and inside a phase
+ * the cell sequence is ranked as a partial permutation: no slot is wasted on
+ * an impossible position (139,690 bytes for 3x3 with 3 pieces).
+ *
+ * The table is built offline with {@link InfinityTableGenerator} (full
+ * retrograde analysis) and memory-mapped read-only by the server, so
+ * lookups are a rank plus one byte read and the pages are shared between
+ * processes. Lookups are thread-safe.
+ */
+final class InfinityTable {
+
+    // hasil untuk pihak yang jalan
+    static final int DRAW = 0;
+    static final int WIN = 1;
+    static final int LOSS = 2;
+    static final int INVALID = 3; // tidak bisa terjadi (pihak yang jalan sudah punya garis)
+
+    private static final int MAGIC = 0x54545452; // "TTTR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int MAX_DISTANCE = 63;
+
+    private final int size;
+    private final int cells;
+    private final int winLength;
+    private final int pieceLimit;
+    private final long[] lines; // bitmask tiap garis K cell
+    private final int[] phaseOffset;
+    private final ByteBuffer data; // mulai di entry 0, tanpa header
+
+    private InfinityTable(int size, int winLength, int pieceLimit, ByteBuffer data) {
+        this.size = size;
+        this.cells = size * size;
+        this.winLength = winLength;
+        this.pieceLimit = pieceLimit;
+        this.lines = lines(size, winLength);
+
+        int phases = 2 * pieceLimit + 2;
+        this.phaseOffset = new int[phases + 1];
+        long total = 0;
+        for (int p = 0; p < phases; p++) {
+            phaseOffset[p] = (int) total;
+            total += permutations(cells, phasePieces(p, Board.X) + phasePieces(p, Board.O));
+            if (total > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Too many positions for " + describe());
+        }
+        phaseOffset[phases] = (int) total;
+
+        this.data = data != null ? data : ByteBuffer.allocate((int) total);
+        if (this.data.capacity() != total)
+            throw new IllegalArgumentException("Table has " + this.data.capacity()
+                    + " entries, " + describe() + " needs " + total);
+    }
+
+    // ================= LOAD / STORE =================
+
+    /** Maps a table file written by {@link #write}. */
+    static InfinityTable load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining() && ch.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+                throw new IOException("Not a table file: " + file);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported table version " + version + ": " + file);
+            int size = header.getInt();
+            int winLength = header.getInt();
+            int pieceLimit = header.getInt();
+            int states = header.getInt();
+            if (ch.size() != HEADER_BYTES + (long) states)
+                throw new IOException("Truncated table file: " + file);
+
+            // mapping tetap valid setelah channel ditutup
+            ByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, states);
+            try {
+                return new InfinityTable(size, winLength, pieceLimit, data);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage() + ": " + file);
+            }
+        }
+    }
+
+    void write(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(size).putInt(winLength).putInt(pieceLimit).putInt(stateCount());
+        header.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer body = data.duplicate();
+            body.clear();
+            while (header.hasRemaining())
+                ch.write(header);
+            while (body.hasRemaining())
+                ch.write(body);
+            ch.force(true);
+        }
+        // server yang sedang jalan tidak pernah melihat file setengah jadi
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ================= GENERATION =================
+
+    /**
+     * Full retrograde analysis. Positions where the player who just moved has
+     * K in a row are lost in 0; then, one distance at a time, a position is
+     * won in d if some move reaches a position lost in d-1, and lost in d if
+     * every move reaches a won position and the longest of them is won in
+     * d-1. Whatever is never decided is a draw (play can go on forever).
+     */
+    static InfinityTable generate(GameRules rules) {
+        if (rules.getPieceLimit() <= 0 || 2 * rules.getPieceLimit() > rules.getSize() * rules.getSize()
+                || rules.getSize() * rules.getSize() > 64)
+            throw new IllegalArgumentException("No table possible for " + rules);
+
+        InfinityTable t = new InfinityTable(rules.getSize(), rules.getWinLength(), rules.getPieceLimit(), null);
+        int states = t.stateCount();
+        int[][] seq = { new int[t.pieceLimit], new int[t.pieceLimit] };
+        int[] count = new int[2];
+        byte[] result = new byte[states];
+
+        // jarak 0: pihak yang baru jalan sudah menang
+        for (int s = 0; s < states; s++) {
+            int side = t.decode(s, seq, count);
+            long toMove = t.mask(seq[side], count[side]);
+            long justMoved = t.mask(seq[1 - side], count[1 - side]);
+            if (t.hasLine(justMoved))
+                result[s] = (byte) encode(LOSS, 0);
+            else if (t.hasLine(toMove))
+                result[s] = (byte) encode(INVALID, 0);
+        }
+
+        int[] next = new int[t.cells];
+        for (int d = 1;; d++) {
+            if (d > MAX_DISTANCE)
+                throw new IllegalStateException("Distance over " + MAX_DISTANCE + " for " + rules);
+            int decided = 0;
+            for (int s = 0; s < states; s++) {
+                if (result[s] != 0)
+                    continue;
+                int side = t.decode(s, seq, count);
+                int n = t.successors(side, seq, count, next);
+
+                boolean win = false;
+                boolean allWin = true;
+                int longest = -1;
+                for (int i = 0; i < n && !win; i++) {
+                    int e = result[next[i]] & 0xFF;
+                    int dist = e & MAX_DISTANCE;
+                    if (outcomeOf(e) == LOSS && dist == d - 1) {
+                        win = true;
+                    } else if (outcomeOf(e) == WIN) {
+                        longest = Math.max(longest, dist);
+                    } else {
+                        allWin = false;
+                    }
+                }
+                if (win) {
+                    result[s] = (byte) encode(WIN, d);
+                    decided++;
+                } else if (allWin && longest == d - 1) {
+                    result[s] = (byte) encode(LOSS, d);
+                    decided++;
+                }
+            }
+            if (decided == 0)
+                break; // tidak ada yang baru di jarak d, jarak d+1 juga tidak mungkin
+        }
+
+        t.data.put(result);
+        t.data.clear();
+        return t;
+    }
+
+    // ================= LOOKUP =================
+
+    boolean supports(GameRules rules) {
+        return rules.getSize() == size && rules.getWinLength() == winLength
+                && rules.getPieceLimit() == pieceLimit;
+    }
+
+    /**
+     * Entry for {@code player} to move on {@code board}; read it with
+     * {@link #outcomeOf} and {@link #distanceOf}. The board must have this
+     * table's rules.
+     */
+    int lookup(Board board, int player) {
+        int nx = board.getPieceCount(Board.X);
+        int no = board.getPieceCount(Board.O);
+        int phase = phaseOf(nx, no, player);
+        if (phase < 0)
+            return encode(INVALID, 0);
+
+        long used = 0;
+        long rank = 0;
+        int i = 0;
+        for (int p = 0; p < 2; p++) {
+            int n = p == Board.X ? nx : no;
+            for (int age = 0; age < n; age++, i++) {
+                int cell = board.pieceAt(p, age);
+                rank = rank * (cells - i) + cell - Long.bitCount(used & ((1L << cell) - 1));
+                used |= 1L << cell;
+            }
+        }
+        return data.get(phaseOffset[phase] + (int) rank) & 0xFF;
+    }
+
+    /**
+     * Best cell for {@code player}: the fastest win, else a draw, else the
+     * slowest loss. Looks up every reply, at most one entry per free cell.
+     * Returns -1 only if no cell is free.
+     */
+    int bestMove(Board board, int player) {
+        int best = -1;
+        int bestValue = Integer.MIN_VALUE;
+        for (int cell = 0; cell < cells; cell++) {
+            if (!board.isFree(cell))
+                continue;
+            int removed = board.place(player, cell);
+            int reply = board.wins(player, cell) ? encode(LOSS, 0) : lookup(board, 1 - player);
+            board.undo(player, cell, removed);
+
+            int value = valueOf(reply);
+            if (value > bestValue) {
+                bestValue = value;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    // nilai langkah dari posisi lawan sesudahnya: menang cepat > seri > kalah lambat
+    private static int valueOf(int reply) {
+        switch (outcomeOf(reply)) {
+            case LOSS:
+                return 1000 - distanceOf(reply);
+            case DRAW:
+                return 0;
+            case WIN:
+                return -1000 + distanceOf(reply);
+            default:
+                return Integer.MIN_VALUE + 1;
+        }
+    }
+
+    static int outcomeOf(int entry) {
+        return (entry >>> 6) & 0x3;
+    }
+
+    /** Plies until the game ends with best play (0 for a draw). */
+    static int distanceOf(int entry) {
+        return entry & MAX_DISTANCE;
+    }
+
+    static String outcomeName(int entry) {
+        switch (outcomeOf(entry)) {
+            case WIN:
+                return "WIN";
+            case LOSS:
+                return "LOSS";
+            case DRAW:
+                return "DRAW";
+            default:
+                return "INVALID";
+        }
+    }
+
+    private static int encode(int outcome, int distance) {
+        return outcome << 6 | distance;
+    }
+
+    /** Raw entry by position index (0 = empty board, X to move). */
+    int entry(int index) {
+        return data.get(index) & 0xFF;
+    }
+
+    int stateCount() {
+        return phaseOffset[phaseOffset.length - 1];
+    }
+
+    String describe() {
+        return new GameRules(size, winLength, pieceLimit).toString();
+    }
+
+    // ================= INDEXING =================
+
+    // fase m < 2L: m langkah sudah dimainkan; 2L = (L, L, X); 2L+1 = (L, L, O)
+    private int phaseOf(int nx, int no, int side) {
+        if (side == Board.X)
+            return nx == no ? 2 * nx : -1;
+        if (nx == pieceLimit && no == pieceLimit)
+            return 2 * pieceLimit + 1;
+        return nx == no + 1 ? 2 * no + 1 : -1;
+    }
+
+    private int phasePieces(int phase, int player) {
+        if (phase > 2 * pieceLimit)
+            return pieceLimit;
+        return player == Board.X ? (phase + 1) / 2 : phase / 2;
+    }
+
+    private static long permutations(int cells, int n) {
+        long p = 1;
+        for (int i = 0; i < n; i++) {
+            p *= cells - i;
+        }
+        return p;
+    }
+
+    // isi seq/count dari index, return pihak yang jalan
+    private int decode(int index, int[][] seq, int[] count) {
+        int phase = 0;
+        while (phaseOffset[phase + 1] <= index)
+            phase++;
+        int nx = phasePieces(phase, Board.X);
+        int no = phasePieces(phase, Board.O);
+        count[Board.X] = nx;
+        count[Board.O] = no;
+
+        // digit mixed radix (cells, cells-1, ...), dari belakang
+        int n = nx + no;
+        int[] digits = new int[n];
+        long rank = index - phaseOffset[phase];
+        for (int i = n - 1; i >= 0; i--) {
+            digits[i] = (int) (rank % (cells - i));
+            rank /= cells - i;
+        }
+        long used = 0;
+        for (int i = 0; i < n; i++) {
+            int cell = nthFree(used, digits[i]);
+            used |= 1L << cell;
+            if (i < nx)
+                seq[Board.X][i] = cell;
+            else
+                seq[Board.O][i - nx] = cell;
+        }
+        return phase % 2 == 0 ? Board.X : Board.O;
+    }
+
+    private static int nthFree(long used, int n) {
+        for (int c = 0;; c++) {
+            if ((used & (1L << c)) == 0 && n-- == 0)
+                return c;
+        }
+    }
+
+    // index setiap posisi sesudah satu langkah pihak side
+    private int successors(int side, int[][] seq, int[] count, int[] out) {
+        int n = 0;
+        long used = mask(seq[Board.X], count[Board.X]) | mask(seq[Board.O], count[Board.O]);
+        int[] mine = seq[side];
+        int mineCount = count[side];
+        int[] moved = new int[pieceLimit];
+
+        for (int cell = 0; cell < cells; cell++) {
+            if ((used & (1L << cell)) != 0)
+                continue;
+            // bidak tertua hilang kalau sudah penuh, lalu bidak baru paling belakang
+            int drop = mineCount == pieceLimit ? 1 : 0;
+            int m = 0;
+            for (int i = drop; i < mineCount; i++) {
+                moved[m++] = mine[i];
+            }
+            moved[m++] = cell;
+
+            int[][] nextSeq = side == Board.X ? new int[][] { moved, seq[Board.O] } : new int[][] { seq[Board.X], moved };
+            int[] nextCount = side == Board.X ? new int[] { m, count[Board.O] } : new int[] { count[Board.X], m };
+            out[n++] = index(nextSeq, nextCount, 1 - side);
+        }
+        return n;
+    }
+
+    private int index(int[][] seq, int[] count, int side) {
+        int phase = phaseOf(count[Board.X], count[Board.O], side);
+        long used = 0;
+        long rank = 0;
+        int i = 0;
+        for (int p = 0; p < 2; p++) {
+            for (int j = 0; j < count[p]; j++, i++) {
+                int cell = seq[p][j];
+                rank = rank * (cells - i) + cell - Long.bitCount(used & ((1L << cell) - 1));
+                used |= 1L << cell;
+            }
+        }
+        return phaseOffset[phase] + (int) rank;
+    }
+
+    private long mask(int[] seq, int n) {
+        long m = 0;
+        for (int i = 0; i < n; i++) {
+            m |= 1L << seq[i];
+        }
+        return m;
+    }
+
+    private boolean hasLine(long pieces) {
+        for (long line : lines) {
+            if ((pieces & line) == line)
+                return true;
+        }
+        return false;
+    }
+
+    private static long[] lines(int size, int k) {
+        int[][] dirs = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+        long[] out = new long[4 * size * size];
+        int n = 0;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                for (int[] d : dirs) {
+                    int er = r + d[0] * (k - 1);
+                    int ec = c + d[1] * (k - 1);
+                    if (er < 0 || er >= size || ec < 0 || ec >= size)
+                        continue;
+                    long line = 0;
+                    for (int i = 0; i < k; i++) {
+                        line |= 1L << ((r + d[0] * i) * size + c + d[1] * i);
+                    }
+                    out[n++] = line;
+                }
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
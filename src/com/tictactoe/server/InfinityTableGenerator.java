@@ -0,0 +1,51 @@
+package com.tictactoe.server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Offline builder for the {@link InfinityTable} file the server maps at
+ * startup (solver.table).
+ *
+ * Run: make table [TABLE=data/infinity-3x3.tbl]
+ *   or java -cp bin com.tictactoe.server.InfinityTableGenerator [file] [size k limit]
+ */
+public class InfinityTableGenerator {
+
+    public static final String DEFAULT_FILE = "data/infinity-3x3.tbl";
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length > 0 ? args[0] : DEFAULT_FILE);
+        GameRules rules = args.length > 3
+                ? new GameRules(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]))
+                : GameRules.CLASSIC;
+
+        long start = System.nanoTime();
+        InfinityTable table = InfinityTable.generate(rules);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        table.write(file);
+
+        System.out.println("[TABLE] " + rules + ": " + table.stateCount() + " positions in " + ms + " ms");
+        printSummary(table);
+        System.out.println("[TABLE] Written: " + file);
+    }
+
+    static void printSummary(InfinityTable table) {
+        int[] outcomes = new int[4];
+        int longest = 0;
+        for (int s = 0; s < table.stateCount(); s++) {
+            int e = table.entry(s);
+            outcomes[InfinityTable.outcomeOf(e)]++;
+            longest = Math.max(longest, InfinityTable.distanceOf(e));
+        }
+        System.out.println("[TABLE] win=" + outcomes[InfinityTable.WIN] + ", loss=" + outcomes[InfinityTable.LOSS]
+                + ", draw=" + outcomes[InfinityTable.DRAW] + ", unreachable=" + outcomes[InfinityTable.INVALID]
+                + ", longest=" + longest + " plies");
+        System.out.println("[TABLE] Start position: " + InfinityTable.outcomeName(table.entry(0))
+                + " in " + InfinityTable.distanceOf(table.entry(0)) + " plies");
+    }
+}
@@ -0,0 +1,530 @@
+package com.tictactoe.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Rebuilds unfinished games from the {@link GameJournal} at startup, and
+ * writes the snapshots that keep that replay short.
+ *
+ * Recovery: load snapshot.dat (every running game at journal position P:
+ * players, rules, pieces oldest first, turn, last record position), then
+ * read only the segments from P on, in parallel (one task per segment).
+ * Per game the tail moves are applied in segment order on the game's own
+ * shard, so games are rebuilt in parallel too; a move at or before the
+ * game's last snapshotted record is skipped. Games with a RESULT are
+ * dropped, the rest go back into ServerState and continue; players get
+ * GAME_START + BOARD_UPDATE again when they LOGIN. A recovered game whose
+ * player is still not online journal.recoveryGraceMs after recovery ends
+ * as if that player had left (RESULT LEFT, the opponent wins); if neither
+ * player came back, the one whose turn it was is the one who left.
+ *
+ * Snapshot: every journal.snapshotRecords appended records the
+ * "journal-snapshot" thread takes P, captures each running game on its
+ * shard, writes snapshot.dat (tmp + fsync + atomic rename) and tells the
+ * journal that segments before P may be compacted.
+ */
+final class JournalRecovery {
+
+    static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final int MAGIC = 0x54545353; // "TTSS"
+    private static final int VERSION = 1;
+
+    private final ServerState state;
+    private final GameJournal journal;
+    private final Path dir;
+    private final long snapshotRecords;
+    private final long graceMs;
+
+    private volatile long lastSnapshotRecords;
+    private volatile List<GameRoom> restored; // menunggu pemainnya sampai graceDeadline
+    private volatile long graceDeadline;
+
+    // counters
+    private volatile String recovered = "none";
+    private volatile long snapshots;
+    private volatile int lastSnapshotGames;
+    private volatile long lastSnapshotMs;
+    private volatile int abandoned;
+
+    JournalRecovery(ServerState state, GameJournal journal, long snapshotRecords, long graceMs) {
+        this.state = state;
+        this.journal = journal;
+        this.dir = journal.getDir();
+        this.snapshotRecords = snapshotRecords;
+        this.graceMs = graceMs;
+    }
+
+    // ================= RECOVERY =================
+
+    /**
+     * Puts every unfinished game from the journal back into the server, then
+     * snapshots so the segments of the previous run can be compacted.
+     */
+    void recover(int threads) throws IOException {
+        long start = System.nanoTime();
+        Replay replay = replay(dir, state, threads);
+        List<GameRoom> live = new ArrayList<>();
+        for (GameRoom game : replay.games) {
+            // dua game tersisa untuk satu player (journal lama): yang pertama dipakai
+            if (!state.restoreGame(game)) {
+                System.out.println("[SERVER] Journal recovery: game " + game.getGameId()
+                        + " skipped, a player is already in another game");
+                replay.broken++;
+                continue;
+            }
+            journal.restoreLive(game.getId());
+            game.resume();
+            live.add(game);
+        }
+        if (graceMs > 0 && !live.isEmpty()) {
+            graceDeadline = System.currentTimeMillis() + graceMs;
+            restored = live;
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        recovered = replay.games.size() + " games from " + replay.events + " events in " + ms + " ms";
+        if (replay.events > 0 || replay.fromSnapshot > 0)
+            System.out.println("[SERVER] Journal recovery: " + replay.games.size() + " games ("
+                    + replay.fromSnapshot + " from snapshot, " + replay.events + " events replayed, "
+                    + replay.broken + " skipped) in " + ms + " ms");
+        snapshot();
+    }
+
+    /** Result of {@link #replay}: rebuilt games, not yet in ServerState. */
+    static final class Replay {
+        final List<GameRoom> games = new ArrayList<>();
+        long events;
+        int fromSnapshot;
+        int broken;
+    }
+
+    /** Reads snapshot + tail in {@code dir} and rebuilds the unfinished games. */
+    static Replay replay(Path dir, ServerState state, int threads) throws IOException {
+        Replay out = new Replay();
+        Map<Long, Saved> saved = new HashMap<>();
+        long from = readSnapshot(dir.resolve(SNAPSHOT_FILE), saved);
+        out.fromSnapshot = saved.size();
+
+        List<Long> segments = new ArrayList<>();
+        for (long no : GameJournal.segments(dir)) {
+            if (no >= GameJournal.segmentOf(from))
+                segments.add(no);
+        }
+
+        // 1. baca segment paralel, masing-masing jadi potongan per game
+        List<Map<Long, Tail>> parts = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, segments.size())), r -> {
+            Thread t = new Thread(r, "journal-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Map<Long, Tail>>> futures = new ArrayList<>();
+            for (long no : segments) {
+                int offset = no == GameJournal.segmentOf(from) ? GameJournal.offsetOf(from) : 0;
+                futures.add(pool.submit(() -> readTail(dir, no, offset)));
+            }
+            for (Future<Map<Long, Tail>> f : futures)
+                parts.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("journal replay interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("journal replay failed: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        // 2. gabung urut segment; game yang punya RESULT dibuang
+        Map<Long, Tail> created = new HashMap<>();
+        Map<Long, List<Tail>> tails = new HashMap<>();
+        Set<Long> finished = new HashSet<>();
+        for (Map<Long, Tail> part : parts) {
+            for (Map.Entry<Long, Tail> e : part.entrySet()) {
+                Tail t = e.getValue();
+                out.events += t.events;
+                if (t.finished)
+                    finished.add(e.getKey());
+                if (t.rules != null)
+                    created.put(e.getKey(), t);
+                tails.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(t);
+            }
+        }
+        saved.keySet().removeAll(finished);
+        tails.keySet().removeAll(finished);
+
+        // 3. bangun ulang di shard masing-masing game (paralel antar shard)
+        List<GameRoom> rooms = new ArrayList<>();
+        List<BooleanSupplier> work = new ArrayList<>();
+        for (Saved s : saved.values()) {
+            GameRoom room = new GameRoom(s.id, s.player1, s.player2, s.rules, state);
+            List<Tail> tail = tails.remove(s.id);
+            rooms.add(room);
+            work.add(() -> {
+                room.restore(s.xCells, s.oCells, s.turn, s.pos);
+                return applyAll(room, tail);
+            });
+        }
+        for (Map.Entry<Long, List<Tail>> e : tails.entrySet()) {
+            Tail create = created.get(e.getKey());
+            if (create == null)
+                continue; // CREATE sebelum snapshot, tapi game-nya tidak ada di snapshot: sudah selesai
+            GameRoom room = new GameRoom(e.getKey(), create.player1, create.player2, create.rules, state);
+            rooms.add(room);
+            work.add(() -> applyAll(room, e.getValue()));
+        }
+
+        CountDownLatch done = new CountDownLatch(rooms.size());
+        boolean[] ok = new boolean[rooms.size()];
+        for (int i = 0; i < rooms.size(); i++) {
+            int index = i;
+            BooleanSupplier task = work.get(i);
+            rooms.get(i).execute(() -> {
+                try {
+                    ok[index] = task.getAsBoolean();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("journal replay interrupted");
+        }
+        // latch: tulisan ok[] dari shard terlihat di sini
+        for (int i = 0; i < rooms.size(); i++) {
+            if (ok[i])
+                out.games.add(rooms.get(i));
+            else
+                out.broken++;
+        }
+        return out;
+    }
+
+    private static boolean applyAll(GameRoom room, List<Tail> tail) {
+        if (tail == null)
+            return true;
+        for (Tail t : tail) {
+            for (int i = 0; i < t.moves; i++) {
+                int move = t.cells[i];
+                if (!room.replayMove(move & 1, move >>> 1, t.positions[i]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /** Records of one game in one segment. */
+    private static final class Tail {
+        GameRules rules; // non-null kalau CREATE ada di segment ini
+        String player1;
+        String player2;
+        int[] cells = new int[8]; // cell << 1 | player
+        long[] positions = new long[8];
+        int moves;
+        boolean finished;
+        int events;
+
+        void add(int player, int cell, long pos) {
+            if (moves == cells.length) {
+                cells = Arrays.copyOf(cells, moves * 2);
+                positions = Arrays.copyOf(positions, moves * 2);
+            }
+            cells[moves] = cell << 1 | player;
+            positions[moves++] = pos;
+        }
+    }
+
+    private static Map<Long, Tail> readTail(Path dir, long segment, int offset) throws IOException {
+        Map<Long, Tail> games = new HashMap<>();
+        GameJournal.read(GameJournal.segmentFile(dir, segment), segment, offset, new GameJournal.Visitor() {
+            private Tail tail(long gameId) {
+                Tail t = games.get(gameId);
+                if (t == null)
+                    games.put(gameId, t = new Tail());
+                t.events++;
+                return t;
+            }
+
+            @Override
+            public void created(long pos, long gameId, long time, GameRules rules, String player1,
+                    String player2) {
+                Tail t = tail(gameId);
+                t.rules = rules;
+                t.player1 = player1;
+                t.player2 = player2;
+            }
+
+            @Override
+            public void moved(long pos, long gameId, int player, int cell) {
+                tail(gameId).add(player, cell, pos);
+            }
+
+            @Override
+            public void finished(long pos, long gameId, long time, int reason, String winner) {
+                tail(gameId).finished = true;
+            }
+        });
+        return games;
+    }
+
+    // ================= SNAPSHOT =================
+
+    /** One running game as captured on its shard. */
+    private static final class Saved {
+        long id;
+        GameRules rules;
+        String player1;
+        String player2;
+        int[] xCells;
+        int[] oCells;
+        int turn;
+        long pos;
+
+        // null kalau game belum / tidak lagi jalan
+        static Saved capture(GameRoom game) {
+            String turn = game.getCurrentTurn();
+            if (turn == null)
+                return null;
+            Saved s = new Saved();
+            Board board = game.copyBoard();
+            s.id = game.getId();
+            s.rules = game.getRules();
+            s.player1 = game.getPlayer1();
+            s.player2 = game.getPlayer2();
+            s.xCells = pieces(board, Board.X);
+            s.oCells = pieces(board, Board.O);
+            s.turn = game.playerIndex(turn);
+            s.pos = game.getJournalPos();
+            return s;
+        }
+
+        private static int[] pieces(Board board, int player) {
+            int[] cells = new int[board.getPieceCount(player)];
+            for (int age = 0; age < cells.length; age++)
+                cells[age] = board.pieceAt(player, age);
+            return cells;
+        }
+    }
+
+    /**
+     * Writes snapshot.dat for the current state and lets the journal drop
+     * what it covers. False if some shard did not answer in time.
+     */
+    boolean snapshot() throws IOException {
+        long start = System.nanoTime();
+        long records = journal.records();
+        long pos = journal.position();
+
+        // setiap game dibaca di shard-nya sendiri; state sesudah P tetap aman
+        // karena replay melewati record sampai posisi terakhir game itu
+        List<GameRoom> games = new ArrayList<>();
+        state.forEachGame(games::add);
+        ConcurrentLinkedQueue<Saved> captured = new ConcurrentLinkedQueue<>();
+        CountDownLatch done = new CountDownLatch(games.size());
+        for (GameRoom game : games) {
+            game.execute(() -> {
+                try {
+                    Saved s = Saved.capture(game);
+                    if (s != null)
+                        captured.add(s);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            if (!done.await(10, TimeUnit.SECONDS)) {
+                System.out.println("[SERVER] Journal snapshot skipped: shards busy");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        List<Saved> list = new ArrayList<>(captured);
+        writeSnapshot(dir.resolve(SNAPSHOT_FILE), pos, list);
+        journal.coveredBy(pos);
+        lastSnapshotRecords = records;
+        lastSnapshotGames = list.size();
+        lastSnapshotMs = (System.nanoTime() - start) / 1_000_000;
+        snapshots++;
+        return true;
+    }
+
+    private static void writeSnapshot(Path file, long pos, Collection<Saved> games) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = Files.newOutputStream(tmp);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(raw, 64 * 1024), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(pos);
+            out.writeInt(games.size());
+            for (Saved s : games) {
+                out.writeLong(s.id);
+                out.writeShort(s.rules.getSize());
+                out.writeShort(s.rules.getWinLength());
+                out.writeInt(s.rules.getPieceLimit());
+                out.writeUTF(s.player1);
+                out.writeUTF(s.player2);
+                out.writeByte(s.turn);
+                out.writeLong(s.pos);
+                writeCells(out, s.xCells);
+                writeCells(out, s.oCells);
+            }
+            out.flush();
+            new DataOutputStream(raw).writeInt((int) crc.getValue());
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeCells(DataOutputStream out, int[] cells) throws IOException {
+        out.writeShort(cells.length);
+        for (int cell : cells)
+            out.writeInt(cell);
+    }
+
+    // returns the journal position the snapshot covers, 0 if there is none
+    private static long readSnapshot(Path file, Map<Long, Saved> games) throws IOException {
+        if (!Files.isRegularFile(file))
+            return 0;
+        CRC32 crc = new CRC32();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("not a snapshot file: " + file);
+            long pos = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Saved s = new Saved();
+                s.id = in.readLong();
+                int size = in.readShort();
+                int winLength = in.readShort();
+                s.rules = new GameRules(size, winLength, in.readInt());
+                s.player1 = in.readUTF();
+                s.player2 = in.readUTF();
+                s.turn = in.readByte();
+                s.pos = in.readLong();
+                s.xCells = readCells(in);
+                s.oCells = readCells(in);
+                games.put(s.id, s);
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(raw).readInt() != expected)
+                throw new IOException("snapshot checksum mismatch: " + file);
+            return pos;
+        }
+    }
+
+    private static int[] readCells(DataInputStream in) throws IOException {
+        int[] cells = new int[in.readUnsignedShort()];
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = in.readInt();
+        return cells;
+    }
+
+    /**
+     * Ends the recovered games that still wait for a player once the grace
+     * period is over, through {@link GameRoom#playerLeft} like a disconnect.
+     */
+    void endAbandoned() {
+        List<GameRoom> games = restored;
+        restored = null;
+        if (games == null)
+            return;
+        int ended = 0;
+        for (GameRoom game : games) {
+            if (game.getStatus() != GameRoom.GameStatus.IN_PROGRESS)
+                continue;
+            boolean away1 = absent(game.getPlayer1());
+            boolean away2 = absent(game.getPlayer2());
+            if (!away1 && !away2)
+                continue;
+            // dua-duanya tidak kembali: yang gilirannya dianggap keluar
+            String left = away1 && away2 ? game.getCurrentTurn() : away1 ? game.getPlayer1() : game.getPlayer2();
+            if (left == null)
+                continue;
+            game.playerLeft(left);
+            ended++;
+            System.out.println("[SERVER] Journal recovery: game " + game.getGameId() + " ended, " + left
+                    + " did not return within " + graceMs + " ms");
+        }
+        abandoned = ended;
+    }
+
+    private boolean absent(String player) {
+        return !state.isBot(player) && state.getUser(player) == null;
+    }
+
+    // ================= PERIODIC =================
+
+    /**
+     * Starts the "journal-snapshot" thread, which also ends abandoned
+     * recovered games (no-op if there is nothing to do for it).
+     */
+    void start() {
+        if (snapshotRecords <= 0 && restored == null)
+            return;
+        Thread t = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(1000);
+                    if (restored != null && System.currentTimeMillis() >= graceDeadline)
+                        endAbandoned();
+                    if (snapshotRecords > 0 && journal.records() - lastSnapshotRecords >= snapshotRecords)
+                        snapshot();
+                    else if (snapshotRecords <= 0 && restored == null)
+                        return; // grace selesai, snapshot hanya saat start
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("[SERVER ERROR] Journal snapshot failed: " + e);
+                }
+            }
+        }, "journal-snapshot");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    String stats() {
+        return "recovered=" + recovered + ", abandoned=" + abandoned + ", snapshots=" + snapshots + " (last " + lastSnapshotGames
+                + " games, " + lastSnapshotMs + " ms)";
+    }
+}
@@ -0,0 +1,129 @@
+package com.tictactoe.server;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing map from game id (a primitive long) to GameRoom, for the
+ * getGame lookup every GAME_MOVE does. No boxing and no entry objects: one
+ * slot array, linear probing, the key is read from the room itself.
+ *
+ * Reads never lock. Writes (put / remove) must be serialized by the caller;
+ * ServerState does them under its game lock. A removed room leaves a
+ * tombstone instead of shifting its neighbours back, so a concurrent reader
+ * never misses a room that stays in the map. Tombstones are reused by
+ * later puts, and the table is rebuilt (and swapped in with one volatile
+ * write) when live rooms plus tombstones pass 3/4 of the slots. A reader
+ * still holding the old array sees the map as it was before the rebuild.
+ */
+final class LongGameMap {
+
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(MIN_CAPACITY);
+    private int size;
+    private int used; // size + tombstones
+
+    GameRoom get(long id) {
+        AtomicReferenceArray<Object> s = slots;
+        int mask = s.length() - 1;
+        for (int i = index(id, mask);; i = (i + 1) & mask) {
+            Object o = s.get(i);
+            if (o == null)
+                return null;
+            if (o != TOMBSTONE && ((GameRoom) o).getId() == id)
+                return (GameRoom) o;
+        }
+    }
+
+    /** Adds or replaces the room under its id. Caller holds the write lock. */
+    void put(GameRoom game) {
+        if (used + 1 > slots.length() / 4 * 3)
+            rebuild(size + 1);
+
+        AtomicReferenceArray<Object> s = slots;
+        int mask = s.length() - 1;
+        long id = game.getId();
+        int free = -1;
+        for (int i = index(id, mask);; i = (i + 1) & mask) {
+            Object o = s.get(i);
+            if (o == null) {
+                if (free < 0) {
+                    free = i;
+                    used++;
+                }
+                break;
+            }
+            if (o == TOMBSTONE) {
+                if (free < 0)
+                    free = i;
+            } else if (((GameRoom) o).getId() == id) {
+                s.set(i, game);
+                return;
+            }
+        }
+        s.set(free, game);
+        size++;
+    }
+
+    /** Removes the room with this id; returns it, or null. Caller holds the write lock. */
+    GameRoom remove(long id) {
+        AtomicReferenceArray<Object> s = slots;
+        int mask = s.length() - 1;
+        for (int i = index(id, mask);; i = (i + 1) & mask) {
+            Object o = s.get(i);
+            if (o == null)
+                return null;
+            if (o != TOMBSTONE && ((GameRoom) o).getId() == id) {
+                s.set(i, TOMBSTONE);
+                size--;
+                return (GameRoom) o;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Every room in the map; lock-free, a room added or removed meanwhile may or may not be seen. */
+    void forEach(Consumer<GameRoom> action) {
+        AtomicReferenceArray<Object> s = slots;
+        for (int i = 0; i < s.length(); i++) {
+            Object o = s.get(i);
+            if (o != null && o != TOMBSTONE)
+                action.accept((GameRoom) o);
+        }
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    private void rebuild(int live) {
+        int capacity = MIN_CAPACITY;
+        while (live > capacity / 2)
+            capacity <<= 1;
+
+        AtomicReferenceArray<Object> old = slots;
+        AtomicReferenceArray<Object> s = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.length(); j++) {
+            Object o = old.get(j);
+            if (o == null || o == TOMBSTONE)
+                continue;
+            int i = index(((GameRoom) o).getId(), mask);
+            while (s.get(i) != null)
+                i = (i + 1) & mask;
+            s.set(i, o);
+        }
+        slots = s;
+        used = size;
+    }
+
+    // fibonacci hashing: id berurutan tersebar ke seluruh tabel
+    private static int index(long id, int mask) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,281 @@
+package com.tictactoe.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Automatic pairing (QUEUE[|size|k|limit]).
+ *
+ * Waiting players are kept per variant in rating buckets of
+ * match.bucketWidth points: a TreeMap from bucket number to the tickets in
+ * it, oldest first. A new ticket looks for an opponent from its own bucket
+ * outwards (floorEntry / higherEntry, O(log n) per non-empty bucket) within
+ * its rating window, so pairing never walks the whole queue. The window
+ * starts at match.initialWindow and grows by match.widenPerSecond up to
+ * match.maxWindow; every match.tickMs the tickets that are still waiting
+ * search again, oldest first, with their wider window.
+ *
+ * All queue state belongs to the "matchmaker" thread; QUEUE / LEAVE_QUEUE
+ * only submit a task. A pair goes to {@link Pairing}, which in the server
+ * creates the game through {@link ServerState#createGame}.
+ */
+final class Matchmaker {
+
+    /** Server side of a match; both methods run on the matchmaker thread. */
+    interface Pairing {
+        /** False if the player went offline or started a game some other way; the ticket is dropped. */
+        boolean available(Ticket t);
+
+        /**
+         * {@code x} waited longer and plays X. False if no game was created
+         * (one of them got into a game meanwhile); the ticket that is still
+         * available goes back into the queue with its original wait.
+         */
+        boolean paired(Ticket x, Ticket o);
+    }
+
+    static final class Ticket {
+        final String username;
+        final int rating;
+        final GameRules rules;
+        final long enqueuedAt; // nanoTime
+        // pencarian terakhir (thread matchmaker): window dan versi pool saat itu
+        int searched;
+        long searchedVersion;
+
+        Ticket(String username, int rating, GameRules rules) {
+            this.username = username;
+            this.rating = rating;
+            this.rules = rules;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+
+    /** Waiting tickets of one variant. */
+    private static final class Pool {
+        final TreeMap<Integer, LinkedHashSet<Ticket>> buckets = new TreeMap<>();
+        long version; // naik setiap ada ticket baru
+    }
+
+    private final int bucketWidth;
+    private final int initialWindow;
+    private final int widenPerSecond;
+    private final int maxWindow;
+    private final Pairing pairing;
+
+    // ----- hanya thread matchmaker -----
+    private final Map<GameRules, Pool> pools = new HashMap<>();
+    private final LinkedHashMap<String, Ticket> waiting = new LinkedHashMap<>(); // urut waktu masuk
+
+    private final ScheduledExecutorService executor;
+
+    // counters
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong matches = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private volatile int waitingCount;
+
+    Matchmaker(ServerConfig config, Pairing pairing) {
+        this(config.getInt("match.bucketWidth", 50), config.getInt("match.initialWindow", 100),
+                config.getInt("match.widenPerSecond", 100), config.getInt("match.maxWindow", 1000),
+                config.getLong("match.tickMs", 250), pairing);
+    }
+
+    Matchmaker(int bucketWidth, int initialWindow, int widenPerSecond, int maxWindow, long tickMs, Pairing pairing) {
+        this.bucketWidth = Math.max(1, bucketWidth);
+        this.initialWindow = initialWindow;
+        this.widenPerSecond = widenPerSecond;
+        this.maxWindow = maxWindow;
+        this.pairing = pairing;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "matchmaker");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::sweep, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Queues (or re-queues with other rules) a player. */
+    void enqueue(String username, int rating, GameRules rules) {
+        Ticket ticket = new Ticket(username, rating, rules);
+        enqueued.incrementAndGet();
+        executor.execute(() -> {
+            remove(waiting.get(username));
+            if (!pairing.available(ticket))
+                return;
+            if (!match(ticket, initialWindow))
+                add(ticket);
+        });
+    }
+
+    /** LEAVE_QUEUE, logout or a game started some other way; no-op if not queued. */
+    void cancel(String username) {
+        cancel(username, null);
+    }
+
+    /** Like {@link #cancel(String)}; {@code ifQueued} runs (matchmaker thread) only if a ticket was removed. */
+    void cancel(String username, Runnable ifQueued) {
+        executor.execute(() -> {
+            if (remove(waiting.get(username))) {
+                cancelled.incrementAndGet();
+                if (ifQueued != null)
+                    ifQueued.run();
+            }
+        });
+    }
+
+    // ----- matchmaker thread -----
+
+    private int bucketOf(int rating) {
+        return Math.floorDiv(rating, bucketWidth);
+    }
+
+    private int windowOf(Ticket t, long now) {
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(now - t.enqueuedAt);
+        return (int) Math.min(maxWindow, initialWindow + widenPerSecond * waitedMs / 1000);
+    }
+
+    // pairs t with the closest waiting ticket within window; false if there is none
+    private boolean match(Ticket t, int window) {
+        Pool pool = pools.get(t.rules);
+        t.searched = window;
+        t.searchedVersion = pool == null ? 0 : pool.version;
+        if (pool == null)
+            return false;
+
+        int home = bucketOf(t.rating);
+        int lo = bucketOf(t.rating - window);
+        int hi = bucketOf(t.rating + window);
+        Map.Entry<Integer, LinkedHashSet<Ticket>> down = pool.buckets.floorEntry(home);
+        Map.Entry<Integer, LinkedHashSet<Ticket>> up = pool.buckets.higherEntry(home);
+        while (true) {
+            boolean downOk = down != null && down.getKey() >= lo;
+            boolean upOk = up != null && up.getKey() <= hi;
+            if (!downOk && !upOk)
+                return false;
+            // bucket terdekat dulu
+            boolean takeDown = downOk && (!upOk || home - down.getKey() <= up.getKey() - home);
+            Map.Entry<Integer, LinkedHashSet<Ticket>> e = takeDown ? down : up;
+            Ticket other = firstWithin(e.getValue(), t, window);
+            if (other != null) {
+                remove(other);
+                remove(t);
+                paired(t, other);
+                return true;
+            }
+            if (e.getValue().isEmpty()) // semua ticket di bucket ini sudah tidak available
+                pool.buckets.remove(e.getKey());
+            if (takeDown)
+                down = pool.buckets.lowerEntry(down.getKey());
+            else
+                up = pool.buckets.higherEntry(up.getKey());
+        }
+    }
+
+    private Ticket firstWithin(LinkedHashSet<Ticket> bucket, Ticket t, int window) {
+        Iterator<Ticket> it = bucket.iterator();
+        while (it.hasNext()) {
+            Ticket other = it.next();
+            if (other == t || Math.abs(other.rating - t.rating) > window)
+                continue;
+            if (pairing.available(other))
+                return other;
+            // offline / sudah main: keluar dari antrian
+            it.remove();
+            waiting.remove(other.username);
+            waitingCount = waiting.size();
+            cancelled.incrementAndGet();
+        }
+        return null;
+    }
+
+    private void paired(Ticket a, Ticket b) {
+        long now = System.nanoTime();
+        boolean started = false;
+        try {
+            // yang menunggu lebih lama jadi X
+            started = a.enqueuedAt <= b.enqueuedAt ? pairing.paired(a, b) : pairing.paired(b, a);
+        } catch (RuntimeException e) {
+            System.out.println("[SERVER] Pairing failed: " + e);
+        }
+        if (started) {
+            matches.incrementAndGet();
+            waitNanos.addAndGet((now - a.enqueuedAt) + (now - b.enqueuedAt));
+            return;
+        }
+        // salah satu sudah masuk game lain (mis. lewat invite): yang masih bebas antri lagi
+        for (Ticket t : new Ticket[] { a, b }) {
+            if (waiting.get(t.username) == null && pairing.available(t))
+                add(t);
+            else
+                cancelled.incrementAndGet();
+        }
+    }
+
+    private void add(Ticket t) {
+        Pool pool = pools.computeIfAbsent(t.rules, r -> new Pool());
+        pool.buckets.computeIfAbsent(bucketOf(t.rating), b -> new LinkedHashSet<>()).add(t);
+        pool.version++;
+        waiting.put(t.username, t);
+        waitingCount = waiting.size();
+    }
+
+    private boolean remove(Ticket t) {
+        if (t == null || waiting.get(t.username) != t)
+            return false;
+        waiting.remove(t.username);
+        waitingCount = waiting.size();
+        Pool pool = pools.get(t.rules);
+        int bucket = bucketOf(t.rating);
+        LinkedHashSet<Ticket> tickets = pool.buckets.get(bucket);
+        tickets.remove(t);
+        if (tickets.isEmpty()) // bucket kosong dibuang supaya navigasi tetap O(log n)
+            pool.buckets.remove(bucket);
+        return true;
+    }
+
+    // window melebar seiring waktu: yang paling lama menunggu mencari duluan
+    private void sweep() {
+        try {
+            if (waiting.isEmpty())
+                return;
+            long now = System.nanoTime();
+            List<Ticket> oldestFirst = new ArrayList<>(waiting.values());
+            for (Ticket t : oldestFirst) {
+                if (waiting.get(t.username) != t)
+                    continue; // sudah dipasangkan di iterasi ini
+                int window = windowOf(t, now);
+                Pool pool = pools.get(t.rules);
+                if (window == t.searched && pool.version == t.searchedVersion)
+                    continue; // window sudah maksimal dan tidak ada ticket baru: hasilnya sama
+                if (!pairing.available(t)) {
+                    remove(t);
+                    cancelled.incrementAndGet();
+                    continue;
+                }
+                match(t, window);
+            }
+        } catch (RuntimeException e) {
+            // jangan sampai scheduleAtFixedRate berhenti diam-diam
+            System.out.println("[SERVER] Matchmaker sweep failed: " + e);
+        }
+    }
+
+    String stats() {
+        long m = matches.get();
+        return "waiting=" + waitingCount + ", enqueued=" + enqueued.get() + ", matches=" + m
+                + ", cancelled=" + cancelled.get() + ", avgWait="
+                + (m > 0 ? TimeUnit.NANOSECONDS.toMillis(waitNanos.get() / (2 * m)) : 0) + "ms";
+    }
+}
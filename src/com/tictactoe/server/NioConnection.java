@@ -0,0 +1,154 @@
+package com.tictactoe.server;
+
+import com.tictactoe.protocol.FrameDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One non-blocking client connection. Incoming bytes are split into messages
+ * incrementally (a message may arrive across several reads) and passed to the
+ * same {@link ClientHandler} dispatcher used by the thread mode.
+ */
+class NioConnection {
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final NioReactor reactor;
+    private final ClientHandler handler;
+
+    // menyimpan sisa message yang belum lengkap di antara read
+    private final FrameDecoder decoder = new FrameDecoder();
+
+    private final OutboundQueue outbound;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean overflowed;
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    NioConnection(SocketChannel channel, SelectionKey key, NioReactor reactor, ServerState serverState) {
+        this.channel = channel;
+        this.key = key;
+        this.reactor = reactor;
+        this.outbound = OutboundQueue.create(serverState.getConfig());
+        this.handler = new ClientHandler(this, serverState);
+    }
+
+    // ================= READ (reactor thread) =================
+
+    void onReadable(ByteBuffer readBuffer) {
+        readBuffer.clear();
+        int n;
+        try {
+            n = channel.read(readBuffer);
+        } catch (IOException e) {
+            System.out.println("[SERVER] Connection error: " + e.getMessage());
+            handler.disconnect();
+            return;
+        }
+
+        if (n < 0) {
+            handler.disconnect();
+            return;
+        }
+
+        readBuffer.flip();
+        try {
+            decoder.feed(readBuffer, handler.getDispatcher());
+        } catch (IOException e) {
+            // line / frame terlalu panjang atau rusak
+            System.out.println("[SERVER] Protocol error: " + e.getMessage());
+            handler.disconnect();
+        }
+    }
+
+    // ================= WRITE =================
+
+    void send(ByteBuffer frame) {
+        if (closed)
+            return;
+
+        if (!outbound.offer(frame)) {
+            if (outbound.getOverflow() == OutboundQueue.Overflow.DROP)
+                return;
+            // disconnect harus jalan di reactor thread, tandai dulu
+            overflowed = true;
+        }
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            reactor.scheduleFlush(this);
+        }
+    }
+
+    // idle timeout (thread idle-wheel): disconnect juga harus di reactor thread
+    void evictIdle() {
+        idle = true;
+        if (flushScheduled.compareAndSet(false, true)) {
+            reactor.scheduleFlush(this);
+        }
+    }
+
+    // only called from the reactor thread
+    void flush(ByteBuffer[] gather) {
+        flushScheduled.set(false);
+        if (closed)
+            return;
+
+        if (idle) {
+            System.out.println("[SERVER] Idle timeout, closing connection.");
+            handler.disconnect();
+            return;
+        }
+
+        if (overflowed) {
+            System.out.println("[SERVER] Outbound backlog over limit, closing slow client.");
+            handler.disconnect();
+            return;
+        }
+
+        try {
+            int n;
+            while ((n = outbound.peek(gather)) > 0) {
+                // satu syscall untuk banyak frame sekaligus
+                channel.write(gather, 0, n);
+
+                int done = 0;
+                while (done < n && !gather[done].hasRemaining()) {
+                    outbound.poll();
+                    done++;
+                }
+                Arrays.fill(gather, 0, n, null);
+
+                if (done < n) {
+                    // socket buffer penuh, lanjut saat OP_WRITE
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            System.out.println("[SERVER] Write error: " + e.getMessage());
+            handler.disconnect();
+        }
+    }
+
+    long getPendingBytes() {
+        return outbound.getPendingBytes();
+    }
+
+    void close() {
+        if (closed)
+            return;
+        closed = true;
+        outbound.clear();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
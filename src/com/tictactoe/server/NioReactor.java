@@ -0,0 +1,106 @@
+package com.tictactoe.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop for a group of connections. All reads and socket writes of the
+ * connections registered here happen on this reactor's thread; other threads
+ * only enqueue work and wake the selector up.
+ */
+class NioReactor implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_GATHER = 64;
+
+    private final ServerState serverState;
+    private final Selector selector;
+
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+    // dipakai bergantian oleh semua koneksi di reactor ini
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    private volatile Thread thread;
+
+    NioReactor(ServerState serverState) throws IOException {
+        this.serverState = serverState;
+        this.selector = Selector.open();
+    }
+
+    void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    void scheduleFlush(NioConnection connection) {
+        pendingFlushes.add(connection);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+
+        while (true) {
+            try {
+                selector.select();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush(gather);
+                    }
+                }
+
+                registerPending();
+                flushPending();
+
+            } catch (IOException e) {
+                System.out.println("[SERVER] Reactor error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void registerPending() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                NioConnection connection = new NioConnection(channel, key, this, serverState);
+                key.attach(connection);
+                System.out.println("[SERVER] New connection.");
+            } catch (IOException e) {
+                System.out.println("[SERVER] Register failed: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void flushPending() {
+        NioConnection connection;
+        while ((connection = pendingFlushes.poll()) != null) {
+            connection.flush(gather);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.tictactoe.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Non-blocking server mode. One acceptor thread hands new sockets round-robin
+ * to a small fixed set of reactor threads; every reactor owns a Selector and
+ * serves many connections, so we no longer need one thread per client.
+ */
+public class NioServer {
+
+    private final int port;
+    private final int backlog;
+    private final NioReactor[] reactors;
+
+    public NioServer(int port, int reactorCount, ServerState serverState) throws IOException {
+        this.port = port;
+        this.backlog = serverState.getConfig().getInt("backlog", 50);
+        this.reactors = new NioReactor[Math.max(1, reactorCount)];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new NioReactor(serverState);
+        }
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < reactors.length; i++) {
+            Thread t = new Thread(reactors[i], "nio-reactor-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port), backlog);
+
+            System.out.println("[SERVER] Running on port " + port + " (nio, "
+                    + reactors.length + " reactors)");
+            System.out.println("[SERVER] Waiting for clients...");
+
+            int next = 0;
+            while (true) {
+                // accept tetap blocking di thread ini, reactor hanya urus read/write
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                reactors[next].register(channel);
+                next = (next + 1) % reactors.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.tictactoe.server;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded send queue of one connection. Any thread may offer frames; only the
+ * connection's writer polls them. A frame is a whole encoded line starting at
+ * position 0, so its size is {@code limit()}.
+ */
+class OutboundQueue {
+
+    enum Overflow {
+        DISCONNECT, // client terlalu lambat -> putus
+        DROP        // buang frame baru, koneksi tetap hidup
+    }
+
+    private final Queue<ByteBuffer> frames = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final long highWaterBytes;
+    private final Overflow overflow;
+
+    OutboundQueue(long highWaterBytes, Overflow overflow) {
+        this.highWaterBytes = highWaterBytes;
+        this.overflow = overflow;
+    }
+
+    static OutboundQueue create(ServerConfig config) {
+        long limit = config.getLong("outbound.highWaterBytes", 1024 * 1024);
+        String policy = config.getString("outbound.overflow", "disconnect");
+        return new OutboundQueue(limit,
+                policy.equalsIgnoreCase("drop") ? Overflow.DROP : Overflow.DISCONNECT);
+    }
+
+    /**
+     * Returns false when the backlog is already above the high-water mark; the
+     * frame is then not queued and the caller applies {@link #getOverflow()}.
+     */
+    boolean offer(ByteBuffer frame) {
+        if (pendingBytes.get() > highWaterBytes) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        pendingBytes.addAndGet(frame.limit());
+        frames.add(frame);
+        return true;
+    }
+
+    ByteBuffer poll() {
+        ByteBuffer frame = frames.poll();
+        if (frame != null) {
+            pendingBytes.addAndGet(-frame.limit());
+        }
+        return frame;
+    }
+
+    /**
+     * Copies up to {@code into.length} frames from the head without removing
+     * them, for a gathering write. Returns the number of frames copied.
+     */
+    int peek(ByteBuffer[] into) {
+        int n = 0;
+        Iterator<ByteBuffer> it = frames.iterator();
+        while (n < into.length && it.hasNext()) {
+            into[n++] = it.next();
+        }
+        return n;
+    }
+
+    boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    void clear() {
+        while (poll() != null) {
+            // kosongkan sambil jaga pendingBytes tetap benar
+        }
+    }
+
+    long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    Overflow getOverflow() {
+        return overflow;
+    }
+}
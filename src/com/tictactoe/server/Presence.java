@@ -0,0 +1,176 @@
+package com.tictactoe.server;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Versioned lobby roster. Every login and logout gets the next sequence
+ * number and goes out to all users as a small delta:
+ *
+ *   USER_JOINED|seq|username
+ *   USER_LEFT|seq|username
+ *
+ * A full snapshot (USER_LIST|user1,user2,...|seq) is only sent to one client:
+ * right after its login, or when it asks with REQ_USER_LIST because it saw a
+ * gap in the sequence.
+ *
+ * Login and logout only queue a change (O(1)). A scheduler flushes the queue
+ * at most once per presence.flushIntervalMs: all deltas of that tick go out
+ * as one frame, and a user who joins and leaves within the same tick produces
+ * no delta at all.
+ */
+class Presence {
+
+    private static final int JOIN = 0;
+    private static final int LEAVE = 1;
+    private static final int SNAPSHOT = 2;
+
+    private static class Change {
+        final int type;
+        final String username;
+        final ClientHandler handler; // penerima snapshot (JOIN / SNAPSHOT)
+
+        Change(int type, String username, ClientHandler handler) {
+            this.type = type;
+            this.username = username;
+            this.handler = handler;
+        }
+    }
+
+    private final ServerState serverState;
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+
+    // roster + seq hanya berubah di bawah lock ini (di flush)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<String> roster = new LinkedHashSet<>();
+    private long seq;
+
+    private final long flushIntervalMs;
+
+    // counters
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong broadcasts = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    Presence(ServerState serverState) {
+        this.serverState = serverState;
+        this.flushIntervalMs = serverState.getConfig().getLong("presence.flushIntervalMs", 100);
+
+        if (flushIntervalMs > 0) {
+            ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "presence-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            ticker.scheduleAtFixedRate(this::flush, flushIntervalMs, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void joined(ClientHandler handler) {
+        changes.incrementAndGet();
+        submit(new Change(JOIN, handler.getUsername(), handler));
+    }
+
+    void left(String username) {
+        changes.incrementAndGet();
+        submit(new Change(LEAVE, username, null));
+    }
+
+    void sendSnapshot(ClientHandler handler) {
+        submit(new Change(SNAPSHOT, null, handler));
+    }
+
+    private void submit(Change change) {
+        pending.add(change);
+        if (flushIntervalMs <= 0) {
+            flush(); // coalescing dimatikan
+        }
+    }
+
+    void flush() {
+        if (pending.isEmpty())
+            return;
+
+        lock.lock();
+        try {
+            // status awal setiap nama yang tersentuh di tick ini
+            Map<String, Boolean> touched = new LinkedHashMap<>();
+            Set<ClientHandler> snapshotTo = new LinkedHashSet<>();
+            int applied = 0;
+
+            Change c;
+            while ((c = pending.poll()) != null) {
+                if (c.type == SNAPSHOT) {
+                    snapshotTo.add(c.handler);
+                    continue;
+                }
+                applied++;
+                touched.putIfAbsent(c.username, roster.contains(c.username));
+                if (c.type == JOIN) {
+                    roster.add(c.username);
+                    snapshotTo.add(c.handler);
+                } else if (serverState.getUser(c.username) == null) {
+                    // kalau nama sudah diklaim login baru, tetap di roster
+                    roster.remove(c.username);
+                }
+            }
+
+            StringBuilder deltas = new StringBuilder();
+            int deltaCount = 0;
+            for (Map.Entry<String, Boolean> e : touched.entrySet()) {
+                boolean now = roster.contains(e.getKey());
+                if (now == e.getValue())
+                    continue; // join+leave (atau sebaliknya) dalam satu tick
+                seq++;
+                deltaCount++;
+                if (deltas.length() > 0)
+                    deltas.append('\n');
+                deltas.append(now ? "USER_JOINED|" : "USER_LEFT|").append(seq).append('|').append(e.getKey());
+            }
+            cancelled.addAndGet(applied - deltaCount);
+
+            // snapshot duluan: client baru mengabaikan delta dengan seq <= snapshot
+            if (!snapshotTo.isEmpty()) {
+                Frame.Shared snapshot = new Frame.Shared(
+                        "USER_LIST|" + String.join(",", roster) + "|" + seq, true);
+                for (ClientHandler h : snapshotTo) {
+                    snapshot.sendSnapshotTo(h);
+                }
+            }
+
+            if (deltaCount > 0) {
+                broadcasts.incrementAndGet();
+                Frame.Shared frame = new Frame.Shared(deltas.toString(), true);
+                for (ClientHandler h : serverState.getUsers()) {
+                    frame.sendTo(h);
+                }
+                System.out.println("[SERVER] Presence flush: " + deltaCount + " deltas (seq " + seq + ")");
+            }
+        } catch (RuntimeException e) {
+            // jangan sampai scheduleAtFixedRate berhenti diam-diam
+            System.out.println("[SERVER] Presence flush failed: " + e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Logins/logouts that did not need a broadcast of their own. */
+    long getCoalesced() {
+        return changes.get() - broadcasts.get();
+    }
+
+    String stats() {
+        return "changes=" + changes.get() + ", broadcasts=" + broadcasts.get()
+                + ", coalesced=" + getCoalesced() + ", cancelled=" + cancelled.get();
+    }
+}
@@ -0,0 +1,143 @@
+package com.tictactoe.server;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-connection flood protection with token buckets.
+ *
+ * Every connection has a {@link Limiter} with one bucket per command class
+ * (rate.&lt;bucket&gt;.perSec and rate.&lt;bucket&gt;.burst), plus the
+ * "message" bucket that every inbound message, PING and GAME_MOVE included,
+ * also has to pass. A bucket is a single long (GCRA: the time at which the
+ * bucket would be full again), so a check is a clock read and a compare,
+ * without locks or allocation; a connection's messages are always dispatched
+ * by one thread at a time, which is the only writer.
+ *
+ * A message over the limit is dropped and counted. The sender hears about it
+ * once per streak (RATE_LIMITED|command). Violations themselves go through the
+ * "violations" bucket: a connection that keeps flooding after it is empty is
+ * disconnected and logged out.
+ */
+final class RateLimits {
+
+    // bucket ids
+    static final int MESSAGE = 0;
+    static final int CHAT = 1;
+    static final int USER_LIST = 2;
+    static final int INVITE = 3;
+    static final int QUERY = 4;
+    static final int VIOLATIONS = 5;
+
+    // hasil Limiter.check
+    static final int OK = 0;
+    static final int DROP = 1;
+    static final int DROP_AND_NOTIFY = 2;
+    static final int DISCONNECT = 3;
+
+    private static final String[] NAMES = { "message", "chat", "userList", "invite", "query", "violations" };
+    // perSec, burst
+    private static final int[][] DEFAULTS = { { 30, 60 }, { 2, 5 }, { 1, 3 }, { 1, 5 }, { 2, 10 }, { 1, 20 } };
+
+    private final long[] interval = new long[NAMES.length]; // nanos per token, 0 = tanpa limit
+    private final long[] tolerance = new long[NAMES.length]; // (burst - 1) * interval
+
+    // counters
+    private final LongAdder[] dropped = new LongAdder[NAMES.length];
+    private final AtomicLong disconnected = new AtomicLong();
+
+    RateLimits(ServerConfig config) {
+        boolean enabled = config.getBoolean("rate.enabled", true);
+        for (int b = 0; b < NAMES.length; b++) {
+            dropped[b] = new LongAdder();
+            int perSec = config.getInt("rate." + NAMES[b] + ".perSec", DEFAULTS[b][0]);
+            int burst = config.getInt("rate." + NAMES[b] + ".burst", DEFAULTS[b][1]);
+            if (!enabled || perSec <= 0)
+                continue;
+            interval[b] = TimeUnit.SECONDS.toNanos(1) / perSec;
+            tolerance[b] = (Math.max(1, burst) - 1) * interval[b];
+        }
+    }
+
+    /** Bucket of a text/binary command besides {@link #MESSAGE}; MESSAGE if it has none of its own. */
+    static int bucketOf(String command) {
+        switch (command) {
+            case "CHAT_GLOBAL":
+            case "GAME_CHAT":
+            case "CHAT":
+                return CHAT;
+            case "REQ_USER_LIST":
+                return USER_LIST;
+            case "INVITE":
+                return INVITE;
+            case "HINT":
+            case "WATCH":
+            case "UNWATCH":
+            case "QUEUE":
+            case "LEAVE_QUEUE":
+            case "LEADERBOARD":
+            case "JOIN_CHANNEL":
+            case "LEAVE_CHANNEL":
+            case "LIST_CHANNELS":
+                return QUERY;
+            default:
+                return MESSAGE;
+        }
+    }
+
+    Limiter newLimiter() {
+        return new Limiter();
+    }
+
+    String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (int b = 0; b < VIOLATIONS; b++)
+            sb.append(NAMES[b]).append("Dropped=").append(dropped[b].sum()).append(", ");
+        return sb.append("disconnected=").append(disconnected.get()).toString();
+    }
+
+    /** Buckets of one connection. Only the thread dispatching its messages may use it. */
+    final class Limiter {
+        private final long[] full = new long[NAMES.length]; // GCRA "theoretical arrival time"
+        private boolean limited; // sudah dapat RATE_LIMITED sejak pesan terakhir yang lolos
+
+        private Limiter() {
+            Arrays.fill(full, System.nanoTime());
+        }
+
+        /** One inbound message of {@code bucket} (MESSAGE for PING / GAME_MOVE). */
+        int check(int bucket) {
+            long now = System.nanoTime();
+            int over = !take(MESSAGE, now) ? MESSAGE : bucket != MESSAGE && !take(bucket, now) ? bucket : -1;
+            if (over < 0) {
+                limited = false;
+                return OK;
+            }
+
+            dropped[over].increment();
+            if (!take(VIOLATIONS, now)) {
+                disconnected.incrementAndGet();
+                return DISCONNECT;
+            }
+            if (limited)
+                return DROP;
+            limited = true;
+            return DROP_AND_NOTIFY;
+        }
+
+        private boolean take(int b, long now) {
+            long step = interval[b];
+            if (step == 0)
+                return true;
+            long t = full[b];
+            if (t - now < 0) // lama tidak dipakai: bucket penuh
+                t = now;
+            if (t - now > tolerance[b])
+                return false;
+            full[b] = t + step;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.tictactoe.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Elo ratings of everybody who finished a rated game, and the leaderboard.
+ *
+ * Besides the players by name there are two indexes, both updated with every
+ * rating change instead of sorting on every LEADERBOARD: a Fenwick tree that
+ * counts players per rating point (0..{@link #MAX}), so "my rank" is one
+ * prefix sum, O(log MAX); and a TreeMap from rating (highest first) to the
+ * names with that rating, so the top K are the first K names, O(log n + K).
+ * Equal ratings share a rank.
+ *
+ * Ratings are written to rating.file (same format idea as the journal
+ * snapshot: magic, version, entries, CRC32; written to a temp file and moved
+ * into place) at most every rating.flushMs and at shutdown. A crash loses at
+ * most the changes of the last interval. All methods are synchronized; every
+ * one of them is O(log n) or O(K).
+ */
+final class Ratings {
+
+    static final int INITIAL = 1200;
+    static final int MAX = 4095;
+
+    private static final int MAGIC = 0x52415431; // "RAT1"
+    private static final int VERSION = 1;
+
+    private static final class Player {
+        final String name;
+        int rating = INITIAL;
+        int games;
+
+        Player(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Path file; // null = hanya di memory
+    private final int kFactor;
+    private final int maxTop;
+
+    private final Map<String, Player> players = new HashMap<>();
+    private final TreeMap<Integer, TreeSet<String>> byRating = new TreeMap<>(Collections.reverseOrder());
+    private final int[] tree = new int[MAX + 2]; // Fenwick, index = rating + 1
+    private final Object writeLock = new Object(); // satu flush sekaligus, lihat flush()
+
+    private boolean dirty;
+    private long ratedGames;
+    private long flushes;
+    private long queries;
+
+    Ratings(ServerConfig config) {
+        this(pathOf(config.getString("rating.file", "data/ratings.dat")), config.getInt("rating.k", 32),
+                config.getInt("rating.maxTop", 100), config.getLong("rating.flushMs", 1000));
+    }
+
+    Ratings(Path file, int kFactor, int maxTop, long flushMs) {
+        this.file = file;
+        this.kFactor = kFactor;
+        this.maxTop = Math.max(1, maxTop);
+        if (file == null)
+            return;
+
+        try {
+            load();
+            if (!players.isEmpty())
+                System.out.println("[SERVER] Loaded " + players.size() + " ratings from " + file);
+        } catch (IOException e) {
+            System.out.println("[SERVER] Failed to read ratings " + file + ": " + e.getMessage()
+                    + ", starting from " + INITIAL);
+        }
+
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ratings-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMs, Math.max(1, flushMs), TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly, "ratings-close"));
+    }
+
+    private static Path pathOf(String file) {
+        return file.isEmpty() ? null : Paths.get(file);
+    }
+
+    /** Current rating; {@link #INITIAL} for somebody without rated games. */
+    synchronized int get(String name) {
+        Player p = players.get(name);
+        return p != null ? p.rating : INITIAL;
+    }
+
+    /**
+     * One finished game: {@code scoreX} is 1 (x won), 0.5 (draw) or 0.
+     * Returns the changes {x, o}; they only differ in size when a rating
+     * hits 0 or {@link #MAX}.
+     */
+    synchronized int[] record(String x, String o, double scoreX) {
+        Player px = player(x);
+        Player po = player(o);
+        double expected = 1 / (1 + Math.pow(10, (po.rating - px.rating) / 400.0));
+        int delta = (int) Math.round(kFactor * (scoreX - expected));
+        int beforeX = px.rating;
+        int beforeO = po.rating;
+        move(px, px.rating + delta);
+        move(po, po.rating - delta);
+        px.games++;
+        po.games++;
+        ratedGames++;
+        dirty = true;
+        return new int[] { px.rating - beforeX, po.rating - beforeO };
+    }
+
+    /**
+     * "rank|rating|players|r1:name1,r2:name2,..." for LEADERBOARD|k. Rank 0
+     * means {@code name} has no rated game yet.
+     */
+    synchronized String leaderboard(String name, int k) {
+        queries++;
+        Player me = players.get(name);
+        StringBuilder sb = new StringBuilder(32 + 24 * Math.min(k, maxTop));
+        sb.append(me != null ? rankOf(me.rating) : 0).append('|')
+                .append(me != null ? me.rating : INITIAL).append('|')
+                .append(players.size()).append('|');
+
+        int left = Math.max(0, Math.min(k, maxTop));
+        boolean first = true;
+        for (Map.Entry<Integer, TreeSet<String>> e : byRating.entrySet()) {
+            for (String n : e.getValue()) {
+                if (left-- == 0)
+                    return sb.toString();
+                if (!first)
+                    sb.append(',');
+                first = false;
+                // rating dulu: nama boleh saja berisi ':'
+                sb.append(e.getKey()).append(':').append(n);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** 1 + number of players rated higher. */
+    synchronized int rank(String name) {
+        Player p = players.get(name);
+        return p != null ? rankOf(p.rating) : 0;
+    }
+
+    private int rankOf(int rating) {
+        return players.size() - prefix(rating) + 1;
+    }
+
+    private Player player(String name) {
+        Player p = players.get(name);
+        if (p == null) {
+            p = new Player(name);
+            players.put(name, p);
+            index(p, 1);
+        }
+        return p;
+    }
+
+    private void move(Player p, int rating) {
+        rating = Math.max(0, Math.min(MAX, rating));
+        if (rating == p.rating)
+            return;
+        index(p, -1);
+        p.rating = rating;
+        index(p, 1);
+    }
+
+    // d = +1 masuk index, -1 keluar
+    private void index(Player p, int d) {
+        for (int i = p.rating + 1; i < tree.length; i += i & -i)
+            tree[i] += d;
+        if (d > 0) {
+            byRating.computeIfAbsent(p.rating, r -> new TreeSet<>()).add(p.name);
+        } else {
+            TreeSet<String> names = byRating.get(p.rating);
+            names.remove(p.name);
+            if (names.isEmpty())
+                byRating.remove(p.rating);
+        }
+    }
+
+    // jumlah player dengan rating <= r
+    private int prefix(int r) {
+        int sum = 0;
+        for (int i = r + 1; i > 0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    // ----- persistence -----
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            // jangan sampai scheduleWithFixedDelay berhenti diam-diam
+            System.out.println("[SERVER] Failed to write ratings " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Writes the ratings if anything changed since the last flush. One flush
+     * at a time ("ratings-flush" and the shutdown hook share ratings.dat.tmp),
+     * and the copy is taken under the same lock, so a newer copy is never
+     * overwritten by an older one.
+     */
+    void flush() throws IOException {
+        synchronized (writeLock) {
+            List<Player> copy;
+            synchronized (this) {
+                if (!dirty || file == null)
+                    return;
+                dirty = false;
+                copy = new ArrayList<>(players.size());
+                for (Player p : players.values()) {
+                    Player c = new Player(p.name);
+                    c.rating = p.rating;
+                    c.games = p.games;
+                    copy.add(c);
+                }
+            }
+            try {
+                write(copy);
+            } catch (IOException e) {
+                synchronized (this) {
+                    dirty = true; // coba lagi di flush berikutnya
+                }
+                throw e;
+            }
+            synchronized (this) {
+                flushes++;
+            }
+        }
+    }
+
+    private void write(List<Player> list) throws IOException {
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = Files.newOutputStream(tmp);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(raw, 64 * 1024), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(list.size());
+            for (Player p : list) {
+                out.writeUTF(p.name);
+                out.writeShort(p.rating);
+                out.writeInt(p.games);
+            }
+            out.flush();
+            new DataOutputStream(raw).writeInt((int) crc.getValue());
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void load() throws IOException {
+        if (!Files.isRegularFile(file))
+            return;
+        CRC32 crc = new CRC32();
+        List<Player> list = new ArrayList<>();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("not a ratings file");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Player p = new Player(in.readUTF());
+                p.rating = Math.max(0, Math.min(MAX, in.readShort()));
+                p.games = in.readInt();
+                list.add(p);
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(raw).readInt() != expected)
+                throw new IOException("checksum mismatch");
+        }
+        // baru dipakai kalau seluruh file valid
+        for (Player p : list) {
+            players.put(p.name, p);
+            index(p, 1);
+        }
+    }
+
+    synchronized String stats() {
+        return "players=" + players.size() + ", ratedGames=" + ratedGames + ", queries=" + queries
+                + ", flushes=" + flushes + (file == null ? ", memory only" : "");
+    }
+}
@@ -0,0 +1,98 @@
+package com.tictactoe.server;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Server settings. Values are read from server.properties (if present in the
+ * working directory, or the file given with --config=path) and can then be
+ * overridden from the command line with --key=value.
+ */
+public class ServerConfig {
+
+    private static final String DEFAULT_FILE = "server.properties";
+
+    private final Properties props;
+
+    private ServerConfig(Properties props) {
+        this.props = props;
+    }
+
+    public static ServerConfig defaults() {
+        return new ServerConfig(new Properties());
+    }
+
+    public static ServerConfig load(String[] args) {
+        Properties props = new Properties();
+
+        String file = DEFAULT_FILE;
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                file = arg.substring("--config=".length());
+            }
+        }
+
+        Path path = Paths.get(file);
+        if (Files.isRegularFile(path)) {
+            try (InputStream in = new FileInputStream(path.toFile())) {
+                props.load(in);
+                System.out.println("[SERVER] Loaded config: " + path);
+            } catch (IOException e) {
+                System.out.println("[SERVER] Failed to read config " + path + ": " + e.getMessage());
+            }
+        }
+
+        // argumen command line menang atas isi file
+        for (String arg : args) {
+            if (!arg.startsWith("--"))
+                continue;
+            int eq = arg.indexOf('=');
+            if (eq > 2) {
+                props.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                props.setProperty(arg.substring(2), "true");
+            }
+        }
+
+        return new ServerConfig(props);
+    }
+
+    public String getString(String key, String def) {
+        String value = props.getProperty(key);
+        return value == null ? def : value.trim();
+    }
+
+    public int getInt(String key, int def) {
+        String value = props.getProperty(key);
+        if (value == null)
+            return def;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("[SERVER] Invalid number for " + key + ": " + value);
+            return def;
+        }
+    }
+
+    public long getLong(String key, long def) {
+        String value = props.getProperty(key);
+        if (value == null)
+            return def;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("[SERVER] Invalid number for " + key + ": " + value);
+            return def;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean def) {
+        String value = props.getProperty(key);
+        return value == null ? def : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -1,39 +1,99 @@
 package com.tictactoe.server;
 
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ServerMain {
 
     public static void main(String[] args) {
-        int port = 8888;
-        ServerState state = new ServerState();
+        ServerConfig config = ServerConfig.load(args);
+        int port = config.getInt("port", 8888);
+        // "thread" = satu thread per client (default), "virtual" = satu virtual
+        // thread per client (Java 21+), "nio" = selector reactor
+        String mode = config.getString("mode", "thread");
+
+        ServerState state = new ServerState(config);
 
         System.out.println("[SERVER] Starting...");
 
         // Monitoring Thread (prints active clients)
-        new Thread(() -> {
+        Thread monitor = new Thread(() -> {
             while (true) {
                 try { Thread.sleep(5000); } catch (Exception ignored) {}
                 System.out.println("[MONITOR] Active clients: " + state.getUserCount());
+                System.out.println("[MONITOR] Presence: " + state.getPresenceStats());
+                System.out.println("[MONITOR] Sessions: " + state.getSessionStats());
+                System.out.println("[MONITOR] Idle: " + state.getIdleStats());
+                System.out.println("[MONITOR] Rate limits: " + state.getRateLimitStats());
+                System.out.println("[MONITOR] Game shards: " + state.getShardStats());
+                System.out.println("[MONITOR] Spectators: " + state.getSpectatorStats());
+                System.out.println("[MONITOR] Chat: " + state.getChatStats());
+                System.out.println("[MONITOR] Channels: " + state.getChannelStats());
+                System.out.println("[MONITOR] Match: " + state.getMatchStats());
+                System.out.println("[MONITOR] Ratings: " + state.getRatingStats());
+                System.out.println("[MONITOR] Bot: " + state.getBotStats());
+                System.out.println("[MONITOR] Journal: " + state.getJournalStats());
+            }
+        });
+        monitor.setDaemon(true);
+        monitor.start();
+
+        if (mode.equals("nio")) {
+            int reactors = config.getInt("nio.reactors", Runtime.getRuntime().availableProcessors());
+            try {
+                new NioServer(port, reactors, state).start();
+            } catch (Exception e) {
+                System.out.println("[SERVER ERROR] " + e.getMessage());
             }
-        }).start();
+            return;
+        }
+
+        ExecutorService virtualThreads = mode.equals("virtual") ? newVirtualThreadExecutor() : null;
 
-        try (ServerSocket server = new ServerSocket(port)) {
+        // drain task outbound queue; thread hanya hidup selama ada backlog
+        ExecutorService writers = virtualThreads != null ? virtualThreads
+                : Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "client-writer");
+                    t.setDaemon(true);
+                    return t;
+                });
+        int backlog = config.getInt("backlog", 50);
 
-            System.out.println("[SERVER] Running on port " + port);
+        try (ServerSocket server = new ServerSocket(port, backlog)) {
+
+            System.out.println("[SERVER] Running on port " + port
+                    + (virtualThreads != null ? " (virtual threads)" : ""));
             System.out.println("[SERVER] Waiting for clients...");
 
             while (true) {
                 Socket clientSocket = server.accept();
                 System.out.println("[SERVER] New connection.");
 
-                ClientHandler handler = new ClientHandler(clientSocket, state);
-                new Thread(handler).start();
+                ClientHandler handler = new ClientHandler(clientSocket, state, writers);
+                if (virtualThreads != null) {
+                    virtualThreads.execute(handler);
+                } else {
+                    new Thread(handler).start();
+                }
             }
 
         } catch (Exception e) {
             System.out.println("[SERVER ERROR] " + e.getMessage());
         }
     }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists on Java 21+; it is
+    // looked up reflectively so the server still builds and runs on older JDKs.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("[SERVER] Virtual threads need Java 21+, using platform threads.");
+            return null;
+        }
+    }
 }
@@ -1,73 +1,484 @@
 package com.tictactoe.server;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class ServerState {
 
-    private final Map<String, ClientHandler> users = new HashMap<>();
-    private final Map<String, GameRoom> games = new HashMap<>();
+    // Reads (getUser, getGame, broadcast) never take a lock. Only createGame and
+    // removeGame lock, so the games map and the player index change together.
+    private final ConcurrentMap<String, ClientHandler> users = new ConcurrentHashMap<>();
+    private final LongGameMap games = new LongGameMap();
+    private final ConcurrentMap<String, GameRoom> gamesByPlayer = new ConcurrentHashMap<>();
+
+    private final ReentrantLock gameLock = new ReentrantLock();
+
+    private final ServerConfig config;
+    private final Presence presence;
+    private final Sessions sessions;
+    private final RateLimits rateLimits;
+    private final IdleTimer idleTimer; // null kalau idle.timeoutMs=0
+    private final Spectators spectators;
+    private final ChatHistory lobbyChat; // null kalau chat.history=0
+    private final int gameChatHistory;
+    private final AtomicLong chatBackfills = new AtomicLong();
+    private final AtomicLong chatBackfilled = new AtomicLong();
+    private final Channels channels;
+    private final Matchmaker matchmaker;
+    private final Ratings ratings;
+    private final GameShards shards;
+    private final GameIds gameIds;
+    private final BotPlayer bot; // null kalau bot.enabled=false
+    private final InfinityTable infinityTable; // null kalau file tabel tidak ada
+    private final GameJournal journal; // null kalau journal.enabled=false
+    private final JournalRecovery recovery; // null kalau journal null
+
+    public ServerState() {
+        this(ServerConfig.defaults());
+    }
+
+    public ServerState(ServerConfig config) {
+        this.config = config;
+        this.presence = new Presence(this);
+        this.sessions = new Sessions(this);
+        this.rateLimits = new RateLimits(config);
+        this.spectators = new Spectators(config);
+        int lobbyChatHistory = config.getInt("chat.history", 50);
+        this.lobbyChat = lobbyChatHistory > 0 ? new ChatHistory(lobbyChatHistory) : null;
+        this.gameChatHistory = config.getInt("chat.gameHistory", 20);
+        this.channels = new Channels(config);
+        this.ratings = new Ratings(config);
+        this.matchmaker = new Matchmaker(config, new Matchmaker.Pairing() {
+            @Override
+            public boolean available(Matchmaker.Ticket t) {
+                return getUser(t.username) != null && findGameByPlayer(t.username) == null;
+            }
+
+            @Override
+            public boolean paired(Matchmaker.Ticket x, Matchmaker.Ticket o) {
+                return startMatch(x, o);
+            }
+        });
+        long idleTimeoutMs = config.getLong("idle.timeoutMs", 20_000);
+        this.idleTimer = idleTimeoutMs > 0 ? new IdleTimer(idleTimeoutMs, config.getLong("idle.tickMs", 1000)) : null;
+        this.gameIds = new GameIds(config.getInt("server.nodeId", 0));
+        this.shards = new GameShards(config.getInt("game.shards", Runtime.getRuntime().availableProcessors()),
+                config.getInt("game.shardQueueMax", 10_000));
+        this.infinityTable = loadInfinityTable(
+                Paths.get(config.getString("solver.table", InfinityTableGenerator.DEFAULT_FILE)));
+
+        if (config.getBoolean("bot.enabled", true)) {
+            this.bot = new BotPlayer(this);
+            addUser(BotPlayer.NAME, bot.getHandler());
+            userJoined(bot.getHandler());
+        } else {
+            this.bot = null;
+        }
+
+        // terakhir: game yang dipulihkan butuh shard dan BOT
+        this.journal = config.getBoolean("journal.enabled", true) ? openJournal(config) : null;
+        this.recovery = journal != null ? recover(journal, config) : null;
+    }
+
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    GameShards getShards() {
+        return shards;
+    }
+
+    public String getShardStats() {
+        return shards.stats();
+    }
+
+    BotPlayer getBot() {
+        return bot;
+    }
+
+    InfinityTable getInfinityTable() {
+        return infinityTable;
+    }
+
+    private static InfinityTable loadInfinityTable(Path file) {
+        if (!Files.isRegularFile(file)) {
+            System.out.println("[SERVER] No infinity table at " + file + " (make table), HINT disabled");
+            return null;
+        }
+        try {
+            InfinityTable table = InfinityTable.load(file);
+            System.out.println("[SERVER] Mapped infinity table: " + file + " (" + table.describe()
+                    + ", " + table.stateCount() + " positions)");
+            return table;
+        } catch (IOException e) {
+            System.out.println("[SERVER] Failed to map infinity table " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    GameJournal getJournal() {
+        return journal;
+    }
+
+    private static GameJournal openJournal(ServerConfig config) {
+        Path dir = Paths.get(config.getString("journal.dir", "data/journal"));
+        try {
+            GameJournal journal = GameJournal.open(dir,
+                    config.getInt("journal.segmentBytes", 4 << 20),
+                    config.getInt("journal.syncIntervalMs", 10),
+                    config.getInt("journal.syncBytes", 256 << 10));
+            // fsync terakhir kalau server dimatikan (Ctrl+C / SIGTERM)
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-close"));
+            System.out.println("[SERVER] Game journal: " + dir);
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[SERVER] Failed to open game journal " + dir + ": " + e.getMessage()
+                    + ", games are not persisted");
+            return null;
+        }
+    }
+
+    private JournalRecovery recover(GameJournal journal, ServerConfig config) {
+        JournalRecovery recovery = new JournalRecovery(this, journal,
+                config.getLong("journal.snapshotRecords", 100_000),
+                config.getLong("journal.recoveryGraceMs", 300_000));
+        try {
+            recovery.recover(config.getInt("journal.recoveryThreads", Runtime.getRuntime().availableProcessors()));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[SERVER] Journal recovery failed: " + e.getMessage());
+        }
+        recovery.start();
+        return recovery;
+    }
+
+    public String getJournalStats() {
+        return journal != null ? journal.stats() + ", " + recovery.stats() : "disabled";
+    }
+
+    public String getBotStats() {
+        return bot != null ? bot.stats() : "disabled";
+    }
 
     // ========== USER MANAGEMENT ==========
 
-    public synchronized void addUser(String username, ClientHandler handler) {
-        users.put(username, handler);
+    /**
+     * Claims a username. Returns false if somebody else already holds it; the
+     * check and the insert are one atomic step.
+     */
+    public boolean addUser(String username, ClientHandler handler) {
+        return users.putIfAbsent(username, handler) == null;
+    }
+
+    /**
+     * Releases a username, but only if it still belongs to this handler.
+     * Returns false if it was already released.
+     */
+    public boolean removeUser(String username, ClientHandler handler) {
+        return users.remove(username, handler);
     }
 
-    public synchronized void removeUser(String username) {
-        users.remove(username);
+    /** Hands a username over to the connection that resumed its session. */
+    boolean replaceUser(String username, ClientHandler oldHandler, ClientHandler newHandler) {
+        return users.replace(username, oldHandler, newHandler);
     }
 
-    public synchronized boolean isUsernameTaken(String username) {
+    public boolean isUsernameTaken(String username) {
         return users.containsKey(username);
     }
 
-    public synchronized ClientHandler getUser(String username) {
+    public ClientHandler getUser(String username) {
         return users.get(username);
     }
 
-    public synchronized int getUserCount() {
+    public Collection<ClientHandler> getUsers() {
+        return users.values();
+    }
+
+    public int getUserCount() {
         return users.size();
     }
 
     // ========== BROADCAST ==========
 
-    public synchronized void broadcast(String msg) {
+    public void broadcast(String msg) {
+        // encode sekali per protokol, setiap penerima cuma dapat duplicate (tanpa copy byte)
+        broadcast(new Frame.Shared(msg, true));
+    }
+
+    private void broadcast(Frame.Shared frame) {
         for (ClientHandler handler : users.values()) {
-            handler.sendMessage(msg);
+            frame.sendTo(handler);
         }
     }
 
-    public synchronized void broadcastUserList() {
-        String list = String.join(",", users.keySet());
-        broadcast("USER_LIST|" + list);
-        System.out.println("[SERVER] USER_LIST broadcast: " + list);
+    // ========== CHAT ==========
+
+    /** CHAT_GLOBAL: to everybody online, and kept for the next logins. */
+    void chatGlobal(String from, String text) {
+        String msg = "CHAT_GLOBAL_FROM|" + from + "|" + text;
+        if (lobbyChat != null)
+            broadcast(lobbyChat.add(msg, true));
+        else
+            broadcast(msg);
+    }
+
+    /** Recent lobby chat right after LOGIN. */
+    void sendLobbyChat(ClientHandler handler) {
+        if (lobbyChat != null)
+            sendChatHistory(lobbyChat, handler);
+    }
+
+    /** History for a game's chat, created on its first message; null if chat.gameHistory=0. */
+    ChatHistory newGameChatHistory() {
+        return gameChatHistory > 0 ? new ChatHistory(gameChatHistory) : null;
+    }
+
+    void sendChatHistory(ChatHistory history, ClientHandler handler) {
+        int sent = history.sendRecent(handler);
+        if (sent > 0) {
+            chatBackfills.incrementAndGet();
+            chatBackfilled.addAndGet(sent);
+        }
+    }
+
+    Channels getChannels() {
+        return channels;
+    }
+
+    public String getChannelStats() {
+        return channels.stats();
+    }
+
+    public String getChatStats() {
+        return (lobbyChat != null ? "lobbyMessages=" + lobbyChat.size() + ", kept=" + lobbyChat.capacity()
+                : "lobby history disabled") + ", backfills=" + chatBackfills.get()
+                + ", backfilled=" + chatBackfilled.get();
+    }
+
+    // ========== PRESENCE ==========
+
+    public void userJoined(ClientHandler handler) {
+        presence.joined(handler);
+    }
+
+    public void userLeft(String username) {
+        presence.left(username);
+    }
+
+    public void sendUserList(ClientHandler handler) {
+        presence.sendSnapshot(handler);
+    }
+
+    public String getPresenceStats() {
+        return presence.stats();
+    }
+
+    // ========== SESSIONS ==========
+
+    Sessions getSessions() {
+        return sessions;
+    }
+
+    public String getSessionStats() {
+        return sessions.stats();
+    }
+
+    RateLimits getRateLimits() {
+        return rateLimits;
+    }
+
+    public String getRateLimitStats() {
+        return rateLimits.stats();
+    }
+
+    IdleTimer getIdleTimer() {
+        return idleTimer;
+    }
+
+    public String getIdleStats() {
+        return idleTimer != null ? idleTimer.stats() : "disabled";
+    }
+
+    // ========== SPECTATORS ==========
+
+    Spectators getSpectators() {
+        return spectators;
+    }
+
+    public String getSpectatorStats() {
+        return spectators.stats();
+    }
+
+    // ========== MATCHMAKING ==========
+
+    Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+
+    public String getMatchStats() {
+        return matchmaker.stats();
+    }
+
+    // thread matchmaker: seperti ACCEPT_INVITE, tapi yang memulai server.
+    // available() tadi cuma cek cepat; createGame yang mengklaim kedua player
+    // secara atomic, jadi invite yang diterima barusan tetap menang.
+    private boolean startMatch(Matchmaker.Ticket x, Matchmaker.Ticket o) {
+        ClientHandler hx = getUser(x.username);
+        ClientHandler ho = getUser(o.username);
+        if (hx == null || ho == null)
+            return false;
+
+        GameRoom game = createGame(x.username, o.username, x.rules);
+        if (game == null)
+            return false;
+        hx.sendMessage("MATCH_FOUND|" + o.username + "|" + o.rating);
+        ho.sendMessage("MATCH_FOUND|" + x.username + "|" + x.rating);
+        game.startGame();
+        return true;
+    }
+
+    // ========== RATINGS ==========
+
+    Ratings getRatings() {
+        return ratings;
+    }
+
+    int getRating(String username) {
+        return ratings.get(username);
+    }
+
+    public String getRatingStats() {
+        return ratings.stats();
+    }
+
+    /** Shard thread of the game: Elo for both players. Games against the BOT are not rated. */
+    void gameFinished(GameRoom game, String winner) {
+        String x = game.getPlayer1();
+        String o = game.getPlayer2();
+        if (BotPlayer.NAME.equals(x) || BotPlayer.NAME.equals(o))
+            return;
+
+        int[] delta = ratings.record(x, o, winner == null ? 0.5 : winner.equals(x) ? 1 : 0);
+        sendRating(game, x, delta[0]);
+        sendRating(game, o, delta[1]);
+    }
+
+    // RATING_UPDATE|gameId|rating|+delta
+    private void sendRating(GameRoom game, String username, int delta) {
+        ClientHandler handler = getUser(username);
+        if (handler != null)
+            handler.sendMessage("RATING_UPDATE|" + game.getGameId() + "|" + ratings.get(username) + "|"
+                    + (delta >= 0 ? "+" : "") + delta);
     }
 
     // ========== GAME MANAGEMENT ==========
 
-    public synchronized GameRoom createGame(String player1, String player2) {
-        String gameId = "GAME_" + System.currentTimeMillis();
-        GameRoom game = new GameRoom(gameId, player1, player2, this);
-        games.put(gameId, game);
-        System.out.println("[SERVER] Game created: " + gameId + " (" + player1 + " vs " + player2 + ")");
-        return game;
+    public GameRoom createGame(String player1, String player2) {
+        return createGame(player1, player2, GameRules.CLASSIC);
     }
 
-    public synchronized GameRoom getGame(String gameId) {
-        return games.get(gameId);
+    /**
+     * New game, or null if one of the players already has a running game:
+     * a player is in at most one game, so findGameByPlayer never points at
+     * the wrong one. The BOT plays many games at once and is not indexed.
+     */
+    GameRoom createGame(String player1, String player2, GameRules rules) {
+        gameLock.lock();
+        try {
+            GameRoom game = new GameRoom(gameIds.next(), player1, player2, rules, this);
+            if (!claim(player1, game)) {
+                System.out.println("[SERVER] Game refused: " + player1 + " is already in a game");
+                return null;
+            }
+            if (!claim(player2, game)) {
+                release(player1, game);
+                System.out.println("[SERVER] Game refused: " + player2 + " is already in a game");
+                return null;
+            }
+            games.put(game);
+            System.out.println("[SERVER] Game created: " + game.getGameId() + " (" + player1 + " vs " + player2
+                    + ", " + rules + ")");
+            return game;
+        } finally {
+            gameLock.unlock();
+        }
     }
 
-    public synchronized void removeGame(String gameId) {
-        games.remove(gameId);
+    /**
+     * Puts a game rebuilt from the journal back, as if createGame had made it.
+     * False (and nothing changed) if a player already has another game.
+     */
+    boolean restoreGame(GameRoom game) {
+        gameLock.lock();
+        try {
+            if (!claim(game.getPlayer1(), game))
+                return false;
+            if (!claim(game.getPlayer2(), game)) {
+                release(game.getPlayer1(), game);
+                return false;
+            }
+            games.put(game);
+            return true;
+        } finally {
+            gameLock.unlock();
+        }
     }
 
-    public synchronized GameRoom findGameByPlayer(String username) {
-        for (GameRoom game : games.values()) {
-            if (username.equals(game.getPlayer1()) || username.equals(game.getPlayer2())) {
-                return game;
+    // gamesByPlayer: hanya kalau player belum punya game (BOT tidak di-index)
+    private boolean claim(String player, GameRoom game) {
+        return isBot(player) || gamesByPlayer.putIfAbsent(player, game) == null;
+    }
+
+    /** The running BOT; false for the name "BOT" while bot.enabled=false. */
+    boolean isBot(String player) {
+        return bot != null && BotPlayer.NAME.equals(player);
+    }
+
+    private void release(String player, GameRoom game) {
+        gamesByPlayer.remove(player, game);
+    }
+
+    /** Every running game; see {@link LongGameMap#forEach}. */
+    void forEachGame(Consumer<GameRoom> action) {
+        games.forEach(action);
+    }
+
+    /** Game by its text id; null if unknown or not an id at all. */
+    public GameRoom getGame(String gameId) {
+        long id = GameIds.parse(gameId);
+        return id < 0 ? null : games.get(id);
+    }
+
+    public GameRoom getGame(long id) {
+        return games.get(id);
+    }
+
+    public int getGameCount() {
+        return games.size();
+    }
+
+    public void removeGame(long id) {
+        gameLock.lock();
+        try {
+            GameRoom game = games.remove(id);
+            if (game != null) {
+                release(game.getPlayer1(), game);
+                release(game.getPlayer2(), game);
             }
+        } finally {
+            gameLock.unlock();
         }
-        return null;
+    }
+
+    public GameRoom findGameByPlayer(String username) {
+        return gamesByPlayer.get(username);
     }
 }
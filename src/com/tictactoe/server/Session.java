@@ -0,0 +1,189 @@
+package com.tictactoe.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A logged-in user, independent of the connection it currently uses.
+ *
+ * Every message to the user goes through {@link #send}: it gets the next
+ * sequence number (one per protocol message, PONG excluded), is kept in a
+ * ring of the last session.replayFrames frames, at most session.replayBytes
+ * in total, and is written to the attached connection if there is one.
+ * Snapshots that a RESUME with GAP sends again anyway (USER_LIST, chat
+ * backfill) are not kept: they empty the ring instead, so resuming from
+ * before one is a GAP and gets a fresh snapshot. When the socket drops the
+ * session is only detached; messages keep numbering and buffering. A new
+ * connection that sends RESUME|token|lastSeq takes the session over and
+ * gets everything after lastSeq again, in order, before anything new.
+ */
+final class Session {
+
+    static final int REPLAYED = 0;
+    static final int GAP = 1;     // ring sudah tidak memuat semua yang terlewat
+    static final int INVALID = 2; // lastSeq dari client lebih besar dari yang dikirim
+
+    private final String token;
+    private final String username;
+    private final boolean binary;
+
+    // ring: frame (posisi di awal) + seq pesan pertama di frame itu
+    private final ByteBuffer[] frames;
+    private final long[] firstSeq;
+    private final int maxBytes;
+    private int head;
+    private int count;
+    private int keptBytes;
+    private long sent;
+
+    // ----- dijaga monitor this -----
+    private volatile ClientHandler attached; // null = detached; dibaca tanpa lock di backlog()
+    private long detachedAt;
+    private boolean closed;
+
+    Session(String token, String username, boolean binary, int replayFrames, int replayBytes) {
+        this.token = token;
+        this.username = username;
+        this.binary = binary;
+        this.frames = new ByteBuffer[Math.max(1, replayFrames)];
+        this.firstSeq = new long[frames.length];
+        this.maxBytes = Math.max(0, replayBytes);
+    }
+
+    /** Numbers, keeps and (if attached) writes one frame holding {@code messages} messages. */
+    void send(ByteBuffer frame, int messages) {
+        send(frame, messages, true);
+    }
+
+    /**
+     * Like {@link #send(ByteBuffer, int)}; with {@code keep} false (or a frame
+     * larger than session.replayBytes) the frame is numbered and written but
+     * not kept, and the ring is emptied.
+     */
+    synchronized void send(ByteBuffer frame, int messages, boolean keep) {
+        if (closed)
+            return;
+        int size = frame.remaining();
+        if (!keep || size > maxBytes) {
+            // frame sebelumnya tidak berguna lagi tanpa yang ini: resume dari sana jadi GAP
+            while (count > 0)
+                dropOldest();
+        } else {
+            while (count == frames.length || count > 0 && keptBytes + size > maxBytes)
+                dropOldest();
+            int i = (head + count) % frames.length;
+            count++;
+            frames[i] = frame.duplicate();
+            firstSeq[i] = sent + 1;
+            keptBytes += size;
+        }
+        sent += messages;
+
+        if (attached != null)
+            attached.write(frame);
+    }
+
+    private void dropOldest() {
+        keptBytes -= frames[head].remaining();
+        frames[head] = null;
+        head = (head + 1) % frames.length;
+        count--;
+    }
+
+    synchronized void attach(ClientHandler handler) {
+        attached = handler;
+    }
+
+    /** Connection lost; false if {@code handler} was not (or no longer) the attached one. */
+    synchronized boolean detach(ClientHandler handler) {
+        if (attached != handler || closed)
+            return false;
+        attached = null;
+        detachedAt = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Moves the session to {@code handler}: RESUME_OK|name|seq, then every
+     * kept frame after {@code clientSeq}. Returns REPLAYED, GAP or INVALID
+     * (nothing is sent for INVALID). The previous connection, if any, is
+     * returned through {@code previous[0]} so the caller can close it.
+     */
+    synchronized int resume(ClientHandler handler, long clientSeq, ClientHandler[] previous) {
+        if (closed || clientSeq < 0 || clientSeq > sent)
+            return INVALID;
+
+        // frame pertama yang belum lengkap diterima client; frame multi-pesan
+        // yang sebagian sudah diterima dikirim ulang utuh (delta presence idempotent)
+        int skip = count;
+        while (skip > 0 && lastSeqOf(skip - 1) > clientSeq)
+            skip--;
+        long from = skip < count ? firstSeq[(head + skip) % frames.length] - 1 : sent;
+        boolean gap = from > clientSeq;
+
+        previous[0] = attached;
+        attached = handler;
+        // seq yang dipakai client sebelum replay
+        handler.write(Frame.encode("RESUME_OK|" + username + "|" + (gap ? sent : from), binary));
+        if (!gap) {
+            for (int k = skip; k < count; k++)
+                handler.write(frames[(head + k) % frames.length].duplicate());
+        }
+        return gap ? GAP : REPLAYED;
+    }
+
+    // seq of the last message in kept frame number k (0 = oldest kept)
+    private long lastSeqOf(int k) {
+        return k + 1 < count ? firstSeq[(head + k + 1) % frames.length] - 1 : sent;
+    }
+
+    /** Session is over (QUIT or grace period passed); later sends are dropped. */
+    synchronized void close() {
+        closed = true;
+        attached = null;
+        while (count > 0)
+            dropOldest();
+    }
+
+    /** Bytes of the frames kept for replay. */
+    synchronized int keptBytes() {
+        return keptBytes;
+    }
+
+    /** Closes the session if no connection is attached (a LOGIN takes the name over). */
+    synchronized boolean closeIfDetached() {
+        if (closed || attached != null)
+            return false;
+        close();
+        return true;
+    }
+
+    /** Closes the session if it has been detached for at least {@code graceNanos}. */
+    synchronized boolean expire(long now, long graceNanos) {
+        if (closed || attached != null || now - detachedAt < graceNanos)
+            return false;
+        close();
+        return true;
+    }
+
+    /** Bytes queued on the attached connection; 0 while detached (the ring is bounded anyway). */
+    long backlog() {
+        ClientHandler h = attached;
+        return h != null ? h.getTransportBacklog() : 0;
+    }
+
+    synchronized boolean isAttached() {
+        return attached != null;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+}
@@ -0,0 +1,142 @@
+package com.tictactoe.server;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resume tokens. Every login gets a {@link Session} and its token is sent
+ * right after LOGIN_OK:
+ *
+ *   SESSION|token|graceMs
+ *
+ * A dropped connection keeps the user logged in (still in the user list,
+ * still in its game) for session.graceMs. Within that time a new connection
+ * can send RESUME|token|lastSeq and continue where the old one stopped; after
+ * it the user is logged out as before (USER_LEFT, the game is lost). A
+ * LOGIN with the same name within that time closes the detached session and
+ * takes the user over instead of failing, for a client that lost its token.
+ * session.graceMs=0 turns this off: no token, a drop is a logout.
+ */
+final class Sessions {
+
+    private final ServerState serverState;
+    private final ConcurrentMap<String, Session> byToken = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private final long graceMs;
+    private final int replayFrames;
+    private final int replayBytes;
+
+    // counters
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+    private final AtomicLong gaps = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong takenOver = new AtomicLong();
+
+    Sessions(ServerState serverState) {
+        this.serverState = serverState;
+        this.graceMs = serverState.getConfig().getLong("session.graceMs", 30_000);
+        this.replayFrames = serverState.getConfig().getInt("session.replayFrames", 256);
+        this.replayBytes = serverState.getConfig().getInt("session.replayBytes", 32 * 1024);
+
+        if (graceMs > 0) {
+            ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "session-expiry");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.min(1000, graceMs);
+            ticker.scheduleAtFixedRate(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    boolean isEnabled() {
+        return graceMs > 0;
+    }
+
+    long getGraceMs() {
+        return graceMs;
+    }
+
+    Session open(String username, boolean binary) {
+        String token = new BigInteger(128, random).toString(36);
+        Session session = new Session(token, username, binary, replayFrames, replayBytes);
+        byToken.put(token, session);
+        created.incrementAndGet();
+        return session;
+    }
+
+    Session get(String token) {
+        return byToken.get(token);
+    }
+
+    /** Logout (QUIT): the token is no longer valid. */
+    void close(Session session) {
+        byToken.remove(session.getToken(), session);
+        session.close();
+    }
+
+    // Session.REPLAYED / GAP / INVALID
+    void resumed(int result) {
+        if (result == Session.INVALID) {
+            failed.incrementAndGet();
+            return;
+        }
+        resumed.incrementAndGet();
+        if (result == Session.GAP)
+            gaps.incrementAndGet();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    void takenOver() {
+        takenOver.incrementAndGet();
+    }
+
+    private void sweep() {
+        try {
+            long now = System.nanoTime();
+            long graceNanos = TimeUnit.MILLISECONDS.toNanos(graceMs);
+            for (Session session : byToken.values()) {
+                if (!session.expire(now, graceNanos))
+                    continue;
+                byToken.remove(session.getToken(), session);
+                expired.incrementAndGet();
+
+                // logout yang tertunda sejak koneksi putus
+                ClientHandler handler = serverState.getUser(session.getUsername());
+                if (handler != null && handler.getSession() == session)
+                    handler.logout();
+            }
+        } catch (RuntimeException e) {
+            // jangan sampai scheduleAtFixedRate berhenti diam-diam
+            System.out.println("[SERVER] Session sweep failed: " + e);
+        }
+    }
+
+    String stats() {
+        if (!isEnabled())
+            return "disabled";
+        int detached = 0;
+        long kept = 0;
+        for (Session session : byToken.values()) {
+            if (!session.isAttached())
+                detached++;
+            kept += session.keptBytes();
+        }
+        return "open=" + byToken.size() + ", detached=" + detached + ", replayKB=" + kept / 1024
+                + ", created=" + created.get()
+                + ", resumed=" + resumed.get() + ", gaps=" + gaps.get() + ", failed=" + failed.get()
+                + ", expired=" + expired.get() + ", takenOver=" + takenOver.get();
+    }
+}
@@ -0,0 +1,115 @@
+package com.tictactoe.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writer side of a blocking (thread / virtual thread) connection. Senders only
+ * enqueue; a drain task on the writer executor copies everything queued so far
+ * into one batch and hands it to the socket in as few write calls as possible.
+ * A slow client therefore blocks its own drain task, never the broadcaster.
+ */
+class SocketWriter implements Runnable {
+
+    private static final int MAX_BATCH = 64 * 1024;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final OutboundQueue queue;
+    private final Executor executor;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    SocketWriter(Socket socket, OutboundQueue queue, Executor executor) throws IOException {
+        this.socket = socket;
+        this.out = socket.getOutputStream();
+        this.queue = queue;
+        this.executor = executor;
+    }
+
+    void send(ByteBuffer frame) {
+        if (closed)
+            return;
+
+        if (!queue.offer(frame)) {
+            if (queue.getOverflow() == OutboundQueue.Overflow.DISCONNECT) {
+                System.out.println("[SERVER] Outbound backlog over limit, closing slow client.");
+                close(); // reader thread akan dapat IOException lalu disconnect()
+            }
+            return;
+        }
+
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            do {
+                drain();
+                scheduled.set(false);
+                // frame baru bisa masuk setelah drain() tapi sebelum flag dilepas
+            } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("[SERVER] Write error: " + e.getMessage());
+            }
+            close();
+        }
+    }
+
+    private void drain() throws IOException {
+        long pending = queue.getPendingBytes();
+        if (pending <= 0)
+            return;
+
+        byte[] batch = new byte[(int) Math.min(pending, MAX_BATCH)];
+        int n = 0;
+
+        ByteBuffer frame;
+        while (!closed && (frame = queue.poll()) != null) {
+            while (frame.hasRemaining()) {
+                if (n == batch.length) {
+                    if (batch.length < MAX_BATCH) {
+                        // frame masuk setelah pending dibaca, perbesar batch
+                        batch = Arrays.copyOf(batch, Math.min(batch.length * 2, MAX_BATCH));
+                    } else {
+                        out.write(batch, 0, n);
+                        n = 0;
+                    }
+                }
+                int len = Math.min(frame.remaining(), batch.length - n);
+                frame.get(batch, n, len);
+                n += len;
+            }
+        }
+
+        if (n > 0) {
+            out.write(batch, 0, n);
+        }
+        out.flush();
+    }
+
+    long getPendingBytes() {
+        return queue.getPendingBytes();
+    }
+
+    void close() {
+        if (closed)
+            return;
+        closed = true;
+        queue.clear();
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
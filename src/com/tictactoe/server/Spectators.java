@@ -0,0 +1,156 @@
+package com.tictactoe.server;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spectators (WATCH|gameId). Every game with at least one spectator has an
+ * {@link Audience}, owned by the game's shard thread like the rest of the
+ * game state, so joining, leaving and fan-out need no lock.
+ *
+ * A BOARD_UPDATE is encoded once per protocol and every spectator gets a
+ * duplicate, through the same non-blocking outbound queue as everything
+ * else. A spectator whose outbound backlog is above watch.conflateBytes is
+ * "slow": it does not get every board, only the newest one is kept for it
+ * and delivered once the backlog has drained (checked every watch.retryMs,
+ * and before the result at the end of the game). Players are never
+ * conflated; control messages (WATCH_START, GAME_RESULT) never dropped.
+ */
+final class Spectators {
+
+    private final long conflateBytes;
+    private final long retryMs;
+    private final ScheduledExecutorService retry;
+
+    // counters
+    private final AtomicLong watching = new AtomicLong();
+    private final AtomicLong boards = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+
+    Spectators(ServerConfig config) {
+        this.conflateBytes = config.getLong("watch.conflateBytes", 64 * 1024);
+        this.retryMs = Math.max(1, config.getLong("watch.retryMs", 50));
+        this.retry = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "watch-retry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    Audience newAudience(GameRoom room, Executor shard) {
+        return new Audience(room, shard);
+    }
+
+    String stats() {
+        return "watching=" + watching.get() + ", boards=" + boards.get() + ", conflated=" + conflated.get()
+                + ", delayed=" + delayed.get();
+    }
+
+    private static final class Watcher {
+        final ClientHandler handler;
+        ByteBuffer pending; // board terbaru yang belum terkirim (spectator lambat)
+
+        Watcher(ClientHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    /** Spectators of one game. Shard thread only. */
+    final class Audience {
+        private final GameRoom room;
+        private final Executor shard;
+        private final Map<String, Watcher> watchers = new LinkedHashMap<>();
+        private int pendingCount;
+        private boolean retryScheduled;
+
+        private Audience(GameRoom room, Executor shard) {
+            this.room = room;
+            this.shard = shard;
+        }
+
+        void add(ClientHandler handler) {
+            if (watchers.put(handler.getUsername(), new Watcher(handler)) == null)
+                watching.incrementAndGet();
+        }
+
+        void remove(String username) {
+            Watcher w = watchers.remove(username);
+            if (w == null)
+                return;
+            watching.decrementAndGet();
+            if (w.pending != null)
+                pendingCount--;
+        }
+
+        boolean isEmpty() {
+            return watchers.isEmpty();
+        }
+
+        /** A new board: conflated for slow spectators. */
+        void board(Frame.Shared frame) {
+            for (Watcher w : watchers.values()) {
+                if (w.handler.getOutboundBacklog() > conflateBytes) {
+                    if (w.pending == null)
+                        pendingCount++;
+                    w.pending = frame.duplicateFor(w.handler); // board lama tertimpa
+                    conflated.incrementAndGet();
+                } else {
+                    if (w.pending != null) {
+                        w.pending = null;
+                        pendingCount--;
+                    }
+                    frame.sendTo(w.handler);
+                    boards.incrementAndGet();
+                }
+            }
+            if (pendingCount > 0)
+                scheduleRetry();
+        }
+
+        /** Game over: last board first, then the result; the audience is empty afterwards. */
+        void close(Frame.Shared result) {
+            for (Watcher w : watchers.values()) {
+                if (w.pending != null) {
+                    w.handler.sendFrame(w.pending, 1);
+                    w.pending = null;
+                    delayed.incrementAndGet();
+                }
+                result.sendTo(w.handler);
+                w.handler.stoppedWatching(room);
+            }
+            watching.addAndGet(-watchers.size());
+            watchers.clear();
+            pendingCount = 0;
+        }
+
+        private void scheduleRetry() {
+            if (retryScheduled)
+                return;
+            retryScheduled = true;
+            retry.schedule(() -> shard.execute(this::retry), retryMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void retry() {
+            retryScheduled = false;
+            if (pendingCount == 0)
+                return;
+            for (Watcher w : watchers.values()) {
+                if (w.pending == null || w.handler.getOutboundBacklog() > conflateBytes)
+                    continue;
+                w.handler.sendFrame(w.pending, 1);
+                w.pending = null;
+                pendingCount--;
+                delayed.incrementAndGet();
+            }
+            if (pendingCount > 0)
+                scheduleRetry();
+        }
+    }
+}
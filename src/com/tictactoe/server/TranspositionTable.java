@@ -0,0 +1,116 @@
+package com.tictactoe.server;
+
+/**
+ * Fixed-size hash table of search results keyed by Zobrist hash, for
+ * {@link BotSearch}. Memory is bounded by the entry count given at
+ * construction (16 bytes per entry, two parallel long arrays, no objects).
+ *
+ * One slot per hash index. An existing entry is replaced when it belongs to
+ * an older search (generation), or the new result was searched at least as
+ * deep; otherwise the deeper, current result is kept.
+ *
+ * Not thread-safe: each bot worker thread owns its own table.
+ */
+final class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER = 1; // score >= value (beta cutoff)
+    static final int UPPER = 2; // score <= value (tidak ada langkah lebih baik dari alpha)
+
+    /** Returned by {@link #probe} when the position is not in the table. */
+    static final long MISS = -1L;
+
+    // layout data: [gen 8][flag 2][depth 8][move 16][score 30]
+    private static final int SCORE_BITS = 30;
+    private static final int SCORE_OFFSET = 1 << (SCORE_BITS - 1);
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int generation;
+
+    // counters
+    private long probes;
+    private long hits;
+    private long stores;
+    private long replaced;
+
+    TranspositionTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(entries, 1024));
+        this.keys = new long[size];
+        this.data = new long[size];
+        this.mask = size - 1;
+    }
+
+    /** Call once per root search, so entries from earlier moves age out first. */
+    void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    long probe(long key) {
+        probes++;
+        int i = (int) key & mask;
+        if (keys[i] != key || data[i] == 0)
+            return MISS;
+        hits++;
+        return data[i];
+    }
+
+    void store(long key, int depth, int flag, int score, int move) {
+        int i = (int) key & mask;
+        long old = data[i];
+        if (old != 0 && keys[i] != key && generationOf(old) == generation && depthOf(old) > depth)
+            return; // entry yang lebih dalam dari search ini tetap dipakai
+
+        if (old != 0 && keys[i] != key)
+            replaced++;
+        stores++;
+        keys[i] = key;
+        data[i] = ((long) generation << 56)
+                | ((long) flag << 54)
+                | ((long) (depth & 0xFF) << 46)
+                | ((long) (move & 0xFFFF) << SCORE_BITS)
+                | (score + SCORE_OFFSET);
+    }
+
+    static int scoreOf(long entry) {
+        return (int) (entry & ((1L << SCORE_BITS) - 1)) - SCORE_OFFSET;
+    }
+
+    static int moveOf(long entry) {
+        int move = (int) (entry >>> SCORE_BITS) & 0xFFFF;
+        return move == 0xFFFF ? -1 : move;
+    }
+
+    static int depthOf(long entry) {
+        return (int) (entry >>> 46) & 0xFF;
+    }
+
+    static int flagOf(long entry) {
+        return (int) (entry >>> 54) & 0x3;
+    }
+
+    private static int generationOf(long entry) {
+        return (int) (entry >>> 56) & 0xFF;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    long getProbes() {
+        return probes;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getStores() {
+        return stores;
+    }
+
+    long getReplaced() {
+        return replaced;
+    }
+}